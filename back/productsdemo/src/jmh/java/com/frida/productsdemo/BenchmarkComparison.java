@@ -0,0 +1,93 @@
+package com.frida.productsdemo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compara dos resultados de JMH en JSON (por ejemplo el de la rama principal y
+ * el de un commit nuevo) y marca las regresiones.
+ *
+ * Cada benchmark se identifica por su nombre y sus parámetros. Se considera
+ * regresión un empeoramiento mayor que el umbral (10 % por defecto) y mayor
+ * que la suma de los márgenes de error de ambas medidas; en modo throughput
+ * empeorar es bajar y en el resto es subir. Termina con código 1 si hay
+ * alguna, para poder usarlo en integración continua.
+ *
+ * Uso (compara con target/jmh-result.json o con -Djmh.result.file):
+ *   mvn -Pjmh test-compile exec:exec@compare -Djmh.baseline=base.json [-Djmh.threshold=10]
+ */
+public final class BenchmarkComparison {
+
+	private record Score(String mode, double score, double error, String unit) {}
+
+	private BenchmarkComparison() { /* Previene instanciación */ }
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Uso: BenchmarkComparison base.json nuevo.json [umbral%]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+		Map<String, Score> base = read(new File(args[0]));
+		Map<String, Score> current = read(new File(args[1]));
+
+		int regressions = 0;
+		System.out.printf(Locale.ROOT, "%-70s %14s %14s %9s  %s%n", "Benchmark", "Base", "Nuevo", "Cambio", "Unidad");
+		for (Map.Entry<String, Score> entry : current.entrySet()) {
+			Score now = entry.getValue();
+			Score before = base.get(entry.getKey());
+			if (before == null) {
+				System.out.printf(Locale.ROOT, "%-70s %14s %14.3f %9s  %s%n", entry.getKey(), "-", now.score(), "nuevo", now.unit());
+				continue;
+			}
+			double change = before.score() == 0 ? 0 : (now.score() - before.score()) / before.score();
+			boolean higherIsBetter = "thrpt".equals(now.mode());
+			double worse = higherIsBetter ? before.score() - now.score() : now.score() - before.score();
+			boolean regression = worse > before.score() * threshold && worse > sanitize(before.error()) + sanitize(now.error());
+			if (regression) {
+				regressions++;
+			}
+			System.out.printf(Locale.ROOT, "%-70s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), before.score(),
+					now.score(), change * 100, now.unit(), regression ? "  REGRESIÓN" : "");
+		}
+		for (String name : base.keySet()) {
+			if (!current.containsKey(name)) {
+				System.out.printf(Locale.ROOT, "%-70s %14s%n", name, "eliminado");
+			}
+		}
+		if (regressions > 0) {
+			System.out.printf(Locale.ROOT, "%d regresiones por encima del %.0f %%%n", regressions, threshold * 100);
+			System.exit(1);
+		}
+	}
+
+	private static Map<String, Score> read(File file) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<>();
+		for (JsonNode result : new ObjectMapper().readTree(file)) {
+			StringBuilder name = new StringBuilder(result.path("benchmark").asText());
+			Map<String, String> params = new TreeMap<>();
+			for (Map.Entry<String, JsonNode> param : result.path("params").properties()) {
+				params.put(param.getKey(), param.getValue().asText());
+			}
+			params.forEach((key, value) -> name.append(' ').append(key).append('=').append(value));
+			JsonNode metric = result.path("primaryMetric");
+			scores.put(name.toString().replace("com.frida.productsdemo.", ""), new Score(result.path("mode").asText(),
+					metric.path("score").asDouble(), metric.path("scoreError").asDouble(), metric.path("scoreUnit").asText()));
+		}
+		return scores;
+	}
+
+	/**
+	 * JMH da NaN como error cuando solo hay una iteración.
+	 */
+	private static double sanitize(double error) {
+		return Double.isNaN(error) ? 0 : error;
+	}
+}
@@ -0,0 +1,101 @@
+package com.frida.productsdemo;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import javax.imageio.ImageIO;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Catálogos sintéticos para los benchmarks, con tamaños y textos parecidos a
+ * los reales: nombres de 4 palabras, 300 marcas, descripciones de 100 a 200
+ * caracteres (la columna admite 255) y precios con céntimos. Con la misma semilla se genera
+ * siempre el mismo catálogo, para comparar resultados entre commits.
+ */
+public final class BenchmarkData {
+
+	private static final String[] TIPOS = { "Zapatilla", "Camiseta", "Pantalón", "Chaqueta", "Mochila", "Reloj",
+			"Auriculares", "Altavoz", "Teclado", "Ratón", "Monitor", "Lámpara", "Sartén", "Cafetera", "Taladro",
+			"Bicicleta", "Casco", "Raqueta", "Perfume", "Gafas" };
+	private static final String[] ADJETIVOS = { "deportiva", "clásica", "urbana", "ligera", "impermeable",
+			"inalámbrico", "profesional", "compacto", "premium", "térmica", "ergonómico", "plegable" };
+	private static final String[] COLORES = { "negro", "blanco", "rojo", "azul", "verde", "gris", "rosa" };
+	private static final String[] DEPARTAMENTOS = { "Deportes", "Moda", "Electrónica", "Hogar", "Bricolaje", "Belleza" };
+	private static final String FRASE = "Fabricado con materiales de alta calidad y pensado para el uso diario. ";
+
+	private BenchmarkData() { /* Previene instanciación */ }
+
+	/**
+	 * @param size Número de productos
+	 * @param seed Semilla; la misma semilla da el mismo catálogo
+	 * @return Productos sin ID, con referencias únicas BENCH-&lt;seed&gt;-&lt;n&gt;
+	 */
+	public static List<Product> catalog(int size, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<Product> products = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			products.add(product("BENCH-" + seed + "-" + i, random));
+		}
+		return products;
+	}
+
+	public static Product product(String referencia, SplittableRandom random) {
+		String tipo = pick(TIPOS, random);
+		String adjetivo = pick(ADJETIVOS, random);
+		String color = pick(COLORES, random);
+		String modelo = (char) ('A' + random.nextInt(26)) + String.valueOf(random.nextInt(1, 10000));
+		Product product = new Product();
+		product.setReferencia(referencia);
+		product.setNombre(tipo + " " + adjetivo + " " + modelo + " " + color);
+		product.setMarca("Marca" + random.nextInt(300));
+		product.setDescripcion(tipo + " " + adjetivo + " de color " + color + ". " + FRASE.repeat(1 + random.nextInt(2)));
+		product.setPrecio(BigDecimal.valueOf(random.nextInt(100, 100000), 2));
+		product.setNumeroDisponible(random.nextInt(0, 500));
+		product.setDepartamento(pick(DEPARTAMENTOS, random));
+		return product;
+	}
+
+	private static String pick(String[] values, SplittableRandom random) {
+		return values[random.nextInt(values.length)];
+	}
+	/**
+	 * Foto de producto de 800x600 en JPEG, con degradado para que el
+	 * preprocesado de imágenes tenga trabajo real.
+	 */
+	public static byte[] sampleImage() {
+		BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, (x * 255 / image.getWidth()) << 16 | (y * 255 / image.getHeight()) << 8 | 0x80);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			ImageIO.write(image, "jpg", out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Cuerpo multipart/form-data con un único fichero JPEG en el campo {@code file}.
+	 */
+	public static byte[] multipartImage(String boundary, byte[] jpeg) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length + 256);
+		out.writeBytes(("--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"producto.jpg\"\r\n"
+				+ "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+		out.writeBytes(jpeg);
+		out.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,221 @@
+package com.frida.productsdemo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.loadtest.MockLlmServer;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Rendimiento de extremo a extremo de la API de productos: la aplicación
+ * completa (Tomcat, Spring MVC, JPA sobre H2 en memoria, cachés e índices)
+ * arranca dentro del benchmark con un catálogo sembrado por /bulk, y las
+ * llamadas al LLM van a {@link MockLlmServer}, que responde al instante para
+ * que /analize mida solo el trabajo propio (preprocesado de la imagen,
+ * petición, lectura de la respuesta y validación).
+ *
+ * Cada operación es una petición HTTP real desde varios hilos cliente; los
+ * resultados se dan en peticiones por segundo. Las altas usan referencias
+ * únicas, así que el catálogo crece durante la medida igual que en uso real.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx1g" })
+@Threads(4)
+public class CrudEndpointBenchmark {
+
+	private static final TypeReference<List<Product>> PRODUCT_LIST = new TypeReference<>() {};
+	private static final String BOUNDARY = "----jmh-benchmark-boundary";
+
+	@Param({ "10000" })
+	public int catalogSize;
+
+	private MockLlmServer llm;
+	private ConfigurableApplicationContext context;
+	private HttpClient client;
+	private ObjectMapper mapper;
+	private String baseUrl;
+	private List<Product> seeded;
+	private byte[] analyzeBody;
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Estado de cada hilo cliente: su propio generador, para no compartir uno entre hilos.
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+		SplittableRandom random;
+
+		@Setup
+		public void setup() {
+			random = new SplittableRandom(Thread.currentThread().getId());
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		try {
+			startApplication();
+		} catch (Exception | Error e) {
+			// JMH no llama a @TearDown si falla el @Setup, y los hilos de Tomcat impedirían salir
+			stop();
+			throw e;
+		}
+	}
+
+	private void startApplication() throws Exception {
+		llm = new MockLlmServer(0, MockLlmServer.Config.instant());
+		// Como argumentos de línea de comandos, para que prevalezcan sobre application.properties
+		context = new SpringApplicationBuilder(ProductsdemoApplication.class).run(
+				"--server.port=0",
+				"--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+				"--spring.jpa.hibernate.ddl-auto=create",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=WARN",
+				"--llm-url=" + llm.baseUrl(),
+				"--llm-token=bench",
+				"--analysis.cache.max-entries=0",
+				"--products.search.snapshot-file=");
+		baseUrl = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort()
+				+ "/api/products";
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		mapper = Jackson2ObjectMapperBuilder.json().build();
+
+		List<Product> catalog = BenchmarkData.catalog(catalogSize, 42);
+		for (int i = 0; i < catalog.size(); i += 1000) {
+			String result = send(HttpRequest.newBuilder(URI.create(baseUrl + "/bulk"))
+					.header("Content-Type", "application/json")
+					.POST(json(catalog.subList(i, Math.min(i + 1000, catalog.size())))), 200);
+			if (mapper.readTree(result).path("failed").asInt() > 0) {
+				throw new IllegalStateException("Filas rechazadas al sembrar el catálogo: " + result);
+			}
+		}
+		seeded = new ArrayList<>(catalogSize);
+		Long after = null;
+		while (true) {
+			String url = baseUrl + "?limit=1000" + (after == null ? "" : "&after=" + after);
+			List<Product> page = mapper.readValue(send(HttpRequest.newBuilder(URI.create(url)).GET(), 200), PRODUCT_LIST);
+			if (page.isEmpty()) {
+				break;
+			}
+			seeded.addAll(page);
+			after = page.get(page.size() - 1).getId();
+		}
+		analyzeBody = BenchmarkData.multipartImage(BOUNDARY, BenchmarkData.sampleImage());
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		if (context != null) {
+			context.close();
+		}
+		if (llm != null) {
+			llm.close();
+		}
+	}
+
+	@Benchmark
+	public String getById(Client c) throws Exception {
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + randomSeeded(c).getId())).GET(), 200);
+	}
+
+	@Benchmark
+	public String listPage(Client c) throws Exception {
+		long after = randomSeeded(c).getId();
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "?limit=100&after=" + after)).GET(), 200);
+	}
+
+	@Benchmark
+	public String searchText(Client c) throws Exception {
+		String word = randomSeeded(c).getNombre().split(" ")[0];
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "/search/text?q=" + encode(word) + "&limit=20")).GET(), 200);
+	}
+
+	@Benchmark
+	public String create(Client c) throws Exception {
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "/new"))
+				.header("Content-Type", "application/json")
+				.POST(json(newProduct(c))), 201);
+	}
+
+	@Benchmark
+	public String update(Client c) throws Exception {
+		Product product = randomSeeded(c);
+		Product changed = BenchmarkData.product(product.getReferencia(), c.random);
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + product.getId()))
+				.header("Content-Type", "application/json")
+				.PUT(json(changed)), 200);
+	}
+
+	@Benchmark
+	public String createAndDelete(Client c) throws Exception {
+		Product created = mapper.readValue(create(c), Product.class);
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + created.getId())).DELETE(), 200);
+	}
+
+	@Benchmark
+	public String analyze() throws Exception {
+		return send(HttpRequest.newBuilder(URI.create(baseUrl + "/analize"))
+				.header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(analyzeBody)), 200);
+	}
+
+	private Product randomSeeded(Client c) {
+		return seeded.get(c.random.nextInt(seeded.size()));
+	}
+
+	private Product newProduct(Client c) {
+		return BenchmarkData.product("JMH-" + sequence.incrementAndGet(), c.random);
+	}
+
+	private HttpRequest.BodyPublisher json(Object value) throws IOException {
+		return HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(value));
+	}
+
+	private String send(HttpRequest.Builder request, int expectedStatus) throws IOException, InterruptedException {
+		HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() != expectedStatus) {
+			throw new IllegalStateException(request.build().method() + " " + request.build().uri() + " -> "
+					+ response.statusCode() + ": " + response.body());
+		}
+		return response.body();
+	}
+
+	private static String encode(String text) {
+		return URLEncoder.encode(text, StandardCharsets.UTF_8);
+	}
+}
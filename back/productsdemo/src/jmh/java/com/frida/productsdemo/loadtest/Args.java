@@ -0,0 +1,67 @@
+package com.frida.productsdemo.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opciones de línea de comandos con la forma {@code --clave=valor}.
+ *
+ * Las duraciones admiten ms, s y m ({@code 250ms}, {@code 1.5s}, {@code 2m})
+ * o el formato ISO-8601 de {@link Duration} ({@code PT30S}).
+ */
+final class Args {
+
+	private final Map<String, String> values = new LinkedHashMap<>();
+
+	Args(String[] args) {
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				throw new IllegalArgumentException("Opción no válida (se espera --clave=valor): " + arg);
+			}
+			int eq = arg.indexOf('=');
+			if (eq < 0) {
+				values.put(arg.substring(2), "true");
+			} else {
+				values.put(arg.substring(2, eq), arg.substring(eq + 1));
+			}
+		}
+	}
+
+	String string(String key, String defaultValue) {
+		return values.getOrDefault(key, defaultValue);
+	}
+
+	int integer(String key, int defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	double decimal(String key, double defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	Duration duration(String key, Duration defaultValue) {
+		String value = values.get(key);
+		return value == null ? defaultValue : parseDuration(value);
+	}
+
+	static Duration parseDuration(String text) {
+		String value = text.trim().toLowerCase();
+		if (value.startsWith("pt")) {
+			return Duration.parse(value);
+		}
+		if (value.endsWith("ms")) {
+			return Duration.ofNanos(Math.round(Double.parseDouble(value.substring(0, value.length() - 2)) * 1e6));
+		}
+		if (value.endsWith("s")) {
+			return Duration.ofNanos(Math.round(Double.parseDouble(value.substring(0, value.length() - 1)) * 1e9));
+		}
+		if (value.endsWith("m")) {
+			return Duration.ofNanos(Math.round(Double.parseDouble(value.substring(0, value.length() - 1)) * 60e9));
+		}
+		// Sin unidad, milisegundos
+		return Duration.ofNanos(Math.round(Double.parseDouble(value) * 1e6));
+	}
+}
@@ -0,0 +1,69 @@
+package com.frida.productsdemo.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribución de latencias del servidor simulado.
+ *
+ * Se describe con un texto:
+ *
+ * - {@code none}: sin espera
+ * - {@code fixed:800ms} (o solo {@code 800ms}): siempre la misma
+ * - {@code uniform:200ms,2s}: uniforme entre los dos valores
+ * - {@code exponential:1s}: exponencial con esa media
+ * - {@code lognormal:1.5s,8s}: log-normal con esa mediana y ese percentil 99,
+ *   la forma habitual de las latencias de un LLM (la mayoría cerca de la
+ *   mediana y una cola larga)
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+	/** Percentil 99 de la normal estándar. */
+	double Z_99 = 2.3263478740408408;
+
+	/**
+	 * @return Siguiente latencia en milisegundos
+	 */
+	long sampleMillis();
+
+	static LatencyDistribution parse(String spec) {
+		String text = spec.trim().toLowerCase();
+		if (text.isEmpty() || text.equals("none") || text.equals("0")) {
+			return () -> 0;
+		}
+		int colon = text.indexOf(':');
+		String type = colon < 0 ? "fixed" : text.substring(0, colon);
+		String[] params = (colon < 0 ? text : text.substring(colon + 1)).split(",");
+		switch (type) {
+			case "fixed": {
+				long millis = millis(params[0]);
+				return () -> millis;
+			}
+			case "uniform": {
+				long min = millis(params[0]);
+				long max = millis(params[1]);
+				return () -> min + ThreadLocalRandom.current().nextLong(max - min + 1);
+			}
+			case "exponential": {
+				double mean = millis(params[0]);
+				return () -> Math.round(-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+			}
+			case "lognormal": {
+				double mu = Math.log(millis(params[0]));
+				double sigma = (Math.log(millis(params[1])) - mu) / Z_99;
+				if (sigma < 0) {
+					throw new IllegalArgumentException("El percentil 99 debe ser mayor que la mediana: " + spec);
+				}
+				return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+			}
+			default:
+				throw new IllegalArgumentException("Distribución de latencia desconocida: " + spec);
+		}
+	}
+
+	private static long millis(String value) {
+		Duration duration = Args.parseDuration(value);
+		return duration.toMillis();
+	}
+}
@@ -0,0 +1,509 @@
+package com.frida.productsdemo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.BenchmarkData;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Generador de carga contra una instancia de la aplicación ya arrancada, con
+ * una mezcla configurable de operaciones CRUD y de análisis de imágenes.
+ *
+ * Siembra un catálogo propio (o usa el existente), lanza la carga durante el
+ * tiempo indicado y muestra, por operación y en total, peticiones por
+ * segundo, errores por código y percentiles de latencia (p50, p90, p99,
+ * p99.9 y máximo). Hay dos modelos de carga:
+ *
+ * - Cerrado ({@code --rate=0}): {@code --concurrency} clientes que lanzan una
+ *   petición tras otra. Mide la capacidad máxima.
+ * - Abierto ({@code --rate=N}): N peticiones por segundo a intervalos fijos,
+ *   con hasta {@code --concurrency} en vuelo. La latencia se mide desde el
+ *   instante en que debía salir la petición, así que incluye la espera si el
+ *   servidor se queda atrás (sin omisión coordinada). Es el que sirve para
+ *   planificar capacidad: qué latencia hay a un ritmo dado.
+ *
+ * Para el análisis conviene apuntar la aplicación a {@link MockLlmServer} con
+ * la latencia y los errores que se quieran simular.
+ *
+ * Opciones ({@code --clave=valor}):
+ *
+ * - {@code target}: URL base de la aplicación (http://localhost:8080)
+ * - {@code duration}, {@code warmup}: duración medida y calentamiento previo (60s y 10s)
+ * - {@code concurrency}: clientes o peticiones en vuelo (16)
+ * - {@code rate}: peticiones por segundo en total; 0 para el modelo cerrado (0)
+ * - {@code mix}: pesos por operación (get=40,list=10,search=15,create=10,update=10,delete=5,analyze=10)
+ *   entre get, list, search, create, update, delete, analyze y analyze-stream
+ * - {@code seed}: productos a sembrar antes de empezar; 0 usa los existentes (1000)
+ * - {@code image}: JPEG para el análisis (por defecto uno generado)
+ * - {@code distinct-images}: hacer única cada imagen (añadiendo bytes tras su fin) para
+ *   que la caché de análisis no responda por el LLM (true)
+ * - {@code cleanup}: borrar al terminar los productos creados por la prueba (true)
+ * - {@code llm-stats}: URL de /stats del servidor simulado, para incluirla en el informe
+ * - {@code out}: fichero donde guardar el informe en JSON
+ *
+ *   mvn -Pjmh test-compile exec:exec@load-test -Dloadtest.args="--rate=50 --duration=2m --mix=get=70,analyze=30"
+ */
+public final class LoadGenerator {
+
+	private enum Operation {
+		GET("get"), LIST("list"), SEARCH("search"), CREATE("create"), UPDATE("update"), DELETE("delete"),
+		ANALYZE("analyze"), ANALYZE_STREAM("analyze-stream");
+
+		final String key;
+
+		Operation(String key) {
+			this.key = key;
+		}
+
+		static Operation of(String key) {
+			for (Operation operation : values()) {
+				if (operation.key.equals(key)) {
+					return operation;
+				}
+			}
+			throw new IllegalArgumentException("Operación desconocida en --mix: " + key);
+		}
+	}
+
+	/** Latencias hasta 10 minutos, en microsegundos, con 3 cifras significativas. */
+	private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+	private static final String BOUNDARY = "----load-test-boundary";
+	private static final TypeReference<List<Product>> PRODUCT_LIST = new TypeReference<>() {};
+	/** Código con el que se cuentan los fallos de red o tiempos agotados. */
+	private static final int IO_ERROR = -1;
+
+	private final String api;
+	private final Duration duration;
+	private final Duration warmup;
+	private final int concurrency;
+	private final double rate;
+	private final Operation[] mix;
+	private final int seed;
+	private final boolean cleanup;
+	private final String llmStats;
+	private final String out;
+	private final byte[] image;
+	private final boolean distinctImages;
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+	private final String runId = Long.toString(System.currentTimeMillis(), 36).toUpperCase(Locale.ROOT);
+	private final AtomicLong sequence = new AtomicLong();
+
+	private List<Product> catalog = new ArrayList<>();
+	private final List<Long> seededIds = new ArrayList<>();
+	/** Productos creados durante la prueba y aún no borrados. */
+	private final ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+
+	private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+	private final Map<Operation, Map<Integer, AtomicLong>> failures = new EnumMap<>(Operation.class);
+
+	LoadGenerator(Args args) throws IOException {
+		api = args.string("target", "http://localhost:8080").replaceAll("/+$", "") + "/api/products";
+		duration = args.duration("duration", Duration.ofSeconds(60));
+		warmup = args.duration("warmup", Duration.ofSeconds(10));
+		concurrency = args.integer("concurrency", 16);
+		rate = args.decimal("rate", 0);
+		mix = parseMix(args.string("mix", "get=40,list=10,search=15,create=10,update=10,delete=5,analyze=10"));
+		seed = args.integer("seed", 1000);
+		cleanup = Boolean.parseBoolean(args.string("cleanup", "true"));
+		llmStats = args.string("llm-stats", null);
+		out = args.string("out", null);
+		String imageFile = args.string("image", null);
+		image = imageFile == null ? BenchmarkData.sampleImage() : Files.readAllBytes(Path.of(imageFile));
+		distinctImages = Boolean.parseBoolean(args.string("distinct-images", "true"));
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+			failures.put(operation, new ConcurrentHashMap<>());
+		}
+	}
+
+	public static void main(String[] argv) throws Exception {
+		LoadGenerator generator = new LoadGenerator(new Args(argv));
+		generator.prepare();
+		try {
+			generator.run();
+		} finally {
+			if (generator.cleanup) {
+				generator.cleanup();
+			}
+		}
+		generator.report();
+	}
+
+	/**
+	 * Siembra el catálogo de la prueba o carga los productos existentes.
+	 */
+	private void prepare() throws IOException, InterruptedException {
+		if (seed > 0) {
+			String prefix = "LOAD-" + runId + "-";
+			List<Product> products = BenchmarkData.catalog(seed, 1);
+			for (int i = 0; i < products.size(); i++) {
+				products.get(i).setReferencia(prefix + i);
+			}
+			for (int i = 0; i < products.size(); i += 1000) {
+				String result = send(HttpRequest.newBuilder(URI.create(api + "/bulk"))
+						.header("Content-Type", "application/json")
+						.POST(json(products.subList(i, Math.min(i + 1000, products.size())))));
+				if (mapper.readTree(result).path("failed").asInt() > 0) {
+					throw new IllegalStateException("Filas rechazadas al sembrar el catálogo: " + result);
+				}
+			}
+			catalog = fetch(api + "/search?referenciaPrefix=" + encode(prefix) + "&limit=1000", "cursor", seed);
+		} else {
+			catalog = fetch(api + "?limit=1000", "after", 10_000);
+		}
+		if (catalog.isEmpty()) {
+			throw new IllegalStateException("El catálogo está vacío: use --seed para sembrarlo");
+		}
+		for (Product product : catalog) {
+			seededIds.add(product.getId());
+		}
+		System.out.printf(Locale.ROOT, "Catálogo de %d productos; %s durante %ds (+%ds de calentamiento)%n",
+				catalog.size(), rate > 0 ? String.format(Locale.ROOT, "%.1f peticiones/s", rate)
+						: concurrency + " clientes",
+				duration.toSeconds(), warmup.toSeconds());
+	}
+
+	/**
+	 * Recorre las páginas de {@code url} siguiendo la cabecera X-Next-Cursor.
+	 */
+	private List<Product> fetch(String url, String cursorParam, int max) throws IOException, InterruptedException {
+		List<Product> products = new ArrayList<>();
+		String cursor = null;
+		while (products.size() < max) {
+			String page = cursor == null ? url : url + "&" + cursorParam + "=" + encode(cursor);
+			HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(page)).GET().build(),
+					HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) {
+				throw new IllegalStateException("GET " + page + " -> " + response.statusCode() + ": " + response.body());
+			}
+			products.addAll(mapper.readValue(response.body(), PRODUCT_LIST));
+			cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+			if (cursor == null) {
+				break;
+			}
+		}
+		return products;
+	}
+
+	private void run() throws InterruptedException {
+		long start = System.nanoTime();
+		long measureStart = start + warmup.toNanos();
+		long end = measureStart + duration.toNanos();
+		long interval = rate > 0 ? (long) (1e9 / rate) : 0;
+		AtomicLong ticket = new AtomicLong();
+
+		List<Thread> workers = new ArrayList<>(concurrency);
+		for (int w = 0; w < concurrency; w++) {
+			SplittableRandom random = new SplittableRandom(w);
+			Thread worker = new Thread(() -> {
+				while (true) {
+					long intended;
+					if (interval > 0) {
+						intended = start + ticket.getAndIncrement() * interval;
+						if (intended >= end) {
+							return;
+						}
+						long wait = intended - System.nanoTime();
+						if (wait > 0) {
+							LockSupport.parkNanos(wait);
+						}
+					} else {
+						intended = System.nanoTime();
+						if (intended >= end) {
+							return;
+						}
+					}
+					Operation operation = mix[random.nextInt(mix.length)];
+					Long target = null;
+					if (operation == Operation.DELETE) {
+						target = created.poll();
+						if (target == null) {
+							// Aún no hay nada creado por la prueba que borrar
+							operation = Operation.CREATE;
+						}
+					}
+					int status = execute(operation, target, random);
+					if (intended >= measureStart) {
+						record(operation, status, System.nanoTime() - intended);
+					}
+				}
+			}, "load-" + w);
+			worker.start();
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+	}
+
+	/**
+	 * @param target Producto a borrar, en {@link Operation#DELETE}
+	 * @return Código HTTP de la respuesta, o {@link #IO_ERROR}
+	 */
+	private int execute(Operation operation, Long target, SplittableRandom random) {
+		try {
+			switch (operation) {
+				case GET:
+					return status(HttpRequest.newBuilder(URI.create(api + "/" + randomId(random))).GET());
+				case LIST:
+					return status(HttpRequest.newBuilder(URI.create(api + "?limit=100&after=" + randomId(random))).GET());
+				case SEARCH: {
+					String word = catalog.get(random.nextInt(catalog.size())).getNombre().split(" ")[0];
+					return status(HttpRequest.newBuilder(URI.create(api + "/search/text?q=" + encode(word) + "&limit=20")).GET());
+				}
+				case CREATE: {
+					HttpResponse<String> response = create(random);
+					if (response.statusCode() == 201) {
+						created.add(mapper.readValue(response.body(), Product.class).getId());
+					}
+					return response.statusCode();
+				}
+				case UPDATE: {
+					Product product = catalog.get(random.nextInt(catalog.size()));
+					Product changed = BenchmarkData.product(product.getReferencia(), random);
+					return status(HttpRequest.newBuilder(URI.create(api + "/" + product.getId()))
+							.header("Content-Type", "application/json")
+							.PUT(json(changed)));
+				}
+				case DELETE:
+					return status(HttpRequest.newBuilder(URI.create(api + "/" + target)).DELETE());
+				case ANALYZE:
+					return status(HttpRequest.newBuilder(URI.create(api + "/analize"))
+							.header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+							.POST(HttpRequest.BodyPublishers.ofByteArray(analyzeBody())));
+				case ANALYZE_STREAM:
+					return analyzeStream();
+				default:
+					throw new IllegalStateException(operation.name());
+			}
+		} catch (IOException e) {
+			return IO_ERROR;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return IO_ERROR;
+		}
+	}
+
+	private HttpResponse<String> create(SplittableRandom random) throws IOException, InterruptedException {
+		Product product = BenchmarkData.product("LOAD-" + runId + "-N" + sequence.incrementAndGet(), random);
+		return client.send(HttpRequest.newBuilder(URI.create(api + "/new"))
+				.header("Content-Type", "application/json")
+				.POST(json(product)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	/**
+	 * Análisis en streaming: la latencia es la del evento final, no la del primer fragmento.
+	 */
+	private int analyzeStream() throws IOException, InterruptedException {
+		HttpResponse<Stream<String>> response = client.send(
+				HttpRequest.newBuilder(URI.create(api + "/analize/stream"))
+						.header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+						.POST(HttpRequest.BodyPublishers.ofByteArray(analyzeBody())).build(),
+				HttpResponse.BodyHandlers.ofLines());
+		boolean failed;
+		try (Stream<String> lines = response.body()) {
+			failed = lines.anyMatch(line -> line.startsWith("event:") && line.substring(6).trim().equals("error"));
+		}
+		// El error llega como evento dentro de un 200
+		return failed ? 502 : response.statusCode();
+	}
+
+	/**
+	 * Cuerpo multipart con la imagen; si se piden imágenes distintas, con un
+	 * contador tras el final del JPEG, que los decodificadores ignoran pero
+	 * cambia la clave de la caché de análisis.
+	 */
+	private byte[] analyzeBody() {
+		byte[] jpeg = image;
+		if (distinctImages) {
+			byte[] suffix = ("LOAD-" + runId + "-" + sequence.incrementAndGet()).getBytes(StandardCharsets.US_ASCII);
+			jpeg = Arrays.copyOf(image, image.length + suffix.length);
+			System.arraycopy(suffix, 0, jpeg, image.length, suffix.length);
+		}
+		return BenchmarkData.multipartImage(BOUNDARY, jpeg);
+	}
+
+	private int status(HttpRequest.Builder request) throws IOException, InterruptedException {
+		return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private String send(HttpRequest.Builder request) throws IOException, InterruptedException {
+		HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() / 100 != 2) {
+			throw new IllegalStateException(request.build().method() + " " + request.build().uri() + " -> "
+					+ response.statusCode() + ": " + response.body());
+		}
+		return response.body();
+	}
+
+	private void record(Operation operation, int status, long nanos) {
+		latencies.get(operation).recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+		if (status < 200 || status >= 400) {
+			failures.get(operation).computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Borra los productos sembrados y los creados durante la prueba.
+	 */
+	private void cleanup() throws IOException, InterruptedException {
+		List<Long> ids = new ArrayList<>(created);
+		if (seed > 0) {
+			ids.addAll(seededIds);
+		}
+		for (int i = 0; i < ids.size(); i += 1000) {
+			send(HttpRequest.newBuilder(URI.create(api + "/bulk"))
+					.header("Content-Type", "application/json")
+					.method("DELETE", json(ids.subList(i, Math.min(i + 1000, ids.size())))));
+		}
+	}
+
+	private void report() throws IOException, InterruptedException {
+		double seconds = duration.toNanos() / 1e9;
+		Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+		Map<String, Object> operations = new LinkedHashMap<>();
+		List<String> errorLines = new ArrayList<>();
+		long totalErrors = 0;
+
+		System.out.printf(Locale.ROOT, "%n%-15s %9s %8s %9s %9s %9s %9s %9s %9s%n",
+				"Operación", "Peticiones", "Errores", "Pet/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "máx ms");
+		for (Operation operation : Operation.values()) {
+			Histogram histogram = latencies.get(operation);
+			if (histogram.getTotalCount() == 0) {
+				continue;
+			}
+			total.add(histogram);
+			Map<Integer, Long> errors = new TreeMap<>();
+			failures.get(operation).forEach((status, count) -> errors.put(status, count.get()));
+			long errorCount = errors.values().stream().mapToLong(Long::longValue).sum();
+			totalErrors += errorCount;
+			print(operation.key, histogram, errorCount, seconds);
+			if (errorCount > 0) {
+				errorLines.add("Errores de " + operation.key + " por código (-1 = red o timeout): " + errors);
+			}
+			operations.put(operation.key, summary(histogram, errorCount, seconds, errors));
+		}
+		print("total", total, totalErrors, seconds);
+		errorLines.forEach(System.out::println);
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		Map<String, Object> setup = new LinkedHashMap<>();
+		setup.put("target", api);
+		setup.put("durationSeconds", seconds);
+		setup.put("warmupSeconds", warmup.toNanos() / 1e9);
+		setup.put("concurrency", concurrency);
+		setup.put("rate", rate);
+		setup.put("catalogSize", catalog.size());
+		report.put("setup", setup);
+		report.put("operations", operations);
+		report.put("total", summary(total, totalErrors, seconds, Map.of()));
+		if (llmStats != null) {
+			HttpResponse<String> stats = client.send(HttpRequest.newBuilder(URI.create(llmStats)).GET().build(),
+					HttpResponse.BodyHandlers.ofString());
+			System.out.println("LLM simulado: " + stats.body());
+			report.put("llm", mapper.readTree(stats.body()));
+		}
+		if (out != null) {
+			mapper.writerWithDefaultPrettyPrinter().writeValue(new File(out), report);
+			System.out.println("Informe guardado en " + out);
+		}
+	}
+
+	private static void print(String name, Histogram histogram, long errors, double seconds) {
+		System.out.printf(Locale.ROOT, "%-15s %9d %8d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name,
+				histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+				millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+				histogram.getMaxValue() / 1000.0);
+	}
+
+	private static Map<String, Object> summary(Histogram histogram, long errors, double seconds,
+			Map<Integer, Long> errorsByStatus) {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("requests", histogram.getTotalCount());
+		summary.put("errors", errors);
+		summary.put("throughput", histogram.getTotalCount() / seconds);
+		Map<String, Double> percentiles = new LinkedHashMap<>();
+		percentiles.put("p50", millis(histogram, 50));
+		percentiles.put("p90", millis(histogram, 90));
+		percentiles.put("p99", millis(histogram, 99));
+		percentiles.put("p99.9", millis(histogram, 99.9));
+		percentiles.put("max", histogram.getMaxValue() / 1000.0);
+		percentiles.put("mean", histogram.getMean() / 1000.0);
+		summary.put("latencyMillis", percentiles);
+		if (!errorsByStatus.isEmpty()) {
+			summary.put("errorsByStatus", errorsByStatus);
+		}
+		return summary;
+	}
+
+	private static double millis(Histogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	/**
+	 * Convierte "get=40,analyze=10" en una tabla en la que cada operación aparece tantas veces como su peso.
+	 */
+	private static Operation[] parseMix(String spec) {
+		List<Operation> table = new ArrayList<>();
+		for (String entry : spec.split(",")) {
+			String[] parts = entry.trim().split("=");
+			Operation operation = Operation.of(parts[0].trim());
+			int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+			for (int i = 0; i < weight; i++) {
+				table.add(operation);
+			}
+		}
+		if (table.isEmpty()) {
+			throw new IllegalArgumentException("--mix no tiene ninguna operación con peso");
+		}
+		return table.toArray(new Operation[0]);
+	}
+
+	private Long randomId(SplittableRandom random) {
+		return seededIds.get(random.nextInt(seededIds.size()));
+	}
+
+	private HttpRequest.BodyPublisher json(Object value) throws IOException {
+		return HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(value));
+	}
+
+	private static String encode(String text) {
+		return URLEncoder.encode(text, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,331 @@
+package com.frida.productsdemo.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.BenchmarkData;
+import com.frida.productsdemo.models.LLmUsage;
+import com.frida.productsdemo.models.LlmChoice;
+import com.frida.productsdemo.models.LlmResponse;
+import com.frida.productsdemo.models.LlmResponseMessage;
+import com.frida.productsdemo.models.Product;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Servidor local que sustituye al LLM de Frida en pruebas de carga y benchmarks.
+ *
+ * Implementa {@code POST /v1/chat/completions} tal como lo usa
+ * {@code FridaLlmService}: responde con {@link LlmResponse} y
+ * {@link LLmUsage}, o en streaming con chunks SSE ({@code delta}), un chunk
+ * final con el {@code usage} y {@code [DONE]}. El contenido es un producto
+ * distinto en cada respuesta dentro de un bloque de código, como el que
+ * devuelve el modelo real.
+ *
+ * Se puede configurar la latencia ({@link LatencyDistribution}), la tasa de
+ * errores HTTP y de respuestas que no son un producto (para ejercitar
+ * reintentos, circuito y escalado entre modelos), la proporción de aciertos
+ * de la caché de prompts y el ritmo del streaming. {@code GET /stats}
+ * devuelve los contadores de peticiones.
+ *
+ * Desde línea de comandos:
+ *
+ *   mvn -Pjmh test-compile exec:exec@llm-mock -Dloadtest.args="--port=9911 --latency=lognormal:1.5s,6s --error-rate=0.02"
+ *
+ * y arrancar la aplicación con {@code --llm-url=http://127.0.0.1:9911}.
+ */
+public final class MockLlmServer implements AutoCloseable {
+
+	/**
+	 * Comportamiento del servidor.
+	 *
+	 * @param latency Tiempo hasta la respuesta completa
+	 * @param errorLatency Tiempo hasta una respuesta de error
+	 * @param errorRate Proporción de peticiones que fallan con uno de {@code errorStatuses}
+	 * @param errorStatuses Códigos de error, elegidos al azar (429 incluye Retry-After)
+	 * @param invalidRate Proporción de respuestas 200 cuyo contenido no es un producto
+	 * @param cacheHitRatio Proporción de peticiones cuyo prefijo del prompt sale de la caché
+	 * @param firstTokenRatio En streaming, parte de la latencia hasta el primer chunk
+	 * @param chunkChars En streaming, caracteres por chunk
+	 */
+	public record Config(LatencyDistribution latency, LatencyDistribution errorLatency, double errorRate,
+			int[] errorStatuses, double invalidRate, double cacheHitRatio, double firstTokenRatio, int chunkChars) {
+
+		/**
+		 * Responde al instante y sin errores: mide solo a la aplicación.
+		 */
+		public static Config instant() {
+			return new Config(() -> 0, () -> 0, 0, new int[] { 503 }, 0, 0.9, 0.2, 16);
+		}
+
+		static Config from(Args args) {
+			String[] statuses = args.string("error-status", "429,500,503").split(",");
+			int[] codes = new int[statuses.length];
+			for (int i = 0; i < statuses.length; i++) {
+				codes[i] = Integer.parseInt(statuses[i].trim());
+			}
+			return new Config(
+					LatencyDistribution.parse(args.string("latency", "lognormal:1500ms,6s")),
+					LatencyDistribution.parse(args.string("error-latency", "50ms")),
+					args.decimal("error-rate", 0),
+					codes,
+					args.decimal("invalid-rate", 0),
+					args.decimal("cache-hit-ratio", 0.9),
+					args.decimal("first-token-ratio", 0.2),
+					args.integer("chunk-chars", 16));
+		}
+	}
+
+	/** Parte del prompt que es prefijo estable (instrucciones) y por tanto cacheable. */
+	private static final double CACHEABLE_PREFIX = 0.9;
+	private static final String INVALID_CONTENT = "Lo siento, no puedo identificar ningún producto en la imagen.";
+
+	private final Config config;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ObjectMapper mapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong streamed = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong invalid = new AtomicLong();
+	private final AtomicLong products = new AtomicLong();
+
+	/**
+	 * Arranca el servidor en la interfaz local.
+	 *
+	 * @param port Puerto, o 0 para uno libre
+	 */
+	public MockLlmServer(int port, Config config) throws IOException {
+		this.config = config;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		// Un hilo por petición: las esperas simuladas no deben limitar la concurrencia
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "mock-llm");
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(executor);
+		server.createContext("/v1/chat/completions", this::completions);
+		server.createContext("/stats", this::stats);
+		server.start();
+	}
+
+	public static void main(String[] argv) throws Exception {
+		Args args = new Args(argv);
+		MockLlmServer server = new MockLlmServer(args.integer("port", 9911), Config.from(args));
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		System.out.println("LLM simulado en " + server.baseUrl() + " (estadísticas en " + server.baseUrl() + "/stats)");
+		Thread.currentThread().join();
+	}
+
+	/**
+	 * @return URL base para la propiedad {@code llm-url}
+	 */
+	public String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * @return Peticiones recibidas, en streaming, con error y con respuesta no válida
+	 */
+	public Map<String, Long> getStats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("requests", requests.get());
+		stats.put("streamed", streamed.get());
+		stats.put("errors", errors.get());
+		stats.put("invalid", invalid.get());
+		return stats;
+	}
+
+	private void completions(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			byte[] body;
+			try (InputStream in = exchange.getRequestBody()) {
+				body = in.readAllBytes();
+			}
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, error(405, "Method not allowed"));
+				return;
+			}
+			requests.incrementAndGet();
+			JsonNode request = mapper.readTree(body);
+			String model = request.path("model").asText("mock");
+			boolean stream = request.path("stream").asBoolean(false);
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			if (random.nextDouble() < config.errorRate()) {
+				errors.incrementAndGet();
+				int status = config.errorStatuses()[random.nextInt(config.errorStatuses().length)];
+				sleep(config.errorLatency().sampleMillis());
+				if (status == 429) {
+					exchange.getResponseHeaders().set("Retry-After", "1");
+				}
+				send(exchange, status, error(status, "Simulated error"));
+				return;
+			}
+
+			String content;
+			if (random.nextDouble() < config.invalidRate()) {
+				invalid.incrementAndGet();
+				content = INVALID_CONTENT;
+			} else {
+				content = "Aquí tienes:\n```json\n" + productJson() + "\n```";
+			}
+			LLmUsage usage = usage(body.length, content.length(), random);
+			long latency = config.latency().sampleMillis();
+			if (stream) {
+				streamed.incrementAndGet();
+				stream(exchange, model, content, usage, latency);
+			} else {
+				sleep(latency);
+				LlmResponse response = response(id(), model, "chat.completion");
+				LlmChoice choice = new LlmChoice();
+				choice.setMessage(message(content));
+				choice.setFinish_reason("stop");
+				response.setChoices(List.of(choice));
+				response.setUsage(usage);
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				send(exchange, 200, mapper.writeValueAsBytes(response));
+			}
+		}
+	}
+
+	private void stream(HttpExchange exchange, String model, String content, LLmUsage usage, long latency)
+			throws IOException {
+		List<String> chunks = new ArrayList<>();
+		for (int i = 0; i < content.length(); i += config.chunkChars()) {
+			chunks.add(content.substring(i, Math.min(content.length(), i + config.chunkChars())));
+		}
+		String id = id();
+		long firstToken = Math.round(latency * config.firstTokenRatio());
+		long perChunk = chunks.size() <= 1 ? 0 : (latency - firstToken) / (chunks.size() - 1);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream out = exchange.getResponseBody();
+		sleep(firstToken);
+		for (int i = 0; i < chunks.size(); i++) {
+			if (i > 0) {
+				sleep(perChunk);
+			}
+			LlmResponse chunk = response(id, model, "chat.completion.chunk");
+			LlmChoice choice = new LlmChoice();
+			choice.setDelta(message(chunks.get(i)));
+			chunk.setChoices(List.of(choice));
+			event(out, mapper.writeValueAsString(chunk));
+		}
+		LlmResponse last = response(id, model, "chat.completion.chunk");
+		last.setChoices(List.of());
+		last.setUsage(usage);
+		event(out, mapper.writeValueAsString(last));
+		event(out, "[DONE]");
+	}
+
+	private void stats(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			send(exchange, 200, mapper.writeValueAsBytes(getStats()));
+		}
+	}
+
+	/**
+	 * Producto distinto en cada respuesta, para que cachés e índices no vean siempre el mismo.
+	 */
+	private String productJson() throws IOException {
+		long n = products.incrementAndGet();
+		Product product = BenchmarkData.product("MOCK-" + n, new SplittableRandom(n));
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("referencia", product.getReferencia());
+		json.put("nombre", product.getNombre());
+		json.put("marca", product.getMarca());
+		json.put("descripcion", product.getDescripcion());
+		json.put("precio", product.getPrecio());
+		json.put("numeroDisponible", product.getNumeroDisponible());
+		json.put("departamento", product.getDepartamento());
+		return mapper.writeValueAsString(json);
+	}
+
+	/**
+	 * Tokens estimados a unos 4 caracteres por token; la imagen en base64 cuenta como texto.
+	 */
+	private LLmUsage usage(int requestBytes, int contentChars, ThreadLocalRandom random) {
+		int prompt = Math.max(1, requestBytes / 4);
+		int cacheable = (int) (prompt * CACHEABLE_PREFIX);
+		boolean hit = random.nextDouble() < config.cacheHitRatio();
+		LLmUsage usage = new LLmUsage();
+		usage.setPrompt_tokens(prompt);
+		usage.setCompletion_tokens(Math.max(1, contentChars / 4));
+		usage.setTotal_tokens(usage.getPrompt_tokens() + usage.getCompletion_tokens());
+		usage.setCache_read_input_tokens(hit ? cacheable : 0);
+		usage.setCache_write_input_tokens(hit ? 0 : cacheable);
+		return usage;
+	}
+
+	private static String id() {
+		return "mock-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+	}
+
+	private static LlmResponse response(String id, String model, String object) {
+		LlmResponse response = new LlmResponse();
+		response.setId(id);
+		response.setObject(object);
+		response.setCreated(System.currentTimeMillis() / 1000);
+		response.setModel(model);
+		return response;
+	}
+
+	private static LlmResponseMessage message(String content) {
+		LlmResponseMessage message = new LlmResponseMessage();
+		message.setRole("assistant");
+		message.setContent(content);
+		return message;
+	}
+
+	private byte[] error(int status, String message) throws IOException {
+		return mapper.writeValueAsBytes(Map.of("error", Map.of("message", message, "type", "mock_error", "code", status)));
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	private static void event(OutputStream out, String data) throws IOException {
+		out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
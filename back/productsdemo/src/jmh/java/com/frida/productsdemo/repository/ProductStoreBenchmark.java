@@ -0,0 +1,178 @@
+package com.frida.productsdemo.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.frida.productsdemo.BenchmarkData;
+import com.frida.productsdemo.ProductsdemoApplication;
+import com.frida.productsdemo.entity.ProductDto;
+import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.services.ProductMapper;
+
+/**
+ * Compara los dos {@link ProductStore} con las operaciones puntuales que usan
+ * los servicios: lecturas por ID y referencia, una página por keyset, altas,
+ * actualizaciones completas y ajustes de stock.
+ *
+ * Arranca el contexto de Spring sin servidor web, con H2 en memoria para JPA
+ * y un fichero MVStore temporal mapeado en memoria, y siembra el mismo
+ * catálogo en ambos. Las escrituras van dentro de una transacción, como en los
+ * servicios. Los resultados se dan en operaciones por segundo desde varios
+ * hilos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx1g" })
+@Threads(4)
+public class ProductStoreBenchmark {
+
+	@Param({ "jpa", "mvstore" })
+	public String store;
+
+	@Param({ "10000" })
+	public int catalogSize;
+
+	private Path directory;
+	private ConfigurableApplicationContext context;
+	private ProductStore productStore;
+	private ProductMapper productMapper;
+	private TransactionTemplate transaction;
+	private long[] ids;
+	private String[] referencias;
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Estado de cada hilo: su propio generador, para no compartir uno entre hilos.
+	 */
+	@State(Scope.Thread)
+	public static class Worker {
+		SplittableRandom random;
+
+		@Setup
+		public void setup() {
+			random = new SplittableRandom(Thread.currentThread().getId());
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void start() throws IOException {
+		try {
+			startContext();
+		} catch (IOException | RuntimeException | Error e) {
+			// JMH no llama a @TearDown si falla el @Setup
+			stop();
+			throw e;
+		}
+	}
+
+	private void startContext() throws IOException {
+		directory = Files.createTempDirectory("product-store-bench");
+		// Como argumentos de línea de comandos, para que prevalezcan sobre application.properties
+		context = new SpringApplicationBuilder(ProductsdemoApplication.class).run(
+				"--spring.main.web-application-type=none",
+				"--spring.datasource.url=jdbc:h2:mem:store-bench;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+				"--spring.jpa.hibernate.ddl-auto=create",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=WARN",
+				"--products.store.type=" + store,
+				"--products.store.mvstore.file=" + directory.resolve("products.mv"),
+				"--products.search.snapshot-file=",
+				"--products.dedup.enabled=false");
+		productStore = context.getBean(ProductStore.class);
+		productMapper = context.getBean(ProductMapper.class);
+		transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+		List<Product> catalog = BenchmarkData.catalog(catalogSize, 42);
+		for (int i = 0; i < catalog.size(); i += 1000) {
+			List<ProductDto> chunk = new ArrayList<>(productMapper.toDtoList(catalog.subList(i, Math.min(i + 1000, catalog.size()))));
+			chunk.forEach(dto -> dto.setId(null));
+			transaction.executeWithoutResult(status -> productStore.saveAll(chunk));
+		}
+		List<ProductDto> seeded = new ArrayList<>(catalogSize);
+		transaction.executeWithoutResult(status -> productStore.forEachOrderedById(seeded::add));
+		ids = seeded.stream().mapToLong(ProductDto::getId).toArray();
+		referencias = seeded.stream().map(ProductDto::getReferencia).toArray(String[]::new);
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws IOException {
+		if (context != null) {
+			context.close();
+			context = null;
+		}
+		if (directory != null) {
+			try (Stream<Path> files = Files.walk(directory)) {
+				for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+					Files.deleteIfExists(path);
+				}
+			}
+			directory = null;
+		}
+	}
+
+	@Benchmark
+	public ProductDto findById(Worker worker) {
+		return productStore.findById(ids[worker.random.nextInt(ids.length)]).orElseThrow();
+	}
+
+	@Benchmark
+	public ProductDto findByReferencia(Worker worker) {
+		return productStore.findByReferencia(referencias[worker.random.nextInt(referencias.length)]).orElseThrow();
+	}
+
+	@Benchmark
+	public List<ProductDto> findPage(Worker worker) {
+		return productStore.findPage(ids[worker.random.nextInt(ids.length)], 100);
+	}
+
+	@Benchmark
+	public ProductDto insert(Worker worker) {
+		ProductDto dto = productMapper.toDto(BenchmarkData.product("STORE-" + sequence.incrementAndGet(), worker.random));
+		dto.setId(null);
+		return transaction.execute(status -> productStore.insert(dto));
+	}
+
+	@Benchmark
+	public Integer update(Worker worker) {
+		int i = worker.random.nextInt(ids.length);
+		ProductDto values = productMapper.toDto(BenchmarkData.product(referencias[i], worker.random));
+		return transaction.execute(status -> productStore.update(ids[i], values, null, Instant.now()));
+	}
+
+	@Benchmark
+	public Integer adjustStock(Worker worker) {
+		long id = ids[worker.random.nextInt(ids.length)];
+		return transaction.execute(status -> productStore.adjustStock(id, 1, Instant.now()));
+	}
+}
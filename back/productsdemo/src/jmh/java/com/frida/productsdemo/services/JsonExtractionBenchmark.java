@@ -0,0 +1,101 @@
+package com.frida.productsdemo.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Lectura del producto en la respuesta del LLM: antes (recortar el fragmento
+ * y pasarlo a Gson) y después ({@link ProductJsonReader}).
+ *
+ * - bare: solo el JSON, como cuando el modelo obedece al prompt
+ * - wrapped: JSON entre explicaciones y un bloque markdown, con escapes y una descripción larga
+ *
+ * Con {@code -prof gc} se ve además la memoria asignada por operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonExtractionBenchmark {
+
+	private static final String BARE = "{\"referencia\": \"ACME-TZ1\", \"nombre\": \"Taza de cerámica\", \"marca\": \"Acme\", "
+			+ "\"descripcion\": \"Taza blanca de 350 ml apta para microondas\", \"precio\": 12, "
+			+ "\"numeroDisponible\": 1, \"departamento\": \"Hogar\"}";
+
+	private static final String WRAPPED = "Claro, aquí tienes los datos del producto de la imagen:\n\n```json\n"
+			+ "{\n  \"referencia\": \"ACME-TZ1\",\n  \"nombre\": \"Taza de cerámica \\\"Clásica\\\"\",\n  \"marca\": \"Acme\",\n"
+			+ "  \"descripcion\": \"" + "Taza blanca de 350 ml apta para microondas y lavavajillas, con asa ergonómica. ".repeat(6) + "\",\n"
+			+ "  \"precio\": 12,\n  \"numeroDisponible\": 1,\n  \"departamento\": \"Hogar\"\n}\n```\n\n"
+			+ "No se aprecia el precio en la imagen, así que he puesto 1 en las unidades disponibles.";
+
+	@Param({ "bare", "wrapped" })
+	public String response;
+
+	private String text;
+	private final ProductJsonReader reader = new ProductJsonReader();
+
+	@Setup
+	public void setup() {
+		text = response.equals("bare") ? BARE : WRAPPED;
+	}
+
+	/** Lo que hacía parseAnalysis: recortar el fragmento y pasarlo al Gson compartido. */
+	@Benchmark
+	public Product fragmentAndGson() {
+		return ProductJson.GSON.fromJson(extractJsonFragment(text), Product.class);
+	}
+
+	@Benchmark
+	public Product reader() {
+		return ProductJsonReader.parse(text);
+	}
+
+	@Benchmark
+	public Product reusedReader() {
+		return reader.read(text);
+	}
+
+	/**
+	 * El extractor que usaba parseAnalysis, tal cual: balancea solo el tipo de
+	 * apertura encontrado y toma {@code \\"} por una comilla escapada.
+	 */
+	private static String extractJsonFragment(String text) {
+	    int start = -1;
+	    char open = 0;
+	    for (int i = 0; i < text.length(); i++) {
+	        char c = text.charAt(i);
+	        if (c == '{' || c == '[') { start = i; open = c; break; }
+	    }
+	    if (start == -1) throw new IllegalArgumentException("No se encontró apertura JSON");
+
+	    char close = open == '{' ? '}' : ']';
+	    int depth = 0;
+	    boolean inString = false;
+	    for (int i = start; i < text.length(); i++) {
+	        char c = text.charAt(i);
+	        if (c == '"' && (i == 0 || text.charAt(i - 1) != '\\')) inString = !inString;
+	        if (inString) continue;
+	        if (c == open) depth++;
+	        else if (c == close) {
+	            depth--;
+	            if (depth == 0) return text.substring(start, i + 1);
+	        }
+	    }
+	    throw new IllegalArgumentException("JSON incompleto o no balanceado");
+	}
+}
@@ -0,0 +1,67 @@
+package com.frida.productsdemo.services;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.frida.productsdemo.BenchmarkData;
+import com.frida.productsdemo.entity.ProductDto;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Conversiones de {@link ProductMapper} entre el modelo y la entidad JPA, de
+ * un producto suelto y de páginas enteras (100 es la página por defecto y
+ * 1000 la máxima).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductMapperBenchmark {
+
+	@Param({ "100", "1000" })
+	public int pageSize;
+
+	private final ProductMapper mapper = new ProductMapperImpl();
+	private List<Product> products;
+	private List<ProductDto> dtos;
+
+	@Setup
+	public void setup() {
+		products = BenchmarkData.catalog(pageSize, 1);
+		dtos = mapper.toDtoList(products);
+	}
+
+	@Benchmark
+	public ProductDto toDto() {
+		return mapper.toDto(products.get(0));
+	}
+
+	@Benchmark
+	public Product toEntity() {
+		return mapper.toEntity(dtos.get(0));
+	}
+
+	@Benchmark
+	public List<ProductDto> toDtoList() {
+		return mapper.toDtoList(products);
+	}
+
+	@Benchmark
+	public List<Product> toEntityList() {
+		return mapper.toEntityList(dtos);
+	}
+}
@@ -0,0 +1,62 @@
+package com.frida.productsdemo.services;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.frida.productsdemo.BenchmarkData;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Validación de los productos que reciben los endpoints de alta, modificación
+ * y operaciones masivas ({@link ProductValidator}): un producto válido, uno
+ * que falla en la última regla y un lote de 1000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductValidatorBenchmark {
+
+	private Product valid;
+	private Product invalid;
+	private List<Product> bulk;
+
+	@Setup
+	public void setup() {
+		bulk = BenchmarkData.catalog(1000, 2);
+		valid = bulk.get(0);
+		invalid = BenchmarkData.catalog(1, 3).get(0);
+		invalid.setNumeroDisponible(-1);
+	}
+
+	@Benchmark
+	public String valid() {
+		return ProductValidator.validate(valid);
+	}
+
+	@Benchmark
+	public String invalid() {
+		return ProductValidator.validate(invalid);
+	}
+
+	@Benchmark
+	public void bulk1000(Blackhole blackhole) {
+		for (Product product : bulk) {
+			blackhole.consume(ProductValidator.validate(product));
+		}
+	}
+}
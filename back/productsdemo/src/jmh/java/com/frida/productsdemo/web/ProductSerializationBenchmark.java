@@ -0,0 +1,77 @@
+package com.frida.productsdemo.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.frida.productsdemo.BenchmarkData;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Serialización JSON de listas de productos con la misma configuración de
+ * Jackson que usa Spring MVC: páginas del listado (100 y 1000) y una
+ * respuesta grande de 10000, en JSON y en NDJSON como /stream, y la lectura
+ * de un lote como el que recibe /bulk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSerializationBenchmark {
+
+	private static final TypeReference<List<Product>> PRODUCT_LIST = new TypeReference<>() {};
+
+	@Param({ "100", "1000", "10000" })
+	public int size;
+
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+	private ObjectWriter productWriter;
+	private List<Product> products;
+	private byte[] json;
+
+	@Setup
+	public void setup() throws IOException {
+		products = BenchmarkData.catalog(size, 4);
+		productWriter = mapper.writerFor(Product.class);
+		json = mapper.writeValueAsBytes(products);
+	}
+
+	@Benchmark
+	public byte[] writeJsonArray() throws IOException {
+		return mapper.writeValueAsBytes(products);
+	}
+
+	@Benchmark
+	public int writeNdjson() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length + size);
+		for (Product product : products) {
+			productWriter.writeValue(out, product);
+			out.write('\n');
+		}
+		return out.size();
+	}
+
+	@Benchmark
+	public List<Product> readJsonArray() throws IOException {
+		return mapper.readValue(json, PRODUCT_LIST);
+	}
+}
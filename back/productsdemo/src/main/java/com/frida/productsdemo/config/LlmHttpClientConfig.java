@@ -0,0 +1,64 @@
+package com.frida.productsdemo.config;
+
+import java.time.Duration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cliente HTTP con pool de conexiones para las llamadas al LLM de Frida.
+ * 
+ * Reutiliza conexiones keep-alive (y sus handshakes TLS) entre peticiones,
+ * limita las conexiones por ruta y aplica timeouts de conexión, de espera
+ * de conexión libre en el pool y de respuesta.
+ */
+@Configuration
+public class LlmHttpClientConfig {
+
+	@Bean(destroyMethod = "close")
+	public PoolingHttpClientConnectionManager llmConnectionManager(
+			@Value("${llm.http.max-connections:50}") int maxConnections,
+			@Value("${llm.http.max-connections-per-route:20}") int maxPerRoute,
+			@Value("${llm.http.connect-timeout:PT5S}") Duration connectTimeout,
+			@Value("${llm.http.time-to-live:PT5M}") Duration timeToLive) {
+		return PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(maxConnections)
+				.setMaxConnPerRoute(maxPerRoute)
+				.setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.of(connectTimeout))
+						.setTimeToLive(TimeValue.of(timeToLive))
+						.setValidateAfterInactivity(TimeValue.ofSeconds(10))
+						.build())
+				.build();
+	}
+
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient llmHttpClient(
+			PoolingHttpClientConnectionManager llmConnectionManager,
+			@Value("${llm.http.connection-request-timeout:PT10S}") Duration connectionRequestTimeout,
+			@Value("${llm.http.response-timeout:PT120S}") Duration responseTimeout,
+			@Value("${llm.http.idle-eviction:PT30S}") Duration idleEviction) {
+		return HttpClients.custom()
+				.setConnectionManager(llmConnectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+						.setResponseTimeout(Timeout.of(responseTimeout))
+						.build())
+				// Los reintentos los gestiona ResilientLlmClient, con backoff y circuito por modelo
+				.disableAutomaticRetries()
+				.evictExpiredConnections()
+				.evictIdleConnections(TimeValue.of(idleEviction))
+				.build();
+	}
+}
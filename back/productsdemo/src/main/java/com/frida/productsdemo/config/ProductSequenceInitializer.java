@@ -0,0 +1,44 @@
+package com.frida.productsdemo.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.frida.productsdemo.entity.ProductDto;
+
+/**
+ * Alinea la secuencia de IDs de productos con los datos existentes.
+ * 
+ * Las bases de datos creadas cuando el ID era IDENTITY ya tienen filas, pero
+ * la secuencia product_seq nace en 1. Al arrancar se reinicia por encima del
+ * mayor ID más un bloque completo, para que el optimizador "pooled" de
+ * Hibernate nunca reparta IDs ya usados.
+ * 
+ * Se ejecuta al terminar de crear los singletons: después de que Hibernate
+ * actualice el esquema (la secuencia ya existe) y antes de que arranque el
+ * servidor web, de modo que ninguna petición puede pedir un bloque de IDs a
+ * la secuencia sin alinear.
+ */
+@Component
+public class ProductSequenceInitializer implements SmartInitializingSingleton {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ProductSequenceInitializer(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		Long maxId = jdbcTemplate.queryForObject("select max(id) from product_dto", Long.class);
+		if (maxId == null) {
+			return;
+		}
+		long restartWith = maxId + ProductDto.ID_ALLOCATION_SIZE + 1;
+		Long current = jdbcTemplate.queryForObject(
+				"select base_value from information_schema.sequences where lower(sequence_name) = 'product_seq'", Long.class);
+		if (current == null || current < restartWith) {
+			jdbcTemplate.execute("alter sequence product_seq restart with " + restartWith);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.frida.productsdemo.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Estado global del catálogo: una única fila con un contador que se
+ * incrementa en cada transacción que modifica productos.
+ */
+@Entity
+public class CatalogState {
+
+    /** ID de la única fila de la tabla. */
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long changeCounter;
+
+    @Column(nullable = false)
+    private Instant lastModified;
+
+    public CatalogState() {}
+
+    public CatalogState(Integer id, long changeCounter, Instant lastModified) {
+        this.id = id;
+        this.changeCounter = changeCounter;
+        this.lastModified = lastModified;
+    }
+
+    // Getters y setters
+    public Integer getId() { return id; }
+    public long getChangeCounter() { return changeCounter; }
+    public Instant getLastModified() { return lastModified; }
+
+    public void setId(Integer id) { this.id = id; }
+    public void setChangeCounter(long changeCounter) { this.changeCounter = changeCounter; }
+    public void setLastModified(Instant lastModified) { this.lastModified = lastModified; }
+}
@@ -0,0 +1,67 @@
+package com.frida.productsdemo.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Entrada del registro de cambios del catálogo.
+ * 
+ * El número de secuencia lo asigna el contador de {@link CatalogState} dentro
+ * de la transacción de escritura, así que crece en el mismo orden en que se
+ * confirman los cambios.
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_product_change_created_at", columnList = "createdAt")
+})
+public class ProductChange {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    @Id
+    private Long seq;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Producto en JSON tras el cambio; null en los borrados
+    @Column(length = 4000)
+    private String payload;
+
+    public ProductChange() {}
+
+    public ProductChange(Long seq, Long productId, Type type, Instant createdAt, String payload) {
+        this.seq = seq;
+        this.productId = productId;
+        this.type = type;
+        this.createdAt = createdAt;
+        this.payload = payload;
+    }
+
+    // Getters y setters
+    public Long getSeq() { return seq; }
+    public Long getProductId() { return productId; }
+    public Type getType() { return type; }
+    public Instant getCreatedAt() { return createdAt; }
+    public String getPayload() { return payload; }
+
+    public void setSeq(Long seq) { this.seq = seq; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public void setType(Type type) { this.type = type; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public void setPayload(String payload) { this.payload = payload; }
+}
@@ -4,19 +4,41 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.hibernate.annotations.ColumnDefault;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Version;
 
 /**
  * Entidad que representa un producto.
  */
 @Entity
+@Table(indexes = {
+    // Índices secundarios para la búsqueda con filtros, rangos y orden
+    @Index(name = "idx_product_departamento_precio", columnList = "departamento, precio"),
+    @Index(name = "idx_product_marca_precio", columnList = "marca, precio"),
+    @Index(name = "idx_product_precio", columnList = "precio"),
+    @Index(name = "idx_product_nombre", columnList = "nombre"),
+    @Index(name = "idx_product_numero_disponible", columnList = "numeroDisponible")
+})
 public class ProductDto {
 
+    /** Tamaño del bloque de IDs que reserva Hibernate en cada llamada a la secuencia. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Secuencia en lugar de IDENTITY para que Hibernate pueda agrupar los INSERT en lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id; // Este campo es opcional, añadido para la base de datos
 
     @Column(nullable = false, unique = true)
@@ -32,6 +54,16 @@ public class ProductDto {
     private int numeroDisponible;
     private String departamento;
 
+    // Se incrementa en cada escritura; las actualizaciones JPQL lo suben explícitamente
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @ColumnDefault("current_timestamp")
+    @Column(nullable = false)
+    private Instant lastModified;
+
     public ProductDto() {}
 
     public ProductDto(String referencia, String nombre, String marca, String descripcion,
@@ -54,6 +86,8 @@ public class ProductDto {
     public BigDecimal getPrecio() { return precio; }
     public int getNumeroDisponible() { return numeroDisponible; }
     public String getDepartamento() { return departamento; }
+    public Long getVersion() { return version; }
+    public Instant getLastModified() { return lastModified; }
 
     public void setId(Long id) { this.id = id; }
     public void setReferencia(String referencia) { this.referencia = referencia; }
@@ -63,4 +97,12 @@ public class ProductDto {
     public void setPrecio(BigDecimal precio) { this.precio = precio; }
     public void setNumeroDisponible(int numeroDisponible) { this.numeroDisponible = numeroDisponible; }
     public void setDepartamento(String departamento) { this.departamento = departamento; }
+    public void setVersion(Long version) { this.version = version; }
+    public void setLastModified(Instant lastModified) { this.lastModified = lastModified; }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.frida.productsdemo.models;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Trabajo asíncrono de análisis de un lote de imágenes.
+ * 
+ * Los contadores se actualizan desde los hilos de trabajo, por lo que el
+ * estado puede consultarse en cualquier momento mientras el lote avanza.
+ */
+@Getter
+public class AnalysisJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED }
+
+    private final String id;
+    private final Instant createdAt = Instant.now();
+    private volatile Instant finishedAt;
+    private final List<AnalysisJobItem> items;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger completed = new AtomicInteger();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public AnalysisJob(String id, List<AnalysisJobItem> items) {
+        this.id = id;
+        this.items = items;
+    }
+
+    public int getTotal() { return items.size(); }
+    public int getSucceeded() { return completed.get(); }
+    public int getFailed() { return failed.get(); }
+    public int getPending() { return getTotal() - completed.get() - failed.get(); }
+
+    public Status getStatus() {
+        if (getPending() == 0) {
+            return Status.COMPLETED;
+        }
+        return completed.get() + failed.get() == 0
+                && items.stream().allMatch(i -> i.getStatus() == AnalysisJobItem.Status.PENDING)
+                ? Status.QUEUED : Status.RUNNING;
+    }
+
+    /**
+     * Marca un elemento como terminado correctamente.
+     */
+    public void itemSucceeded(AnalysisJobItem item, Product product) {
+        item.setProduct(product);
+        item.setStatus(AnalysisJobItem.Status.DONE);
+        completed.incrementAndGet();
+        markFinishedIfDone();
+    }
+
+    /**
+     * Marca un elemento como fallido con el mensaje de error indicado.
+     */
+    public void itemFailed(AnalysisJobItem item, String error) {
+        item.setError(error);
+        item.setStatus(AnalysisJobItem.Status.FAILED);
+        failed.incrementAndGet();
+        markFinishedIfDone();
+    }
+
+    private void markFinishedIfDone() {
+        if (getPending() == 0) {
+            finishedAt = Instant.now();
+        }
+    }
+}
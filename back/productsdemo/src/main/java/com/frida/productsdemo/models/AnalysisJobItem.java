@@ -0,0 +1,28 @@
+package com.frida.productsdemo.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Resultado del análisis de una imagen dentro de un trabajo por lotes.
+ */
+@Getter
+@Setter
+public class AnalysisJobItem {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    private int index;
+    private String fileName;
+    private volatile Status status = Status.PENDING;
+    private volatile Product product;
+    private volatile String error;
+    private volatile long elapsedMillis;
+
+    public AnalysisJobItem() {}
+
+    public AnalysisJobItem(int index, String fileName) {
+        this.index = index;
+        this.fileName = fileName;
+    }
+}
@@ -0,0 +1,38 @@
+package com.frida.productsdemo.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Resultado de una operación masiva sobre productos.
+ * 
+ * Indica cuántas filas se crearon, actualizaron o eliminaron y, para cada
+ * fila rechazada, su posición en la petición y el motivo.
+ */
+@Getter
+public class BulkResult {
+
+    /**
+     * Error asociado a una fila concreta de la petición.
+     */
+    public record RowError(int index, String referencia, String error) {}
+
+    private int processed;
+    private int created;
+    private int updated;
+    private int deleted;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public int getFailed() { return errors.size(); }
+
+    public void addProcessed(int count) { processed += count; }
+    public void addCreated(int count) { created += count; }
+    public void addUpdated(int count) { updated += count; }
+    public void addDeleted(int count) { deleted += count; }
+
+    public void addError(int index, String referencia, String error) {
+        errors.add(new RowError(index, referencia, error));
+    }
+}
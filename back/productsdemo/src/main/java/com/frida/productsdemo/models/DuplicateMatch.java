@@ -0,0 +1,6 @@
+package com.frida.productsdemo.models;
+
+/**
+ * Producto existente que probablemente es el mismo que otro, con su similitud (0 a 1).
+ */
+public record DuplicateMatch(Product product, double similarity) {}
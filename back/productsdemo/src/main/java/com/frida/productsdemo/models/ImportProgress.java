@@ -0,0 +1,22 @@
+package com.frida.productsdemo.models;
+
+import lombok.Getter;
+
+/**
+ * Contadores de avance de una importación de catálogo.
+ */
+@Getter
+public class ImportProgress {
+
+    private long processed;
+    private long created;
+    private long updated;
+    private long rejected;
+    private boolean finished;
+
+    public void addProcessed(long count) { processed += count; }
+    public void addCreated(long count) { created += count; }
+    public void addUpdated(long count) { updated += count; }
+    public void addRejected(long count) { rejected += count; }
+    public void markFinished() { finished = true; }
+}
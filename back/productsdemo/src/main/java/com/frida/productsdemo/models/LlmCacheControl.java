@@ -0,0 +1,26 @@
+// File: LlmCacheControl.java
+
+package com.frida.productsdemo.models;
+
+/**
+ * Marks the end of a cacheable prompt prefix on a content block
+ * ({"type": "ephemeral"}). The provider caches everything up to the marked
+ * block, so only stable content should come before it.
+ */
+public class LlmCacheControl {
+
+    private String type;
+
+    public LlmCacheControl() {}
+
+    public LlmCacheControl(String type) {
+        this.type = type;
+    }
+
+    public static LlmCacheControl ephemeral() {
+        return new LlmCacheControl("ephemeral");
+    }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+}
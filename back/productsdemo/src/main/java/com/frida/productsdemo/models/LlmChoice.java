@@ -4,6 +4,7 @@ package com.frida.productsdemo.models;
 public class LlmChoice {
     private int index;
     private LlmResponseMessage message;
+    private LlmResponseMessage delta; // Only present in streamed chunks
     private String finish_reason;
 
     // Getters y setters
@@ -11,6 +12,8 @@ public class LlmChoice {
     public void setIndex(int index) { this.index = index; }
     public LlmResponseMessage getMessage() { return message; }
     public void setMessage(LlmResponseMessage message) { this.message = message; }
+    public LlmResponseMessage getDelta() { return delta; }
+    public void setDelta(LlmResponseMessage delta) { this.delta = delta; }
     public String getFinish_reason() { return finish_reason; }
     public void setFinish_reason(String finish_reason) { this.finish_reason = finish_reason; }
 }
\ No newline at end of file
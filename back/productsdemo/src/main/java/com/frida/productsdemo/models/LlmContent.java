@@ -19,6 +19,10 @@ public class LlmContent {
 	@JsonInclude(Include.NON_NULL)
     private LlmDocument image_url;
 
+	// Prompt-cache breakpoint: the prefix up to and including this block may be cached
+	@JsonInclude(Include.NON_NULL)
+    private LlmCacheControl cache_control;
+
     public LlmContent() {}
 
     // For text
@@ -45,4 +49,7 @@ public class LlmContent {
 
     public LlmDocument getImage_url() { return image_url; }
     public void setImage_url(LlmDocument document) { this.image_url = document; }
+
+    public LlmCacheControl getCache_control() { return cache_control; }
+    public void setCache_control(LlmCacheControl cache_control) { this.cache_control = cache_control; }
 }
\ No newline at end of file
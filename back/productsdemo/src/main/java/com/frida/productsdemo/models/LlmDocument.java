@@ -2,12 +2,23 @@
 
 package com.frida.productsdemo.models;
 
+import java.io.Reader;
+import java.util.Base64;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 /**
- * Represents a document to send to the LLM API
+ * Represents a document to send to the LLM API.
+ * An image document keeps the raw bytes and is base64-encoded only while the
+ * request body is being written (see LlmDocumentSerializer), so no encoded
+ * copy of the image is ever held in memory.
  */
+@JsonSerialize(using = LlmDocumentSerializer.class)
 public class LlmDocument {
     private String detail;
     private String url;
+    private String mimeType;
+    private byte[] data;
 
     public LlmDocument() {}
 
@@ -16,9 +27,91 @@ public class LlmDocument {
         this.url = url;
     }
 
+    // For inline images sent as a data URL
+    public static LlmDocument ofImage(String detail, String mimeType, byte[] data) {
+        LlmDocument document = new LlmDocument();
+        document.detail = detail;
+        document.mimeType = mimeType;
+        document.data = data;
+        return document;
+    }
+
     public String getDetail() { return detail; }
     public void setDetail(String name) { this.detail = name; }
 
-    public String getUrl() { return url; }
-    public void setUrl(String url) { this.url = url; }
-}
\ No newline at end of file
+    public String getUrl() {
+        if (url == null && data != null) {
+            return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(data);
+        }
+        return url;
+    }
+    public void setUrl(String url) { this.url = url; this.data = null; }
+
+    public boolean hasInlineData() { return data != null; }
+
+    /**
+     * Opens a reader over the data URL, encoding the image as it is read
+     */
+    public Reader openUrlReader() { return new DataUrlReader(mimeType, data); }
+
+    /**
+     * Reader that yields "data:<mime>;base64," followed by the base64 encoding
+     * of the image, encoding three bytes at a time as characters are requested.
+     */
+    static final class DataUrlReader extends Reader {
+
+        private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+        private final String prefix;
+        private final byte[] data;
+        private final char[] quad = new char[4];
+        private int prefixPos;
+        private int dataPos;
+        private int quadPos = 4;
+
+        DataUrlReader(String mimeType, byte[] data) {
+            this.prefix = "data:" + mimeType + ";base64,";
+            this.data = data;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int written = 0;
+            while (written < len && prefixPos < prefix.length()) {
+                cbuf[off + written++] = prefix.charAt(prefixPos++);
+            }
+            while (written < len) {
+                if (quadPos == 4) {
+                    if (dataPos >= data.length) {
+                        break;
+                    }
+                    encodeNextGroup();
+                }
+                cbuf[off + written++] = quad[quadPos++];
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        private void encodeNextGroup() {
+            int remaining = data.length - dataPos;
+            int b0 = data[dataPos] & 0xFF;
+            int b1 = remaining > 1 ? data[dataPos + 1] & 0xFF : 0;
+            int b2 = remaining > 2 ? data[dataPos + 2] & 0xFF : 0;
+            quad[0] = ALPHABET[b0 >>> 2];
+            quad[1] = ALPHABET[((b0 & 0x03) << 4) | (b1 >>> 4)];
+            quad[2] = remaining > 1 ? ALPHABET[((b1 & 0x0F) << 2) | (b2 >>> 6)] : '=';
+            quad[3] = remaining > 2 ? ALPHABET[b2 & 0x3F] : '=';
+            dataPos += Math.min(3, remaining);
+            quadPos = 0;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+}
@@ -0,0 +1,37 @@
+// File: LlmDocumentSerializer.java
+
+package com.frida.productsdemo.models;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Writes an LlmDocument as {"detail": ..., "url": ...}. Inline images are
+ * streamed into the JSON string through a base64 reader, straight into the
+ * outgoing request body.
+ */
+public class LlmDocumentSerializer extends StdSerializer<LlmDocument> {
+
+    public LlmDocumentSerializer() {
+        super(LlmDocument.class);
+    }
+
+    @Override
+    public void serialize(LlmDocument document, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("detail", document.getDetail());
+        gen.writeFieldName("url");
+        if (document.hasInlineData()) {
+            try (Reader reader = document.openUrlReader()) {
+                gen.writeString(reader, -1);
+            }
+        } else {
+            gen.writeString(document.getUrl());
+        }
+        gen.writeEndObject();
+    }
+}
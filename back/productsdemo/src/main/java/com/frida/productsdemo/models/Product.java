@@ -1,6 +1,7 @@
 package com.frida.productsdemo.models;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -12,6 +13,7 @@ import lombok.Setter;
 @Getter
 @Setter
 public class Product {
+    private Long id; // Asignado por la base de datos, se usa como cursor de paginación
     private String referencia;
     private String nombre;
     private String marca;
@@ -19,6 +21,8 @@ public class Product {
     private BigDecimal precio; // Usar BigDecimal para manejar dinero
     private int numeroDisponible;
     private String departamento;
+    private Long version; // Lo gestiona la base de datos, se usa para el ETag
+    private Instant lastModified;
 
     public Product() {}
     
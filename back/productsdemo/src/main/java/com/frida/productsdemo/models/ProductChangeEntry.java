@@ -0,0 +1,17 @@
+package com.frida.productsdemo.models;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * Cambio del catálogo tal y como se envía a los clientes.
+ *
+ * @param seq Número de secuencia del cambio
+ * @param type CREATED, UPDATED o DELETED
+ * @param productId ID del producto afectado
+ * @param timestamp Momento del cambio
+ * @param product Producto tras el cambio (JSON), o null en los borrados
+ */
+public record ProductChangeEntry(long seq, String type, long productId, Instant timestamp,
+                                 @JsonRawValue String product) {}
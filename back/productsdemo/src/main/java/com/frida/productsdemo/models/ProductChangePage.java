@@ -0,0 +1,12 @@
+package com.frida.productsdemo.models;
+
+import java.util.List;
+
+/**
+ * Página del registro de cambios.
+ *
+ * @param changes Cambios en orden de secuencia
+ * @param nextSince Valor de {@code since} para la siguiente petición
+ * @param hasMore true si hay más cambios disponibles ya
+ */
+public record ProductChangePage(List<ProductChangeEntry> changes, long nextSince, boolean hasMore) {}
@@ -0,0 +1,11 @@
+package com.frida.productsdemo.models;
+
+import java.util.List;
+
+/**
+ * Página de resultados con el cursor para pedir la siguiente.
+ *
+ * @param items Productos de la página
+ * @param nextCursor Cursor opaco de la siguiente página, o null si no hay más
+ */
+public record ProductPage(List<Product> items, String nextCursor) {}
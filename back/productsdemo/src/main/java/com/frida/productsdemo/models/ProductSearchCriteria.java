@@ -0,0 +1,22 @@
+package com.frida.productsdemo.models;
+
+import java.math.BigDecimal;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Filtros de la búsqueda de productos. Los campos nulos no filtran.
+ */
+@Getter
+@Setter
+public class ProductSearchCriteria {
+    private String departamento;
+    private String marca;
+    private String referencia;
+    private String referenciaPrefix;
+    private BigDecimal precioMin;
+    private BigDecimal precioMax;
+    private Integer disponibleMin;
+    private Integer disponibleMax;
+}
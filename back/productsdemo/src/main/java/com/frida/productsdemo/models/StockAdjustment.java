@@ -0,0 +1,8 @@
+package com.frida.productsdemo.models;
+
+/**
+ * Ajuste relativo del stock de un producto.
+ *
+ * @param delta Unidades a sumar (positivo) o restar (negativo)
+ */
+public record StockAdjustment(Integer delta) {}
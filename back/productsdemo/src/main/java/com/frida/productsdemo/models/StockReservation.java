@@ -0,0 +1,9 @@
+package com.frida.productsdemo.models;
+
+/**
+ * Línea de una reserva de stock.
+ *
+ * @param id ID del producto
+ * @param quantity Unidades a reservar (mayor que cero)
+ */
+public record StockReservation(Long id, Integer quantity) {}
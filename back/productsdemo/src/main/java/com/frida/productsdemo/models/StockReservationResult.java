@@ -0,0 +1,12 @@
+package com.frida.productsdemo.models;
+
+import java.util.List;
+
+/**
+ * Resultado de una reserva de stock de varios productos.
+ *
+ * @param reserved true si se reservaron todas las líneas; si es false no se reservó ninguna
+ * @param products Productos con el stock ya descontado (vacío si no se reservó)
+ * @param errors Líneas que impidieron la reserva
+ */
+public record StockReservationResult(boolean reserved, List<Product> products, List<BulkResult.RowError> errors) {}
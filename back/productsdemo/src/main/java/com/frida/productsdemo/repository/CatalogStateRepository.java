@@ -0,0 +1,37 @@
+package com.frida.productsdemo.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frida.productsdemo.entity.CatalogState;
+
+/**
+ * Repositorio de la fila de estado del catálogo.
+ */
+@Repository
+public interface CatalogStateRepository extends JpaRepository<CatalogState, Integer> {
+
+    /**
+     * Avanza el contador de cambios del catálogo. La fila queda bloqueada
+     * hasta el final de la transacción, lo que ordena a los escritores.
+     *
+     * @return Número de filas actualizadas (0 si la fila aún no existe)
+     */
+    @Modifying
+    @Transactional
+    @Query("update CatalogState c set c.changeCounter = c.changeCounter + :count, c.lastModified = :now "
+         + "where c.id = " + CatalogState.SINGLETON_ID)
+    int increment(@Param("count") long count, @Param("now") Instant now);
+
+    /**
+     * Valor actual del contador, leído de la base de datos.
+     */
+    @Query("select c.changeCounter from CatalogState c where c.id = " + CatalogState.SINGLETON_ID)
+    Long findChangeCounter();
+}
@@ -0,0 +1,191 @@
+package com.frida.productsdemo.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.frida.productsdemo.entity.ProductDto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Almacén de productos sobre la tabla {@code product_dto} con JPA.
+ *
+ * Es el almacén por defecto ({@code products.store.type=jpa}) y participa en
+ * las transacciones de Spring junto con el registro de cambios. Las escrituras
+ * puntuales son sentencias UPDATE y DELETE directas, los bloques se envían en
+ * lotes JDBC y las lecturas largas desvinculan cada entidad del contexto de
+ * persistencia para que la memoria no crezca con el catálogo.
+ */
+@Repository
+@ConditionalOnProperty(name = "products.store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaProductStore implements ProductStore {
+
+    private static final String RESERVE_SQL = "update product_dto set numero_disponible = numero_disponible - ?, "
+        + "version = version + 1, last_modified = ? where id = ? and numero_disponible >= ?";
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<ProductDto> findById(Long id) {
+        return productRepository.findById(id);
+    }
+
+    @Override
+    public Optional<ProductDto> findByReferencia(String referencia) {
+        return productRepository.findByReferencia(referencia);
+    }
+
+    @Override
+    public List<ProductDto> findAllById(Collection<Long> ids) {
+        return productRepository.findAllById(ids);
+    }
+
+    @Override
+    public List<ProductDto> findByReferenciaIn(Collection<String> referencias) {
+        return productRepository.findByReferenciaIn(referencias);
+    }
+
+    @Override
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        return productRepository.findExistingIds(ids);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return productRepository.existsById(id);
+    }
+
+    @Override
+    public List<ProductDto> findPage(long afterId, int size) {
+        return productRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size));
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public List<ProductDto> search(ProductQuery query) {
+        Specification<ProductDto> spec = ProductSpecifications.matching(query.criteria());
+        if (query.after() != null) {
+            spec = spec.and(ProductSpecifications.after(query.field(), (Comparable) query.after().value(),
+                query.after().id(), query.descending()));
+        }
+        Sort order = Sort.by(query.descending() ? Sort.Direction.DESC : Sort.Direction.ASC, query.field());
+        if (!query.field().equals("id")) {
+            order = order.and(Sort.by(Sort.Direction.ASC, "id"));
+        }
+        Sort finalOrder = order;
+        return productRepository.findBy(spec, q -> q.sortBy(finalOrder).limit(query.limit()).all());
+    }
+
+    @Override
+    public void forEachOrderedById(Consumer<ProductDto> consumer) {
+        try (Stream<ProductDto> entities = productRepository.streamAllOrderById()) {
+            entities.forEach(dto -> {
+                consumer.accept(dto);
+                entityManager.detach(dto);
+            });
+        }
+    }
+
+    @Override
+    public long count() {
+        return productRepository.count();
+    }
+
+    @Override
+    public Long findMaxId() {
+        return productRepository.findMaxId();
+    }
+
+    @Override
+    public Long findVersionById(Long id) {
+        return productRepository.findVersionById(id);
+    }
+
+    @Override
+    public ProductDto insert(ProductDto product) {
+        return productRepository.save(product);
+    }
+
+    /**
+     * Los productos ya gestionados (leídos en la misma transacción) se
+     * actualizan en el flush sin volver a leerlos; tras él se limpia el
+     * contexto de persistencia.
+     */
+    @Override
+    public void saveAll(List<ProductDto> products) {
+        productRepository.saveAll(products);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public int update(Long id, ProductDto values, Long expectedVersion, Instant lastModified) {
+        return productRepository.updateById(id, values.getReferencia(), values.getNombre(), values.getMarca(),
+            values.getDescripcion(), values.getPrecio(), values.getNumeroDisponible(), values.getDepartamento(),
+            lastModified, expectedVersion);
+    }
+
+    @Override
+    public int adjustStock(Long id, int delta, Instant lastModified) {
+        return productRepository.adjustStock(id, delta, lastModified);
+    }
+
+    /**
+     * Envía los UPDATE condicionales en un único lote JDBC ordenado por ID, de
+     * modo que dos reservas concurrentes bloquean las filas en el mismo orden y
+     * no se interbloquean.
+     */
+    @Override
+    public List<Long> reserveStock(Map<Long, Integer> quantities, Instant lastModified) {
+        Map<Long, Integer> ordered = new TreeMap<>(quantities);
+        Timestamp now = Timestamp.from(lastModified);
+        List<Object[]> batch = new ArrayList<>(ordered.size());
+        for (Map.Entry<Long, Integer> line : ordered.entrySet()) {
+            batch.add(new Object[] { line.getValue(), now, line.getKey(), line.getValue() });
+        }
+        int[] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, batch);
+
+        List<Long> ids = new ArrayList<>(ordered.keySet());
+        List<Long> failed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                failed.add(ids.get(i));
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public int deleteById(Long id) {
+        return productRepository.deleteByIdReturningCount(id);
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        return productRepository.deleteByIdIn(ids);
+    }
+}
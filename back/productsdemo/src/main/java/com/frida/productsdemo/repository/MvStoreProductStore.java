@@ -0,0 +1,792 @@
+package com.frida.productsdemo.repository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.BasicDataType;
+import org.h2.mvstore.type.LongDataType;
+import org.h2.mvstore.type.StringDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.frida.productsdemo.entity.ProductDto;
+import com.frida.productsdemo.models.ProductSearchCriteria;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Almacén de productos clave-valor sobre MVStore, el motor de almacenamiento
+ * de H2, sin SQL ni Hibernate ({@code products.store.type=mvstore}).
+ *
+ * Los productos se guardan en un mapa ordenado por ID con un formato binario
+ * propio, y un segundo mapa hace de índice único por referencia. Las lecturas
+ * por ID o referencia son búsquedas directas en el árbol, sin bloqueos (el
+ * mapa es copy-on-write); las escrituras se serializan con un único cerrojo,
+ * que también mantiene el índice, la versión y el ID siguiente.
+ *
+ * El fichero ({@code products.store.mvstore.file}) se abre mapeado en memoria
+ * si {@code products.store.mvstore.memory-mapped} está activo, y cada escritura
+ * se confirma en disco al terminar. Con un
+ * {@code products.store.mvstore.commit-delay} mayor que 0 se confirman en
+ * segundo plano cada ese intervalo, pero una caída puede perder escrituras ya
+ * respondidas cuyo cambio y versión del catálogo sí están confirmados en la
+ * base de datos, y el almacén queda por detrás del registro de cambios. Un
+ * fichero vacío deja el almacén solo en memoria.
+ *
+ * Las búsquedas por referencia o prefijo usan el índice y el orden por ID se
+ * recorre directamente; el resto de filtros y órdenes recorren el mapa
+ * quedándose con los primeros en un montículo acotado, así que están pensados
+ * para catálogos de tamaño moderado.
+ *
+ * Dentro de una transacción de Spring, cada escritura guarda la fila anterior
+ * en un registro de deshacer; si la transacción se deshace (por ejemplo, porque
+ * falla el registro de cambios, que sigue en la base de datos, o un bloque
+ * posterior de una operación masiva) las filas se restauran. No hay
+ * aislamiento: las escrituras se ven antes de confirmarse, y una fila que otra
+ * escritura ha cambiado entretanto no se restaura.
+ */
+@Repository
+@ConditionalOnProperty(name = "products.store.type", havingValue = "mvstore")
+public class MvStoreProductStore implements ProductStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MvStoreProductStore.class);
+
+    private static final String NEXT_ID = "nextId";
+
+    @Value("${products.store.mvstore.file:./database/products.mv}")
+    private String file;
+
+    @Value("${products.store.mvstore.memory-mapped:true}")
+    private boolean memoryMapped;
+
+    @Value("${products.store.mvstore.cache-size-mb:64}")
+    private int cacheSizeMb;
+
+    @Value("${products.store.mvstore.commit-delay:PT0S}")
+    private Duration commitDelay;
+
+    private MVStore store;
+    private MVMap<Long, Row> products;
+    private MVMap<String, Long> byReferencia;
+    private MVMap<String, Long> meta;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Último ID asignado; solo se modifica con {@link #writeLock}. */
+    private long lastId;
+
+    /**
+     * Fila guardada: los campos del producto salvo el ID, que es la clave.
+     * Inmutable, porque el mapa comparte las instancias entre lectores.
+     */
+    private record Row(String referencia, String nombre, String marca, String descripcion, BigDecimal precio,
+            int numeroDisponible, String departamento, long version, Instant lastModified) {
+    }
+
+    private record Hit(long id, Row row) {
+    }
+
+    /** Fila antes de la primera escritura de la transacción y tras la última (null si no existía o se borró). */
+    private record Change(Row before, Row after) {
+    }
+
+    /**
+     * Registro de deshacer de una transacción, registrado como sincronización
+     * (y no como recurso, para que una transacción REQUIRES_NEW anidada tenga
+     * el suyo) y aplicado al terminar si no se confirmó.
+     */
+    private final class UndoLog implements TransactionSynchronization {
+        private final Map<Long, Change> changes = new HashMap<>();
+
+        MvStoreProductStore owner() {
+            return MvStoreProductStore.this;
+        }
+
+        void record(long id, Row before, Row after) {
+            Change previous = changes.get(id);
+            changes.put(id, new Change(previous == null ? before : previous.before(), after));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+                undo(changes);
+            }
+        }
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        MVStore.Builder builder = new MVStore.Builder().cacheSize(cacheSizeMb);
+        if (file != null && !file.isBlank()) {
+            Path path = Path.of(file).toAbsolutePath();
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            builder.fileName(memoryMapped ? "nioMapped:" + path : path.toString());
+        }
+        store = builder.open();
+        store.setAutoCommitDelay((int) commitDelay.toMillis());
+        products = store.openMap("products", new MVMap.Builder<Long, Row>()
+            .keyType(LongDataType.INSTANCE).valueType(new RowType()));
+        byReferencia = store.openMap("products_referencia", new MVMap.Builder<String, Long>()
+            .keyType(StringDataType.INSTANCE).valueType(LongDataType.INSTANCE));
+        meta = store.openMap("meta", new MVMap.Builder<String, Long>()
+            .keyType(StringDataType.INSTANCE).valueType(LongDataType.INSTANCE));
+        Long maxId = products.lastKey();
+        lastId = Math.max(meta.getOrDefault(NEXT_ID, 0L), maxId == null ? 0L : maxId);
+        log.info("Almacén MVStore abierto ({}): {} productos", file == null || file.isBlank() ? "memoria" : file,
+            products.sizeAsLong());
+    }
+
+    @PreDestroy
+    void close() {
+        if (store != null && !store.isClosed()) {
+            store.close();
+        }
+    }
+
+    @Override
+    public Optional<ProductDto> findById(Long id) {
+        Row row = id == null ? null : products.get(id);
+        return row == null ? Optional.empty() : Optional.of(toDto(id, row));
+    }
+
+    @Override
+    public Optional<ProductDto> findByReferencia(String referencia) {
+        Hit hit = referencia == null ? null : hitByReferencia(referencia);
+        return hit == null ? Optional.empty() : Optional.of(toDto(hit.id(), hit.row()));
+    }
+
+    @Override
+    public List<ProductDto> findAllById(Collection<Long> ids) {
+        List<ProductDto> found = new ArrayList<>(ids.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Row row = id == null ? null : products.get(id);
+            if (row != null) {
+                found.add(toDto(id, row));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<ProductDto> findByReferenciaIn(Collection<String> referencias) {
+        List<ProductDto> found = new ArrayList<>(referencias.size());
+        for (String referencia : new LinkedHashSet<>(referencias)) {
+            Hit hit = referencia == null ? null : hitByReferencia(referencia);
+            if (hit != null) {
+                found.add(toDto(hit.id(), hit.row()));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        List<Long> existing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id != null && products.containsKey(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && products.containsKey(id);
+    }
+
+    @Override
+    public List<ProductDto> findPage(long afterId, int size) {
+        List<ProductDto> page = new ArrayList<>(size);
+        Cursor<Long, Row> cursor = products.cursor(afterId + 1);
+        while (page.size() < size && cursor.hasNext()) {
+            Long id = cursor.next();
+            page.add(toDto(id, cursor.getValue()));
+        }
+        return page;
+    }
+
+    @Override
+    public List<ProductDto> search(ProductQuery query) {
+        ProductSearchCriteria criteria = query.criteria();
+        int limit = query.limit();
+        List<ProductDto> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+
+        if (criteria.getReferencia() != null) {
+            Hit hit = hitByReferencia(criteria.getReferencia());
+            if (hit != null && matches(hit.row(), criteria) && isAfter(hit, query)) {
+                result.add(toDto(hit.id(), hit.row()));
+            }
+            return result;
+        }
+
+        if (criteria.getReferenciaPrefix() == null && query.field().equals("id")) {
+            // Ya están en orden: basta con recorrer desde el cursor hasta llenar la página
+            Cursor<Long, Row> cursor = query.descending()
+                ? products.cursor(query.after() == null ? null : query.after().id() - 1, null, true)
+                : products.cursor(query.after() == null ? null : query.after().id() + 1);
+            while (result.size() < limit && cursor.hasNext()) {
+                Long id = cursor.next();
+                Row row = cursor.getValue();
+                if (matches(row, criteria)) {
+                    result.add(toDto(id, row));
+                }
+            }
+            return result;
+        }
+
+        Comparator<Hit> order = order(query.field(), query.descending());
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, order.reversed());
+        Consumer<Hit> collect = hit -> {
+            if (matches(hit.row(), criteria) && isAfter(hit, query)) {
+                if (top.size() < limit) {
+                    top.add(hit);
+                } else if (order.compare(hit, top.peek()) < 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+        };
+        if (criteria.getReferenciaPrefix() != null) {
+            String prefix = criteria.getReferenciaPrefix();
+            Iterator<String> keys = byReferencia.keyIterator(prefix);
+            while (keys.hasNext()) {
+                String referencia = keys.next();
+                if (!referencia.startsWith(prefix)) {
+                    break;
+                }
+                Hit hit = hitByReferencia(referencia);
+                if (hit != null) {
+                    collect.accept(hit);
+                }
+            }
+        } else {
+            Cursor<Long, Row> cursor = products.cursor(null);
+            while (cursor.hasNext()) {
+                Long id = cursor.next();
+                collect.accept(new Hit(id, cursor.getValue()));
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(order);
+        for (Hit hit : hits) {
+            result.add(toDto(hit.id(), hit.row()));
+        }
+        return result;
+    }
+
+    /**
+     * Recorre una instantánea del mapa: los cambios posteriores al inicio no se ven.
+     */
+    @Override
+    public void forEachOrderedById(Consumer<ProductDto> consumer) {
+        Cursor<Long, Row> cursor = products.cursor(null);
+        while (cursor.hasNext()) {
+            Long id = cursor.next();
+            consumer.accept(toDto(id, cursor.getValue()));
+        }
+    }
+
+    @Override
+    public long count() {
+        return products.sizeAsLong();
+    }
+
+    @Override
+    public Long findMaxId() {
+        return products.lastKey();
+    }
+
+    @Override
+    public Long findVersionById(Long id) {
+        Row row = id == null ? null : products.get(id);
+        return row == null ? null : row.version();
+    }
+
+    @Override
+    public ProductDto insert(ProductDto product) {
+        writeLock.lock();
+        try {
+            if (byReferencia.containsKey(product.getReferencia())) {
+                throw duplicate(product.getReferencia());
+            }
+            put(product, nextId(), 0L, Instant.now(), null);
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return product;
+    }
+
+    /**
+     * Comprueba todo el bloque antes de escribir nada, de modo que una
+     * referencia repetida o una versión desfasada no dejan el bloque a medias.
+     */
+    @Override
+    public void saveAll(List<ProductDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        writeLock.lock();
+        try {
+            Map<String, Long> claimed = new HashMap<>();
+            for (ProductDto product : batch) {
+                Long id = product.getId();
+                if (id != null) {
+                    Row current = products.get(id);
+                    if (current == null || !Objects.equals(product.getVersion(), current.version())) {
+                        throw new OptimisticLockingFailureException("El producto " + id + " ha cambiado o ya no existe");
+                    }
+                }
+                Long owner = byReferencia.get(product.getReferencia());
+                Long other = claimed.put(product.getReferencia(), id == null ? -1L : id);
+                if ((owner != null && !owner.equals(id)) || other != null) {
+                    throw duplicate(product.getReferencia());
+                }
+            }
+            for (ProductDto product : batch) {
+                if (product.getId() == null) {
+                    put(product, nextId(), 0L, now, null);
+                } else {
+                    Row current = products.get(product.getId());
+                    removeReferencia(product.getId(), current.referencia(), product.getReferencia());
+                    put(product, product.getId(), current.version() + 1, now, current);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public int update(Long id, ProductDto values, Long expectedVersion, Instant lastModified) {
+        writeLock.lock();
+        try {
+            Row current = products.get(id);
+            if (current == null || (expectedVersion != null && expectedVersion != current.version())) {
+                return 0;
+            }
+            Long owner = byReferencia.get(values.getReferencia());
+            if (owner != null && !owner.equals(id)) {
+                throw duplicate(values.getReferencia());
+            }
+            removeReferencia(id, current.referencia(), values.getReferencia());
+            Row row = new Row(values.getReferencia(), values.getNombre(), values.getMarca(), values.getDescripcion(),
+                values.getPrecio(), values.getNumeroDisponible(), values.getDepartamento(), current.version() + 1,
+                lastModified);
+            track(id, current, row);
+            products.put(id, row);
+            byReferencia.put(row.referencia(), id);
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return 1;
+    }
+
+    @Override
+    public int adjustStock(Long id, int delta, Instant lastModified) {
+        writeLock.lock();
+        try {
+            Row current = products.get(id);
+            if (current == null || current.numeroDisponible() + delta < 0) {
+                return 0;
+            }
+            Row row = withStock(current, current.numeroDisponible() + delta, lastModified);
+            track(id, current, row);
+            products.put(id, row);
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return 1;
+    }
+
+    @Override
+    public List<Long> reserveStock(Map<Long, Integer> quantities, Instant lastModified) {
+        Map<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<Long> failed = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (Map.Entry<Long, Integer> line : ordered.entrySet()) {
+                Row current = products.get(line.getKey());
+                if (current == null || current.numeroDisponible() < line.getValue()) {
+                    failed.add(line.getKey());
+                }
+            }
+            if (!failed.isEmpty()) {
+                return failed;
+            }
+            for (Map.Entry<Long, Integer> line : ordered.entrySet()) {
+                Row current = products.get(line.getKey());
+                Row row = withStock(current, current.numeroDisponible() - line.getValue(), lastModified);
+                track(line.getKey(), current, row);
+                products.put(line.getKey(), row);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return failed;
+    }
+
+    @Override
+    public int deleteById(Long id) {
+        return deleteAllById(id == null ? List.of() : List.of(id));
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        int deleted = 0;
+        writeLock.lock();
+        try {
+            for (Long id : ids) {
+                Row removed = id == null ? null : products.remove(id);
+                if (removed != null) {
+                    track(id, removed, null);
+                    byReferencia.remove(removed.referencia(), id);
+                    deleted++;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (deleted > 0) {
+            afterWrite();
+        }
+        return deleted;
+    }
+
+    /**
+     * Guarda el producto con el ID y la versión indicados y los copia en el objeto recibido.
+     */
+    private void put(ProductDto product, long id, long version, Instant lastModified, Row before) {
+        Row row = new Row(product.getReferencia(), product.getNombre(), product.getMarca(), product.getDescripcion(),
+            product.getPrecio(), product.getNumeroDisponible(), product.getDepartamento(), version, lastModified);
+        track(id, before, row);
+        products.put(id, row);
+        byReferencia.put(row.referencia(), id);
+        product.setId(id);
+        product.setVersion(version);
+        product.setLastModified(lastModified);
+    }
+
+    private void removeReferencia(Long id, String oldReferencia, String newReferencia) {
+        if (!oldReferencia.equals(newReferencia)) {
+            byReferencia.remove(oldReferencia, id);
+        }
+    }
+
+    private long nextId() {
+        lastId++;
+        meta.put(NEXT_ID, lastId);
+        return lastId;
+    }
+
+    /**
+     * Anota la escritura en el registro de deshacer de la transacción en curso, si la hay.
+     * Se llama con {@link #writeLock} tomado.
+     */
+    private void track(long id, Row before, Row after) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof UndoLog undo && undo.owner() == this) {
+                undo.record(id, before, after);
+                return;
+            }
+        }
+        UndoLog undo = new UndoLog();
+        TransactionSynchronizationManager.registerSynchronization(undo);
+        undo.record(id, before, after);
+    }
+
+    /**
+     * Restaura las filas de una transacción deshecha, salvo las que otra
+     * escritura haya cambiado después o cuya referencia ya sea de otro producto.
+     */
+    private void undo(Map<Long, Change> changes) {
+        int skipped = 0;
+        writeLock.lock();
+        try {
+            // Primero se retiran todas las filas escritas, para que un cambio de
+            // referencia entre dos productos de la misma transacción no choque
+            Map<Long, Change> restore = new HashMap<>();
+            for (Map.Entry<Long, Change> entry : changes.entrySet()) {
+                long id = entry.getKey();
+                Change change = entry.getValue();
+                if (!Objects.equals(products.get(id), change.after())) {
+                    skipped++;
+                    continue;
+                }
+                if (change.after() != null) {
+                    products.remove(id);
+                    byReferencia.remove(change.after().referencia(), id);
+                }
+                if (change.before() != null) {
+                    restore.put(id, change);
+                }
+            }
+            for (Map.Entry<Long, Change> entry : restore.entrySet()) {
+                long id = entry.getKey();
+                Row before = entry.getValue().before();
+                Row after = entry.getValue().after();
+                if (byReferencia.containsKey(before.referencia())) {
+                    // Otro producto ocupa ya la referencia: se deja la fila escrita
+                    skipped++;
+                    if (after != null && !byReferencia.containsKey(after.referencia())) {
+                        products.put(id, after);
+                        byReferencia.put(after.referencia(), id);
+                    }
+                    continue;
+                }
+                products.put(id, before);
+                byReferencia.put(before.referencia(), id);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        if (skipped > 0) {
+            log.warn("Transacción deshecha: {} productos no se han restaurado porque cambiaron entretanto", skipped);
+        }
+    }
+
+    private void afterWrite() {
+        if (commitDelay.isZero()) {
+            store.commit();
+        }
+    }
+
+    /**
+     * Producto con la referencia indicada; descarta la entrada si una escritura
+     * concurrente ya ha cambiado la referencia de esa fila.
+     */
+    private Hit hitByReferencia(String referencia) {
+        Long id = byReferencia.get(referencia);
+        Row row = id == null ? null : products.get(id);
+        return row == null || !row.referencia().equals(referencia) ? null : new Hit(id, row);
+    }
+
+    private static boolean matches(Row row, ProductSearchCriteria criteria) {
+        if (criteria.getDepartamento() != null && !criteria.getDepartamento().equals(row.departamento())) {
+            return false;
+        }
+        if (criteria.getMarca() != null && !criteria.getMarca().equals(row.marca())) {
+            return false;
+        }
+        if (criteria.getReferencia() != null && !criteria.getReferencia().equals(row.referencia())) {
+            return false;
+        }
+        if (criteria.getReferenciaPrefix() != null && !row.referencia().startsWith(criteria.getReferenciaPrefix())) {
+            return false;
+        }
+        if (criteria.getPrecioMin() != null && (row.precio() == null || row.precio().compareTo(criteria.getPrecioMin()) < 0)) {
+            return false;
+        }
+        if (criteria.getPrecioMax() != null && (row.precio() == null || row.precio().compareTo(criteria.getPrecioMax()) > 0)) {
+            return false;
+        }
+        if (criteria.getDisponibleMin() != null && row.numeroDisponible() < criteria.getDisponibleMin()) {
+            return false;
+        }
+        return criteria.getDisponibleMax() == null || row.numeroDisponible() <= criteria.getDisponibleMax();
+    }
+
+    /**
+     * Orden {@code field [asc|desc], id asc}, con los nulos primero en ascendente como en H2.
+     */
+    private static Comparator<Hit> order(String field, boolean descending) {
+        Comparator<Hit> byField = Comparator.comparing(hit -> value(hit, field),
+            Comparator.nullsFirst(MvStoreProductStore::compareValues));
+        if (descending) {
+            byField = byField.reversed();
+        }
+        return byField.thenComparingLong(Hit::id);
+    }
+
+    private static boolean isAfter(Hit hit, ProductQuery query) {
+        if (query.after() == null) {
+            return true;
+        }
+        Comparable<?> value = value(hit, query.field());
+        Comparable<?> last = query.after().value();
+        int cmp = value == null || last == null
+            ? Boolean.compare(value != null, last != null)
+            : compareValues(value, last);
+        if (query.descending()) {
+            cmp = -cmp;
+        }
+        return cmp > 0 || (cmp == 0 && hit.id() > query.after().id());
+    }
+
+    private static Comparable<?> value(Hit hit, String field) {
+        return switch (field) {
+            case "referencia" -> hit.row().referencia();
+            case "nombre" -> hit.row().nombre();
+            case "precio" -> hit.row().precio();
+            case "numeroDisponible" -> hit.row().numeroDisponible();
+            default -> hit.id();
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareValues(Comparable a, Comparable b) {
+        return a.compareTo(b);
+    }
+
+    private static Row withStock(Row row, int numeroDisponible, Instant lastModified) {
+        return new Row(row.referencia(), row.nombre(), row.marca(), row.descripcion(), row.precio(),
+            numeroDisponible, row.departamento(), row.version() + 1, lastModified);
+    }
+
+    private static ProductDto toDto(long id, Row row) {
+        ProductDto dto = new ProductDto(row.referencia(), row.nombre(), row.marca(), row.descripcion(),
+            row.precio(), row.numeroDisponible(), row.departamento());
+        dto.setId(id);
+        dto.setVersion(row.version());
+        dto.setLastModified(row.lastModified());
+        return dto;
+    }
+
+    private static DataIntegrityViolationException duplicate(String referencia) {
+        return new DataIntegrityViolationException("Ya existe un producto con la referencia " + referencia);
+    }
+
+    /**
+     * Formato binario de una fila: textos con su longitud (0 para null),
+     * precio como escala y valor sin escala, y enteros de longitud variable.
+     */
+    private static final class RowType extends BasicDataType<Row> {
+
+        private static final byte DECIMAL_NULL = 0;
+        private static final byte DECIMAL_LONG = 1;
+        private static final byte DECIMAL_BYTES = 2;
+
+        @Override
+        public int getMemory(Row row) {
+            return 96 + 2 * (length(row.referencia()) + length(row.nombre()) + length(row.marca())
+                + length(row.descripcion()) + length(row.departamento()));
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Row row) {
+            writeString(buff, row.referencia());
+            writeString(buff, row.nombre());
+            writeString(buff, row.marca());
+            writeString(buff, row.descripcion());
+            writeDecimal(buff, row.precio());
+            buff.putVarInt(row.numeroDisponible());
+            writeString(buff, row.departamento());
+            buff.putVarLong(row.version());
+            buff.putVarLong(row.lastModified().getEpochSecond()).putVarInt(row.lastModified().getNano());
+        }
+
+        @Override
+        public Row read(ByteBuffer buff) {
+            String referencia = readString(buff);
+            String nombre = readString(buff);
+            String marca = readString(buff);
+            String descripcion = readString(buff);
+            BigDecimal precio = readDecimal(buff);
+            int numeroDisponible = DataUtils.readVarInt(buff);
+            String departamento = readString(buff);
+            long version = DataUtils.readVarLong(buff);
+            Instant lastModified = Instant.ofEpochSecond(DataUtils.readVarLong(buff), DataUtils.readVarInt(buff));
+            return new Row(referencia, nombre, marca, descripcion, precio, numeroDisponible, departamento, version,
+                lastModified);
+        }
+
+        @Override
+        public Row[] createStorage(int size) {
+            return new Row[size];
+        }
+
+        private static int length(String s) {
+            return s == null ? 0 : s.length();
+        }
+
+        private static void writeString(WriteBuffer buff, String s) {
+            if (s == null) {
+                buff.putVarInt(0);
+            } else {
+                buff.putVarInt(s.length() + 1).putStringData(s, s.length());
+            }
+        }
+
+        private static String readString(ByteBuffer buff) {
+            int length = DataUtils.readVarInt(buff);
+            return length == 0 ? null : DataUtils.readString(buff, length - 1);
+        }
+
+        private static void writeDecimal(WriteBuffer buff, BigDecimal value) {
+            if (value == null) {
+                buff.put(DECIMAL_NULL);
+                return;
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                buff.put(DECIMAL_LONG).putVarInt(value.scale()).putVarLong(unscaled.longValue());
+            } else {
+                byte[] bytes = unscaled.toByteArray();
+                buff.put(DECIMAL_BYTES).putVarInt(value.scale()).putVarInt(bytes.length).put(bytes);
+            }
+        }
+
+        private static BigDecimal readDecimal(ByteBuffer buff) {
+            byte kind = buff.get();
+            if (kind == DECIMAL_NULL) {
+                return null;
+            }
+            int scale = DataUtils.readVarInt(buff);
+            if (kind == DECIMAL_LONG) {
+                return BigDecimal.valueOf(DataUtils.readVarLong(buff), scale);
+            }
+            byte[] bytes = new byte[DataUtils.readVarInt(buff)];
+            buff.get(bytes);
+            return new BigDecimal(new BigInteger(bytes), scale);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.frida.productsdemo.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frida.productsdemo.entity.ProductChange;
+
+/**
+ * Repositorio del registro de cambios del catálogo.
+ */
+@Repository
+public interface ProductChangeRepository extends JpaRepository<ProductChange, Long> {
+
+    /**
+     * Cambios posteriores a {@code seq} en orden de secuencia.
+     */
+    List<ProductChange> findBySeqGreaterThanOrderBySeqAsc(Long seq, Pageable pageable);
+
+    /**
+     * Menor secuencia conservada, o null si el registro está vacío.
+     */
+    @Query("select min(c.seq) from ProductChange c")
+    Long findMinSeq();
+
+    /**
+     * Elimina los cambios anteriores a la fecha indicada.
+     *
+     * @return Número de cambios eliminados
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from ProductChange c where c.createdAt < :limit")
+    int deleteOlderThan(@Param("limit") Instant limit);
+}
@@ -0,0 +1,24 @@
+package com.frida.productsdemo.repository;
+
+import com.frida.productsdemo.models.ProductSearchCriteria;
+
+/**
+ * Búsqueda de productos ya resuelta: filtros, orden y posición de keyset.
+ *
+ * El orden es siempre {@code field [asc|desc], id asc}, y {@code after} marca
+ * la última fila de la página anterior (null para la primera).
+ *
+ * @param criteria Filtros a aplicar (los nulos se ignoran)
+ * @param field Campo de ordenación
+ * @param descending true si el campo se ordena de forma descendente
+ * @param after Última fila recibida, o null
+ * @param limit Número máximo de productos a devolver
+ */
+public record ProductQuery(ProductSearchCriteria criteria, String field, boolean descending, Position after, int limit) {
+
+    /**
+     * Valor del campo de orden (null si la fila no lo tiene) e ID de una fila.
+     */
+    public record Position(Comparable<?> value, long id) {
+    }
+}
@@ -1,16 +1,127 @@
 package com.frida.productsdemo.repository;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.frida.productsdemo.entity.ProductDto;
 
+import jakarta.persistence.QueryHint;
+
 /**
  * Repositorio para la entidad Product.
  * Provee operaciones CRUD y consultas personalizadas si se requieren.
  */
 @Repository
-public interface ProductRepository extends JpaRepository<ProductDto, Long> {
-    // Puedes agregar métodos personalizados aquí, ejemplo:
-    // Optional<Product> findByReferencia(String referencia);
-}
\ No newline at end of file
+public interface ProductRepository extends JpaRepository<ProductDto, Long>, JpaSpecificationExecutor<ProductDto> {
+
+    /**
+     * Página de productos por keyset: los siguientes a {@code id} ordenados por id.
+     * El tamaño lo marca el {@link Pageable}; no se hace COUNT ni OFFSET.
+     */
+    List<ProductDto> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Recorre todo el catálogo con un cursor de solo lectura.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from ProductDto p order by p.id")
+    Stream<ProductDto> streamAllOrderById();
+
+    /**
+     * Mayor ID del catálogo, o null si está vacío.
+     */
+    @Query("select max(p.id) from ProductDto p")
+    Long findMaxId();
+
+    /**
+     * Producto con la referencia indicada.
+     */
+    Optional<ProductDto> findByReferencia(String referencia);
+
+    /**
+     * Productos cuya referencia está en la colección indicada.
+     */
+    List<ProductDto> findByReferenciaIn(Collection<String> referencias);
+
+    /**
+     * IDs existentes de entre los indicados.
+     */
+    @Query("select p.id from ProductDto p where p.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Actualiza todos los campos de un producto con una sola sentencia UPDATE,
+     * subiendo su versión y su fecha de modificación.
+     *
+     * Si se indica {@code version}, solo se actualiza cuando coincide con la
+     * versión guardada (bloqueo optimista).
+     *
+     * @return Número de filas actualizadas (0 si el producto no existe o la versión no coincide)
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update ProductDto p set p.referencia = :referencia, p.nombre = :nombre, p.marca = :marca, "
+         + "p.descripcion = :descripcion, p.precio = :precio, p.numeroDisponible = :numeroDisponible, "
+         + "p.departamento = :departamento, p.version = p.version + 1, p.lastModified = :lastModified "
+         + "where p.id = :id and (:version is null or p.version = :version)")
+    int updateById(@Param("id") Long id, @Param("referencia") String referencia, @Param("nombre") String nombre,
+                   @Param("marca") String marca, @Param("descripcion") String descripcion,
+                   @Param("precio") BigDecimal precio, @Param("numeroDisponible") int numeroDisponible,
+                   @Param("departamento") String departamento, @Param("lastModified") Instant lastModified,
+                   @Param("version") Long version);
+
+    /**
+     * Suma {@code delta} al stock de un producto con un único UPDATE
+     * condicional que nunca deja el stock por debajo de cero.
+     *
+     * @return 1 si se aplicó, 0 si el producto no existe o no hay stock suficiente
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update ProductDto p set p.numeroDisponible = p.numeroDisponible + :delta, "
+         + "p.version = p.version + 1, p.lastModified = :lastModified "
+         + "where p.id = :id and p.numeroDisponible + :delta >= 0")
+    int adjustStock(@Param("id") Long id, @Param("delta") int delta, @Param("lastModified") Instant lastModified);
+
+    /**
+     * Versión actual de un producto, o null si no existe.
+     */
+    @Query("select p.version from ProductDto p where p.id = :id")
+    Long findVersionById(@Param("id") Long id);
+
+    /**
+     * Elimina un producto con una sola sentencia DELETE.
+     *
+     * @return Número de filas eliminadas (0 si el producto no existe)
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from ProductDto p where p.id = :id")
+    int deleteByIdReturningCount(@Param("id") Long id);
+
+    /**
+     * Elimina en una sola sentencia todos los productos con los IDs indicados.
+     *
+     * @return Número de filas eliminadas
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from ProductDto p where p.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
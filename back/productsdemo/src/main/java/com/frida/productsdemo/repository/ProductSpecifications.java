@@ -0,0 +1,104 @@
+package com.frida.productsdemo.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.frida.productsdemo.entity.ProductDto;
+import com.frida.productsdemo.models.ProductSearchCriteria;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+
+/**
+ * Predicados JPA para la búsqueda de productos.
+ * 
+ * Todos son comparaciones directas sobre columnas indexadas (igualdad,
+ * rangos y LIKE por prefijo) para que la base de datos pueda usar los
+ * índices declarados en {@link ProductDto}.
+ */
+public final class ProductSpecifications {
+
+    private ProductSpecifications() { /* Previene instanciación */ }
+
+    /**
+     * Combina todos los filtros informados en el criterio.
+     */
+    public static Specification<ProductDto> matching(ProductSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (criteria.getDepartamento() != null) {
+                predicates.add(cb.equal(root.get("departamento"), criteria.getDepartamento()));
+            }
+            if (criteria.getMarca() != null) {
+                predicates.add(cb.equal(root.get("marca"), criteria.getMarca()));
+            }
+            if (criteria.getReferencia() != null) {
+                predicates.add(cb.equal(root.get("referencia"), criteria.getReferencia()));
+            }
+            if (criteria.getReferenciaPrefix() != null) {
+                String escaped = criteria.getReferenciaPrefix()
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+                predicates.add(cb.like(root.get("referencia"), escaped + "%", '\\'));
+            }
+            if (criteria.getPrecioMin() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("precio"), criteria.getPrecioMin()));
+            }
+            if (criteria.getPrecioMax() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("precio"), criteria.getPrecioMax()));
+            }
+            if (criteria.getDisponibleMin() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("numeroDisponible"), criteria.getDisponibleMin()));
+            }
+            if (criteria.getDisponibleMax() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("numeroDisponible"), criteria.getDisponibleMax()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Condición de keyset: filas posteriores a (valor, id) en el orden
+     * {@code field [asc|desc], id asc}, con los nulos primero en ascendente y
+     * al final en descendente: el orden por defecto de H2, que es el que aplica
+     * a la consulta (Spring Data no admite fijarlo con Criteria).
+     *
+     * @param field Campo de ordenación
+     * @param value Valor del campo en la última fila recibida (null si no lo tenía)
+     * @param id ID de la última fila recibida
+     * @param descending true si el campo se ordena de forma descendente
+     */
+    public static <T extends Comparable<? super T>> Specification<ProductDto> after(String field, T value, Long id, boolean descending) {
+        return (root, query, cb) -> {
+            Path<T> path = root.get(field);
+            if (field.equals("id")) {
+                return descending ? cb.lessThan(path, value) : cb.greaterThan(path, value);
+            }
+            Predicate sameValueLaterId = cb.greaterThan(root.get("id"), id);
+            if (value == null) {
+                // Ascendente: quedan los nulos posteriores y todos los valores; descendente, solo los nulos
+                Predicate laterNull = cb.and(cb.isNull(path), sameValueLaterId);
+                return descending ? laterNull : cb.or(laterNull, cb.isNotNull(path));
+            }
+            Predicate beyond = cb.or(
+                descending ? cb.lessThan(path, value) : cb.greaterThan(path, value),
+                cb.and(cb.equal(path, value), sameValueLaterId));
+            return descending ? cb.or(beyond, cb.isNull(path)) : beyond;
+        };
+    }
+
+    /**
+     * Convierte el valor textual de un cursor al tipo del campo.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Comparable<? super T>> T parseValue(String field, String raw) {
+        return (T) switch (field) {
+            case "id" -> Long.valueOf(raw);
+            case "precio" -> new BigDecimal(raw);
+            case "numeroDisponible" -> Integer.valueOf(raw);
+            default -> raw;
+        };
+    }
+}
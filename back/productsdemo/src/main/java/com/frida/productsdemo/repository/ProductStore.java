@@ -0,0 +1,147 @@
+package com.frida.productsdemo.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.frida.productsdemo.entity.ProductDto;
+
+/**
+ * Almacén de productos que usan los servicios.
+ *
+ * Reúne todas las lecturas y escrituras del catálogo para que el motor se
+ * pueda elegir con {@code products.store.type}: {@link JpaProductStore}
+ * (por defecto, tabla de H2 a través de Hibernate) o
+ * {@link MvStoreProductStore} (mapa clave-valor embebido, sin ORM).
+ *
+ * Las escrituras asignan la versión y la fecha de modificación. Las lecturas
+ * devuelven objetos propios del llamante, que puede modificarlos sin afectar
+ * al almacén hasta que los guarde.
+ */
+public interface ProductStore {
+
+    /**
+     * Producto con el ID indicado.
+     */
+    Optional<ProductDto> findById(Long id);
+
+    /**
+     * Producto con la referencia indicada.
+     */
+    Optional<ProductDto> findByReferencia(String referencia);
+
+    /**
+     * Productos con los IDs indicados, sin orden garantizado; los que no existen se omiten.
+     */
+    List<ProductDto> findAllById(Collection<Long> ids);
+
+    /**
+     * Productos cuya referencia está en la colección indicada.
+     */
+    List<ProductDto> findByReferenciaIn(Collection<String> referencias);
+
+    /**
+     * IDs existentes de entre los indicados.
+     */
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    /**
+     * @return true si existe un producto con ese ID
+     */
+    boolean existsById(Long id);
+
+    /**
+     * Página por keyset: hasta {@code size} productos con ID mayor que {@code afterId}, ordenados por ID.
+     */
+    List<ProductDto> findPage(long afterId, int size);
+
+    /**
+     * Productos que cumplen los filtros, en el orden de la consulta y a partir de su posición.
+     */
+    List<ProductDto> search(ProductQuery query);
+
+    /**
+     * Recorre todo el catálogo en orden de ID sin cargarlo entero en memoria.
+     */
+    void forEachOrderedById(Consumer<ProductDto> consumer);
+
+    /**
+     * Número de productos del catálogo.
+     */
+    long count();
+
+    /**
+     * Mayor ID del catálogo, o null si está vacío.
+     */
+    Long findMaxId();
+
+    /**
+     * Versión actual de un producto, o null si no existe.
+     */
+    Long findVersionById(Long id);
+
+    /**
+     * Da de alta un producto nuevo (su ID debe ser null).
+     *
+     * @return El producto guardado, con ID, versión y fecha de modificación
+     * @throws org.springframework.dao.DataIntegrityViolationException si la referencia ya existe
+     */
+    ProductDto insert(ProductDto product);
+
+    /**
+     * Guarda un bloque de productos: inserta los que no tienen ID y actualiza
+     * todos los campos del resto. Los objetos recibidos quedan con su ID,
+     * versión y fecha de modificación.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException si alguna referencia ya existe
+     * @throws org.springframework.dao.OptimisticLockingFailureException si alguno cambió desde que se leyó
+     */
+    void saveAll(List<ProductDto> products);
+
+    /**
+     * Actualiza todos los campos de un producto, subiendo su versión.
+     *
+     * @param id ID del producto
+     * @param values Nuevos valores (se ignoran su ID, versión y fecha)
+     * @param expectedVersion Versión leída por el cliente, o null para no comprobarla
+     * @param lastModified Fecha de modificación a guardar
+     * @return 1 si se actualizó, 0 si no existe o la versión no coincide
+     * @throws org.springframework.dao.DataIntegrityViolationException si la nueva referencia ya es de otro producto
+     */
+    int update(Long id, ProductDto values, Long expectedVersion, Instant lastModified);
+
+    /**
+     * Suma {@code delta} al stock de un producto sin dejarlo nunca por debajo de cero.
+     *
+     * @return 1 si se aplicó, 0 si el producto no existe o no hay stock suficiente
+     */
+    int adjustStock(Long id, int delta, Instant lastModified);
+
+    /**
+     * Descuenta varias cantidades de stock de forma atómica: todas o ninguna.
+     *
+     * Debe llamarse dentro de una transacción, que el llamante ha de deshacer
+     * si la reserva falla.
+     *
+     * @param quantities Unidades a descontar por ID de producto
+     * @return IDs que no existen o no tienen stock suficiente (vacío si se aplicó todo)
+     */
+    List<Long> reserveStock(Map<Long, Integer> quantities, Instant lastModified);
+
+    /**
+     * Elimina un producto.
+     *
+     * @return Número de productos eliminados (0 si no existía)
+     */
+    int deleteById(Long id);
+
+    /**
+     * Elimina todos los productos con los IDs indicados.
+     *
+     * @return Número de productos eliminados
+     */
+    int deleteAllById(Collection<Long> ids);
+}
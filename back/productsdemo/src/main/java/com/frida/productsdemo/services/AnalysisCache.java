@@ -0,0 +1,303 @@
+package com.frida.productsdemo.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.frida.productsdemo.models.Product;
+import com.google.gson.Gson;
+
+/**
+ * Caché de resultados del análisis de imágenes.
+ * 
+ * La clave es un SHA-256 de los bytes de la imagen, el modelo y el prompt, de
+ * modo que volver a subir la misma foto no genera una nueva llamada al LLM.
+ * El nivel en memoria es un LRU acotado por número de entradas y con
+ * caducidad por TTL. Opcionalmente se persiste cada resultado en disco
+ * ({@code analysis.cache.disk-dir}) para conservarlo entre reinicios; ese
+ * nivel se acota a {@code analysis.cache.disk-max-entries} ficheros: al
+ * superarlo se borran los caducados y, si no basta, los más antiguos.
+ */
+@Component
+public class AnalysisCache {
+
+	private static final Logger log = LoggerFactory.getLogger(AnalysisCache.class);
+
+	private static final Gson GSON = ProductJson.GSON;
+	private static final String SUFFIX = ".json";
+
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final Path diskDir;
+	private final int diskMaxEntries;
+
+	/** Ficheros en disco (aproximado entre podas). */
+	private final AtomicInteger diskSize = new AtomicInteger();
+	private final AtomicBoolean pruning = new AtomicBoolean();
+	private final AtomicLong diskEvictions = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final Map<String, Entry> entries;
+
+	private record Entry(String json, long createdAt) {}
+
+	public AnalysisCache(@Value("${analysis.cache.max-entries:1000}") int maxEntries,
+	                     @Value("${analysis.cache.ttl:PT24H}") Duration ttl,
+	                     @Value("${analysis.cache.disk-dir:}") String diskDir,
+	                     @Value("${analysis.cache.disk-max-entries:10000}") int diskMaxEntries) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttl.toMillis();
+		this.diskDir = diskDir == null || diskDir.isBlank() ? null : Paths.get(diskDir);
+		this.diskMaxEntries = diskMaxEntries;
+		if (this.diskDir != null) {
+			pruneDisk();
+		}
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > AnalysisCache.this.maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Calcula la clave de caché para una imagen y una configuración de llamada.
+	 * 
+	 * @param image Bytes originales de la imagen
+	 * @param model Modelo LLM utilizado
+	 * @param prompt Prompt enviado junto a la imagen
+	 * @return Hash hexadecimal que identifica la petición
+	 */
+	public static String key(byte[] image, String model, String prompt) {
+		MessageDigest digest = sha256();
+		digest.update(image);
+		digest.update((byte) 0);
+		digest.update(model.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 no disponible", e);
+		}
+	}
+
+	/**
+	 * Busca un resultado en memoria y, si no está, en disco.
+	 * 
+	 * @param key Clave calculada con {@link #key(byte[], String, String)}
+	 * @return Una copia del producto cacheado, o null si no hay entrada vigente
+	 */
+	public Product get(String key) {
+		if (maxEntries <= 0) {
+			misses.incrementAndGet();
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && isExpired(entry, now)) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry != null) {
+			hits.incrementAndGet();
+			return GSON.fromJson(entry.json(), Product.class);
+		}
+
+		entry = readFromDisk(key, now);
+		if (entry != null) {
+			diskHits.incrementAndGet();
+			synchronized (entries) {
+				entries.put(key, entry);
+			}
+			return GSON.fromJson(entry.json(), Product.class);
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Guarda el resultado de un análisis. Los resultados nulos no se cachean.
+	 * 
+	 * @param key Clave calculada con {@link #key(byte[], String, String)}
+	 * @param product Producto devuelto por el LLM
+	 */
+	public void put(String key, Product product) {
+		if (product == null || maxEntries <= 0) {
+			return;
+		}
+		Entry entry = new Entry(GSON.toJson(product), System.currentTimeMillis());
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+		writeToDisk(key, entry);
+	}
+
+	/**
+	 * Vacía el nivel en memoria. Los ficheros en disco se conservan.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Devuelve los contadores de uso de la caché.
+	 * 
+	 * @return Mapa con tamaño, aciertos en memoria y disco, fallos, desalojos y ratio de acierto
+	 */
+	public Map<String, Object> getStats() {
+		long h = hits.get();
+		long d = diskHits.get();
+		long m = misses.get();
+		long total = h + d + m;
+		Map<String, Object> stats = new LinkedHashMap<>();
+		synchronized (entries) {
+			stats.put("size", entries.size());
+		}
+		stats.put("maxEntries", maxEntries);
+		stats.put("hits", h);
+		stats.put("diskHits", d);
+		stats.put("misses", m);
+		stats.put("evictions", evictions.get());
+		stats.put("hitRatio", total == 0 ? 0.0 : (double) (h + d) / total);
+		stats.put("diskEnabled", diskDir != null);
+		stats.put("diskSize", diskSize.get());
+		stats.put("diskMaxEntries", diskMaxEntries);
+		stats.put("diskEvictions", diskEvictions.get());
+		return stats;
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		return ttlMillis > 0 && now - entry.createdAt() > ttlMillis;
+	}
+
+	private Entry readFromDisk(String key, long now) {
+		if (diskDir == null) {
+			return null;
+		}
+		Path file = diskDir.resolve(key + SUFFIX);
+		try {
+			if (!Files.exists(file)) {
+				return null;
+			}
+			Entry entry = new Entry(Files.readString(file), Files.getLastModifiedTime(file).toMillis());
+			if (isExpired(entry, now)) {
+				if (Files.deleteIfExists(file)) {
+					diskSize.decrementAndGet();
+					diskEvictions.incrementAndGet();
+				}
+				return null;
+			}
+			return entry;
+		} catch (IOException e) {
+			log.warn("Error al leer la caché de análisis en disco: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private void writeToDisk(String key, Entry entry) {
+		if (diskDir == null) {
+			return;
+		}
+		try {
+			Files.createDirectories(diskDir);
+			Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+			Files.writeString(tmp, entry.json());
+			Path target = diskDir.resolve(key + SUFFIX);
+			boolean existed = Files.exists(target);
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (!existed && diskSize.incrementAndGet() > diskMaxEntries) {
+				pruneDisk();
+			}
+		} catch (IOException e) {
+			log.warn("Error al escribir la caché de análisis en disco: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Borra los ficheros caducados y, si siguen sobrando, los más antiguos
+	 * hasta dejar el 90 % de {@code disk-max-entries}, para no podar en cada
+	 * escritura. Si ya hay una poda en curso no hace nada.
+	 */
+	private void pruneDisk() {
+		if (!pruning.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (!Files.isDirectory(diskDir)) {
+				diskSize.set(0);
+				return;
+			}
+			record DiskFile(Path path, long modified) {}
+			List<DiskFile> files = new ArrayList<>();
+			try (Stream<Path> paths = Files.list(diskDir)) {
+				for (Path path : (Iterable<Path>) paths::iterator) {
+					if (path.getFileName().toString().endsWith(SUFFIX)) {
+						FileTime modified = Files.getLastModifiedTime(path);
+						files.add(new DiskFile(path, modified.toMillis()));
+					}
+				}
+			}
+			long now = System.currentTimeMillis();
+			int target = Math.max(0, diskMaxEntries - diskMaxEntries / 10);
+			files.sort(Comparator.comparingLong(DiskFile::modified));
+			int remaining = files.size();
+			for (DiskFile file : files) {
+				boolean expired = ttlMillis > 0 && now - file.modified() > ttlMillis;
+				if (!expired && remaining <= target) {
+					break;
+				}
+				if (Files.deleteIfExists(file.path())) {
+					diskEvictions.incrementAndGet();
+				}
+				remaining--;
+			}
+			diskSize.set(remaining);
+		} catch (IOException e) {
+			log.warn("Error al podar la caché de análisis en disco: {}", e.getMessage());
+		} finally {
+			pruning.set(false);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package com.frida.productsdemo.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.frida.productsdemo.models.AnalysisJob;
+import com.frida.productsdemo.models.AnalysisJobItem;
+import com.frida.productsdemo.models.Product;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Servicio de trabajos asíncronos de análisis de imágenes por lotes.
+ * 
+ * Cada lote recibe un ID inmediatamente y sus imágenes se procesan en segundo
+ * plano con el mismo pipeline que {@link ProductService#producEvaluation(byte[])}.
+ * El número de hilos del pool ({@code analysis.batch.concurrency}) limita las
+ * llamadas simultáneas al LLM que generan los lotes, de modo que un lote grande
+ * no bloquea los hilos de Tomcat ni satura el endpoint de Frida.
+ * 
+ * Las imágenes se vuelcan a ficheros temporales al recibir la petición y se
+ * leen una a una al procesarlas, así la memoria no depende del tamaño del lote.
+ * Para que tampoco lo haga el disco, las imágenes pendientes de todos los lotes
+ * se limitan a {@code analysis.batch.max-queued-images}: un lote que no cabe
+ * se rechaza antes de volcar nada.
+ */
+@Service
+public class AnalysisJobService {
+
+	private static final Logger log = LoggerFactory.getLogger(AnalysisJobService.class);
+
+	@Autowired
+	private ProductService productService;
+
+	private final ExecutorService executor;
+	private final Duration retention;
+	private final int maxQueuedImages;
+	private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+	/** Imágenes aceptadas y aún sin procesar, con su fichero temporal en disco. */
+	private final AtomicInteger queuedImages = new AtomicInteger();
+
+	public AnalysisJobService(@Value("${analysis.batch.concurrency:4}") int concurrency,
+	                          @Value("${analysis.batch.retention:PT1H}") Duration retention,
+	                          @Value("${analysis.batch.max-queued-images:1000}") int maxQueuedImages) {
+		AtomicInteger threadCount = new AtomicInteger();
+		this.maxQueuedImages = maxQueuedImages;
+		// La reserva de submit() garantiza que la cola nunca se llena
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(Math.max(1, maxQueuedImages)), r -> {
+					Thread t = new Thread(r, "analysis-batch-" + threadCount.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		this.retention = retention;
+	}
+
+	/**
+	 * Registra un nuevo lote y encola el análisis de cada imagen.
+	 * 
+	 * @param files Imágenes a analizar
+	 * @return El trabajo creado, en estado QUEUED
+	 * @throws IOException si no se pueden guardar las imágenes en disco temporal
+	 * @throws IllegalArgumentException si el lote tiene más imágenes de las que caben en la cola
+	 * @throws RejectedExecutionException si ahora mismo no hay hueco en la cola para el lote
+	 */
+	public AnalysisJob submit(List<MultipartFile> files) throws IOException {
+		purgeExpiredJobs();
+		if (files.size() > maxQueuedImages) {
+			throw new IllegalArgumentException("El lote supera el máximo de " + maxQueuedImages + " imágenes");
+		}
+		if (queuedImages.addAndGet(files.size()) > maxQueuedImages) {
+			queuedImages.addAndGet(-files.size());
+			throw new RejectedExecutionException("Cola de análisis por lotes llena: " + queuedImages.get()
+					+ " imágenes pendientes");
+		}
+
+		List<AnalysisJobItem> items = new ArrayList<>(files.size());
+		List<Path> tempFiles = new ArrayList<>(files.size());
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				MultipartFile file = files.get(i);
+				Path temp = Files.createTempFile("analysis-", ".img");
+				tempFiles.add(temp);
+				file.transferTo(temp);
+				items.add(new AnalysisJobItem(i, file.getOriginalFilename()));
+			}
+		} catch (IOException e) {
+			queuedImages.addAndGet(-files.size());
+			for (Path temp : tempFiles) {
+				Files.deleteIfExists(temp);
+			}
+			throw e;
+		}
+
+		AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), items);
+		jobs.put(job.getId(), job);
+		for (int i = 0; i < items.size(); i++) {
+			AnalysisJobItem item = items.get(i);
+			Path temp = tempFiles.get(i);
+			executor.execute(() -> process(job, item, temp));
+		}
+		return job;
+	}
+
+	/**
+	 * Obtiene un trabajo con el detalle de todas sus imágenes.
+	 * 
+	 * @param id Identificador del trabajo
+	 * @return El trabajo, o null si no existe o ya caducó
+	 */
+	public AnalysisJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Resume el estado de un trabajo sin incluir los resultados.
+	 * 
+	 * @param job Trabajo a resumir
+	 * @return Mapa con el estado y los contadores de progreso
+	 */
+	public Map<String, Object> getStatus(AnalysisJob job) {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("id", job.getId());
+		status.put("status", job.getStatus());
+		status.put("total", job.getTotal());
+		status.put("succeeded", job.getSucceeded());
+		status.put("failed", job.getFailed());
+		status.put("pending", job.getPending());
+		status.put("createdAt", job.getCreatedAt());
+		status.put("finishedAt", job.getFinishedAt());
+		return status;
+	}
+
+	private void process(AnalysisJob job, AnalysisJobItem item, Path temp) {
+		item.setStatus(AnalysisJobItem.Status.RUNNING);
+		long start = System.nanoTime();
+		try {
+			Product product = productService.producEvaluation(Files.readAllBytes(temp));
+			item.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+			if (product == null) {
+				job.itemFailed(item, "El LLM no devolvió un producto");
+			} else {
+				job.itemSucceeded(item, product);
+			}
+		} catch (Exception e) {
+			item.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+			job.itemFailed(item, e.getClass().getSimpleName() + ": " + e.getMessage());
+		} finally {
+			queuedImages.decrementAndGet();
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				log.warn("No se pudo borrar el fichero temporal {}: {}", temp, e.getMessage());
+			}
+		}
+	}
+
+	private void purgeExpiredJobs() {
+		Instant limit = Instant.now().minus(retention);
+		jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(limit));
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,75 @@
+package com.frida.productsdemo.services;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frida.productsdemo.entity.CatalogState;
+import com.frida.productsdemo.repository.CatalogStateRepository;
+
+/**
+ * Contador de versiones del catálogo completo.
+ * 
+ * El contador de la fila {@link CatalogState} es el número de secuencia del
+ * último cambio registrado: el registro de cambios lo avanza dentro de cada
+ * transacción de escritura antes de confirmarla. Al estar en base de datos
+ * sobrevive a reinicios y es común a todas las instancias, por lo que sirve
+ * de ETag fuerte para los listados: si el contador no ha cambiado, ningún
+ * producto ha cambiado.
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE) // La fila debe existir antes de que tarden otros arranques (índice de texto)
+public class CatalogVersionService implements ApplicationRunner {
+
+	@Autowired
+	private CatalogStateRepository repository;
+
+	/**
+	 * Versión del catálogo en un instante dado.
+	 *
+	 * @param counter Secuencia del último cambio
+	 * @param lastModified Fecha de la última modificación
+	 */
+	public record CatalogVersion(long counter, Instant lastModified) {}
+
+	@Override
+	@Transactional
+	public void run(ApplicationArguments args) {
+		if (!repository.existsById(CatalogState.SINGLETON_ID)) {
+			repository.save(new CatalogState(CatalogState.SINGLETON_ID, 0, Instant.now()));
+		}
+	}
+
+	/**
+	 * Lee la versión actual del catálogo.
+	 */
+	@Transactional(readOnly = true)
+	public CatalogVersion current() {
+		return repository.findById(CatalogState.SINGLETON_ID)
+				.map(state -> new CatalogVersion(state.getChangeCounter(), state.getLastModified()))
+				.orElse(new CatalogVersion(0, Instant.EPOCH));
+	}
+
+	/**
+	 * Reserva {@code count} números de secuencia consecutivos.
+	 * 
+	 * Debe llamarse dentro de la transacción de escritura: la fila queda
+	 * bloqueada hasta que esta termina, por lo que ninguna otra transacción
+	 * puede obtener números posteriores y confirmarse antes.
+	 *
+	 * @param count Cantidad de números a reservar
+	 * @return El último número reservado; el primero es {@code resultado - count + 1}
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public long reserve(int count) {
+		repository.increment(count, Instant.now());
+		return repository.findChangeCounter();
+	}
+}
@@ -0,0 +1,108 @@
+package com.frida.productsdemo.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de CSV en streaming (RFC 4180).
+ * 
+ * Devuelve un registro cada vez, sin cargar el fichero en memoria. Admite
+ * campos entre comillas con separadores, saltos de línea y comillas dobles
+ * escapadas ({@code ""}) en su interior, y finales de línea LF o CRLF.
+ * 
+ * Un registro no puede superar {@code maxRecordLength} caracteres: sin ese
+ * límite, unas comillas sin cerrar harían copiar el resto del fichero en
+ * memoria antes de detectar el error.
+ */
+public class CsvRecordReader {
+
+	private final Reader reader;
+	private final char separator;
+	private final int maxRecordLength;
+	private final StringBuilder field = new StringBuilder();
+	private int pushedBack = -2;
+
+	/**
+	 * @param reader Origen de los datos; conviene que tenga buffer
+	 * @param separator Separador de campos, normalmente ',' o ';'
+	 * @param maxRecordLength Máximo de caracteres de un registro, separadores incluidos
+	 */
+	public CsvRecordReader(Reader reader, char separator, int maxRecordLength) {
+		this.reader = reader;
+		this.separator = separator;
+		this.maxRecordLength = maxRecordLength;
+	}
+
+	/**
+	 * Lee el siguiente registro.
+	 * 
+	 * @return Los campos del registro, o null al llegar al final
+	 * @throws IOException si falla la lectura, hay comillas sin cerrar o el
+	 *         registro supera el máximo de caracteres
+	 */
+	public List<String> readRecord() throws IOException {
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		List<String> fields = new ArrayList<>();
+		field.setLength(0);
+		boolean quoted = false;
+		boolean fieldWasQuoted = false;
+		int length = 0;
+		while (true) {
+			if (++length > maxRecordLength) {
+				throw new IOException("Registro CSV de más de " + maxRecordLength + " caracteres"
+						+ (quoted ? " (¿comillas sin cerrar?)" : ""));
+			}
+			if (quoted) {
+				if (c == -1) {
+					throw new IOException("Comillas sin cerrar en el CSV");
+				}
+				if (c == '"') {
+					int next = read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						c = next;
+						continue;
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.length() == 0 && !fieldWasQuoted) {
+				quoted = true;
+				fieldWasQuoted = true;
+			} else if (c == separator) {
+				fields.add(field.toString());
+				field.setLength(0);
+				fieldWasQuoted = false;
+			} else if (c == '\n' || c == -1) {
+				break;
+			} else if (c == '\r') {
+				int next = read();
+				if (next != '\n') {
+					pushedBack = next;
+				}
+				break;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private int read() throws IOException {
+		if (pushedBack != -2) {
+			int c = pushedBack;
+			pushedBack = -2;
+			return c;
+		}
+		return reader.read();
+	}
+}
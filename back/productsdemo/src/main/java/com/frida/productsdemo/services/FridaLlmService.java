@@ -2,19 +2,36 @@
 
 package com.frida.productsdemo.services;
 
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.models.LLmUsage;
+import com.frida.productsdemo.models.LlmChoice;
 import com.frida.productsdemo.models.LlmRequest;
 import com.frida.productsdemo.models.LlmResponse;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Service to interact with Frida LLM API for chat completions
+ * Service to interact with Frida LLM API for chat completions.
+ * Calls go through a pooled keep-alive HTTP client (see LlmHttpClientConfig).
  */
 @Service
 public class FridaLlmService {
@@ -22,7 +39,37 @@ public class FridaLlmService {
     @Value("${llm-url}")
     private String llmBaseUrl;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${llm-token}")
+    private String llmToken;
+
+    private final RestTemplate restTemplate;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final ObjectMapper objectMapper;
+
+    // Per-call deadline picked up by the request factory on the calling thread
+    private static final ThreadLocal<Duration> DEADLINE = new ThreadLocal<>();
+
+    public FridaLlmService(HttpClient llmHttpClient, PoolingHttpClientConnectionManager llmConnectionManager,
+                           ObjectMapper objectMapper) {
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(llmHttpClient);
+        factory.setHttpContextFactory((method, uri) -> {
+            Duration deadline = DEADLINE.get();
+            if (deadline == null) {
+                return null;
+            }
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(deadline))
+                .setResponseTimeout(Timeout.of(deadline))
+                .build());
+            return context;
+        });
+        this.restTemplate = new RestTemplate(factory);
+        this.connectionManager = llmConnectionManager;
+        this.objectMapper = objectMapper;
+    }
 
     /**
      * Calls Frida LLM chat completion endpoint with provided request
@@ -31,31 +78,106 @@ public class FridaLlmService {
      * @return Chat completion response
      */
     public LlmResponse callChatCompletion(LlmRequest request) {
+        return callChatCompletion(request, null);
+    }
+
+    /**
+     * Calls Frida LLM chat completion endpoint with a per-call deadline
+     *
+     * @param request Chat completion request payload
+     * @param deadline Max time to wait for a pooled connection and for the response; null uses the defaults
+     * @return Chat completion response
+     */
+    public LlmResponse callChatCompletion(LlmRequest request, Duration deadline) {
         
     	String endpoint = llmBaseUrl + "/v1/chat/completions";
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth("nA6EgISiPUzsaGMKufDG");
+        headers.setBearerAuth(llmToken.trim());
         HttpEntity<LlmRequest> entity = new HttpEntity<>(request, headers);
-        
-     // SERIALIZA y muestra el JSON que realmente se envía
+
+        if (deadline != null) {
+            DEADLINE.set(deadline);
+        }
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonRequest = mapper.writeValueAsString(request);
-            // System.out.println("JSON enviado a Frida LLM:\n" + jsonRequest);
-        } catch (Exception e) {
-            System.err.println("Error al serializar LlmRequest: " + e.getMessage());
+            ResponseEntity<LlmResponse> response = restTemplate.exchange(
+                endpoint,
+                HttpMethod.POST,
+                entity,
+                LlmResponse.class
+            );
+            return response.getBody();
+        } finally {
+            DEADLINE.remove();
         }
+    }
 
-        ResponseEntity<LlmResponse> response = restTemplate.exchange(
-            endpoint,
-            HttpMethod.POST,
-            entity,
-            LlmResponse.class
-        );
-        
-        
+    /**
+     * Calls Frida LLM chat completion endpoint in streaming (SSE) mode.
+     * Each content delta is handed to the consumer as soon as it arrives.
+     *
+     * @param request Chat completion request payload; its stream flag is forced to true
+     * @param onDelta Receives every text fragment of the completion, in order
+     * @return Token usage reported in the final chunk, or null if the server sent none
+     */
+    public LLmUsage streamChatCompletion(LlmRequest request, Consumer<String> onDelta) {
+        request.setStream(true);
 
-        return response.getBody();
+        String endpoint = llmBaseUrl + "/v1/chat/completions";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+        headers.setBearerAuth(llmToken.trim());
+        HttpEntity<LlmRequest> entity = new HttpEntity<>(request, headers);
+
+        return restTemplate.execute(endpoint, HttpMethod.POST, restTemplate.httpEntityCallback(entity), response -> {
+            LLmUsage usage = null;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if (data.equals("[DONE]")) {
+                        break;
+                    }
+                    if (data.isEmpty()) {
+                        continue;
+                    }
+                    LlmResponse chunk = objectMapper.readValue(data, LlmResponse.class);
+                    if (chunk.getUsage() != null) {
+                        usage = chunk.getUsage();
+                    }
+                    if (chunk.getChoices() == null) {
+                        continue;
+                    }
+                    for (LlmChoice choice : chunk.getChoices()) {
+                        if (choice.getDelta() != null && choice.getDelta().getContent() != null) {
+                            onDelta.accept(choice.getDelta().getContent());
+                        }
+                    }
+                }
+            }
+            return usage;
+        });
+    }
+
+    /**
+     * Returns the current connection pool statistics, useful for sizing the pool
+     *
+     * @return Leased, pending and available connections plus the configured maximums
+     */
+    public Map<String, Object> getPoolStats() {
+        PoolStats total = connectionManager.getTotalStats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leased", total.getLeased());
+        stats.put("pending", total.getPending());
+        stats.put("available", total.getAvailable());
+        stats.put("max", total.getMax());
+        stats.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+        stats.put("routes", connectionManager.getRoutes().size());
+        return stats;
     }
-}
\ No newline at end of file
+}
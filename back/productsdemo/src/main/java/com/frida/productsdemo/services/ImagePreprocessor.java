@@ -0,0 +1,332 @@
+package com.frida.productsdemo.services;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepara las imágenes antes de enviarlas al LLM.
+ * 
+ * Detecta el formato real por sus bytes de cabecera, reduce la imagen para que
+ * su lado mayor no supere {@code analysis.image.max-dimension} y la recodifica
+ * como JPEG con la calidad {@code analysis.image.jpeg-quality}. Al recodificar
+ * sin metadatos se eliminan EXIF, miniaturas y perfiles embebidos, así que
+ * antes se aplica la orientación EXIF de los JPEG (las fotos en vertical de
+ * los móviles vienen giradas en los píxeles y derechas solo por esa etiqueta).
+ * 
+ * Las dimensiones se leen de la cabecera antes de decodificar: por encima de
+ * {@code analysis.image.max-pixels} la imagen se rechaza con
+ * {@link ImageTooLargeException}, y las muy grandes se decodifican
+ * submuestreadas para no reservar más memoria de la necesaria.
+ * 
+ * Si la imagen no se puede decodificar (por ejemplo WEBP o HEIC) o la versión
+ * recodificada no es más pequeña, se envía la original con su tipo real.
+ */
+@Component
+public class ImagePreprocessor {
+
+	private static final Logger log = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+	/**
+	 * Imagen lista para incrustar en la petición al LLM.
+	 * 
+	 * @param bytes Contenido a enviar
+	 * @param mimeType Tipo MIME real de {@code bytes}
+	 * @param originalSize Tamaño en bytes de la imagen recibida
+	 */
+	public record PreparedImage(byte[] bytes, String mimeType, int originalSize) {
+		public int bytesSaved() {
+			return originalSize - bytes.length;
+		}
+	}
+
+	private final boolean enabled;
+	private final int maxDimension;
+	private final float jpegQuality;
+	private final long maxPixels;
+
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong reencoded = new AtomicLong();
+	private final AtomicLong originalBytes = new AtomicLong();
+	private final AtomicLong sentBytes = new AtomicLong();
+
+	public ImagePreprocessor(@Value("${analysis.image.enabled:true}") boolean enabled,
+	                         @Value("${analysis.image.max-dimension:1568}") int maxDimension,
+	                         @Value("${analysis.image.jpeg-quality:0.85}") float jpegQuality,
+	                         @Value("${analysis.image.max-pixels:50000000}") long maxPixels) {
+		this.enabled = enabled;
+		this.maxDimension = maxDimension;
+		this.jpegQuality = jpegQuality;
+		this.maxPixels = maxPixels;
+	}
+
+	/**
+	 * Reduce y recodifica la imagen si compensa.
+	 * 
+	 * @param original Bytes tal y como se recibieron
+	 * @return La imagen a enviar con su tipo MIME
+	 * @throws ImageTooLargeException si la imagen tiene más píxeles de los permitidos
+	 */
+	public PreparedImage prepare(byte[] original) {
+		String mimeType = detectMimeType(original);
+		PreparedImage prepared = new PreparedImage(original, mimeType, original.length);
+
+		if (enabled) {
+			try {
+				byte[] encoded = reencode(original);
+				// Una foto con orientación EXIF se envía siempre derecha, aunque ocupe más
+				boolean rotated = startsWith(original, 0, 0xFF, 0xD8, 0xFF) && exifOrientation(original) != 1;
+				if (encoded != null && (encoded.length < original.length || rotated)) {
+					prepared = new PreparedImage(encoded, "image/jpeg", original.length);
+					reencoded.incrementAndGet();
+				}
+			} catch (ImageTooLargeException e) {
+				throw e;
+			} catch (IOException | RuntimeException e) {
+				log.warn("No se pudo recodificar la imagen ({}), se envía la original: {}", mimeType, e.getMessage());
+			}
+		}
+
+		processed.incrementAndGet();
+		originalBytes.addAndGet(original.length);
+		sentBytes.addAndGet(prepared.bytes().length);
+		log.debug("Imagen preparada: {} -> {} bytes ({} ahorrados, {})",
+				original.length, prepared.bytes().length, prepared.bytesSaved(), prepared.mimeType());
+		return prepared;
+	}
+
+	/**
+	 * Devuelve los contadores acumulados de preprocesado.
+	 * 
+	 * @return Imágenes procesadas y recodificadas, bytes recibidos, enviados y ahorrados
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long received = originalBytes.get();
+		long sent = sentBytes.get();
+		stats.put("processed", processed.get());
+		stats.put("reencoded", reencoded.get());
+		stats.put("originalBytes", received);
+		stats.put("sentBytes", sent);
+		stats.put("bytesSaved", received - sent);
+		stats.put("maxDimension", maxDimension);
+		stats.put("jpegQuality", jpegQuality);
+		return stats;
+	}
+
+	/**
+	 * Identifica el formato de imagen por su firma de cabecera.
+	 * 
+	 * @param data Bytes de la imagen
+	 * @return Tipo MIME detectado, o image/jpeg si no se reconoce
+	 */
+	public static String detectMimeType(byte[] data) {
+		if (startsWith(data, 0, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+		if (startsWith(data, 0, 0x89, 'P', 'N', 'G')) return "image/png";
+		if (startsWith(data, 0, 'G', 'I', 'F', '8')) return "image/gif";
+		if (startsWith(data, 0, 'R', 'I', 'F', 'F') && startsWith(data, 8, 'W', 'E', 'B', 'P')) return "image/webp";
+		if (startsWith(data, 0, 'B', 'M')) return "image/bmp";
+		if (startsWith(data, 4, 'f', 't', 'y', 'p', 'h', 'e', 'i')) return "image/heic";
+		return "image/jpeg";
+	}
+
+	private static boolean startsWith(byte[] data, int offset, int... signature) {
+		if (data.length < offset + signature.length) {
+			return false;
+		}
+		for (int i = 0; i < signature.length; i++) {
+			if ((data[offset + i] & 0xFF) != signature[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private byte[] reencode(byte[] original) throws IOException {
+		BufferedImage source = decode(original);
+		if (source == null) {
+			return null;
+		}
+		int orientation = startsWith(original, 0, 0xFF, 0xD8, 0xFF) ? exifOrientation(original) : 1;
+
+		int width = source.getWidth();
+		int height = source.getHeight();
+		double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+		int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+		int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+		// Las orientaciones 5 a 8 giran 90 grados: se intercambian ancho y alto
+		boolean swap = orientation >= 5;
+		int targetWidth = swap ? scaledHeight : scaledWidth;
+		int targetHeight = swap ? scaledWidth : scaledHeight;
+
+		// JPEG no admite transparencia: se pinta sobre fondo blanco en RGB
+		BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, targetWidth, targetHeight);
+			g.transform(orientationTransform(orientation, scaledWidth, scaledHeight));
+			g.drawImage(source, 0, 0, scaledWidth, scaledHeight, null);
+		} finally {
+			g.dispose();
+		}
+
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!writers.hasNext()) {
+			return null;
+		}
+		ImageWriter writer = writers.next();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(original.length / 4);
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(jpegQuality);
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(target, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodifica la primera imagen comprobando antes sus dimensiones.
+	 * 
+	 * @return La imagen, submuestreada si es mucho mayor que el destino, o null si no hay decodificador
+	 * @throws ImageTooLargeException si supera {@code analysis.image.max-pixels}
+	 */
+	private BufferedImage decode(byte[] data) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if ((long) width * height > maxPixels) {
+					throw new ImageTooLargeException(width, height, maxPixels);
+				}
+				// Se conserva al menos el doble del tamaño final para que el escalado bilineal no pierda detalle
+				int subsampling = Math.max(1, Math.max(width, height) / (2 * maxDimension));
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Transformación que pasa de los píxeles guardados (ya escalados a
+	 * {@code width} x {@code height}) a la imagen derecha, según la etiqueta
+	 * Orientation de EXIF (1 a 8).
+	 */
+	static AffineTransform orientationTransform(int orientation, int width, int height) {
+		// AffineTransform(m00, m10, m01, m11, m02, m12): x' = m00 x + m01 y + m02, y' = m10 x + m11 y + m12
+		return switch (orientation) {
+			case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);       // espejo horizontal
+			case 3 -> new AffineTransform(-1, 0, 0, -1, width, height); // 180 grados
+			case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);      // espejo vertical
+			case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);            // traspuesta
+			case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);      // 90 grados en sentido horario
+			case 7 -> new AffineTransform(0, -1, -1, 0, height, width); // traspuesta inversa
+			case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);       // 90 grados en sentido antihorario
+			default -> new AffineTransform();
+		};
+	}
+
+	/**
+	 * Lee la etiqueta Orientation (0x0112) del IFD0 del bloque EXIF de un JPEG.
+	 * 
+	 * @return Valor de 1 a 8, o 1 si no hay EXIF o no se puede leer
+	 */
+	static int exifOrientation(byte[] jpeg) {
+		int pos = 2;
+		while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+			int marker = jpeg[pos + 1] & 0xFF;
+			int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+			if (marker == 0xDA || length < 2) {
+				// Empiezan los datos de la imagen: ya no habrá EXIF
+				return 1;
+			}
+			int data = pos + 4;
+			if (marker == 0xE1 && length >= 16 && data + length - 2 <= jpeg.length
+					&& startsWith(jpeg, data, 'E', 'x', 'i', 'f', 0, 0)) {
+				return tiffOrientation(jpeg, data + 6, data + length - 2);
+			}
+			pos += 2 + length;
+		}
+		return 1;
+	}
+
+	private static int tiffOrientation(byte[] b, int tiff, int end) {
+		boolean little;
+		if (startsWith(b, tiff, 'I', 'I')) {
+			little = true;
+		} else if (startsWith(b, tiff, 'M', 'M')) {
+			little = false;
+		} else {
+			return 1;
+		}
+		if (tiff + 8 > end) {
+			return 1;
+		}
+		long ifd = tiff + readInt(b, tiff + 4, little);
+		if (ifd + 2 > end) {
+			return 1;
+		}
+		int entries = readShort(b, (int) ifd, little);
+		for (int i = 0; i < entries; i++) {
+			int entry = (int) ifd + 2 + i * 12;
+			if (entry + 12 > end) {
+				return 1;
+			}
+			if (readShort(b, entry, little) == 0x0112) {
+				int value = readShort(b, entry + 8, little);
+				return value >= 1 && value <= 8 ? value : 1;
+			}
+		}
+		return 1;
+	}
+
+	private static int readShort(byte[] b, int pos, boolean little) {
+		int b0 = b[pos] & 0xFF;
+		int b1 = b[pos + 1] & 0xFF;
+		return little ? (b1 << 8) | b0 : (b0 << 8) | b1;
+	}
+
+	private static long readInt(byte[] b, int pos, boolean little) {
+		long high = readShort(b, little ? pos + 2 : pos, little);
+		long low = readShort(b, little ? pos : pos + 2, little);
+		return (high << 16) | low;
+	}
+}
@@ -0,0 +1,16 @@
+package com.frida.productsdemo.services;
+
+/**
+ * Imagen rechazada antes de decodificarla porque sus dimensiones superan
+ * {@code analysis.image.max-pixels}. Un PNG muy comprimido de pocos MB puede
+ * ocupar varios GB una vez decodificado, así que el límite se comprueba con
+ * la cabecera. Los controladores deben responder 413.
+ */
+public class ImageTooLargeException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ImageTooLargeException(int width, int height, long maxPixels) {
+		super("La imagen mide " + width + "x" + height + " píxeles y el máximo es " + maxPixels);
+	}
+}
@@ -0,0 +1,230 @@
+package com.frida.productsdemo.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frida.productsdemo.entity.ProductDto;
+import com.frida.productsdemo.models.BulkResult;
+import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.repository.ProductStore;
+
+/**
+ * Servicio de operaciones masivas sobre productos.
+ * 
+ * Cada operación se ejecuta en una única transacción y escribe en bloques de
+ * {@code products.bulk.batch-size} filas con {@link ProductStore#saveAll}: con
+ * JPA, cada bloque es un flush (que Hibernate envía como lotes JDBC) seguido de
+ * una limpieza del contexto de persistencia, de modo que la memoria no crece
+ * con el tamaño de la petición.
+ * 
+ * Las filas que no superan la validación o chocan con una referencia existente
+ * se omiten y se informan en el {@link BulkResult}; el resto se escriben.
+ */
+@Service
+public class ProductBulkService {
+
+	@Autowired
+	private ProductStore productStore;
+
+	@Autowired
+	private ProductMapper productMapper;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Value("${products.bulk.batch-size:500}")
+	private int batchSize;
+
+	/**
+	 * Da de alta una lista de productos.
+	 * 
+	 * Las referencias ya existentes en base de datos o repetidas dentro de la
+	 * petición se rechazan.
+	 * 
+	 * @param products Productos a crear
+	 * @return Resumen con filas creadas y errores por fila
+	 */
+	@Transactional
+	public BulkResult createAll(List<Product> products) {
+		BulkResult result = new BulkResult();
+		Set<String> seen = new HashSet<>();
+		for (int from = 0; from < products.size(); from += batchSize) {
+			List<Product> chunk = products.subList(from, Math.min(from + batchSize, products.size()));
+			createChunk(chunk, from, seen, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Crea o actualiza productos usando la referencia como clave.
+	 * 
+	 * Si una referencia aparece varias veces en la petición, prevalece la última.
+	 * 
+	 * @param products Productos a insertar o actualizar
+	 * @return Resumen con filas creadas, actualizadas y errores por fila
+	 */
+	@Transactional
+	public BulkResult upsertAll(List<Product> products) {
+		BulkResult result = new BulkResult();
+		for (int from = 0; from < products.size(); from += batchSize) {
+			List<Product> chunk = products.subList(from, Math.min(from + batchSize, products.size()));
+			upsertChunk(chunk, from, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Elimina los productos con los IDs indicados.
+	 * 
+	 * @param ids IDs a eliminar
+	 * @return Resumen con filas eliminadas y un error por cada ID inexistente
+	 */
+	@Transactional
+	public BulkResult deleteAll(List<Long> ids) {
+		BulkResult result = new BulkResult();
+		for (int from = 0; from < ids.size(); from += batchSize) {
+			List<Long> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+			Set<Long> existing = new HashSet<>(productStore.findExistingIds(chunk));
+			for (int i = 0; i < chunk.size(); i++) {
+				Long id = chunk.get(i);
+				if (id == null || !existing.contains(id)) {
+					result.addError(from + i, null, "No se encontró un producto con el ID especificado: " + id);
+				}
+			}
+			if (!existing.isEmpty()) {
+				result.addDeleted(productStore.deleteAllById(existing));
+				eventPublisher.publishEvent(ProductChangeEvent.deleted(existing));
+			}
+			result.addProcessed(chunk.size());
+		}
+		return result;
+	}
+
+	/**
+	 * Escribe un único bloque de productos en su propia transacción.
+	 * 
+	 * Lo usa la importación de catálogos para confirmar bloque a bloque, de
+	 * modo que el progreso es duradero y la memoria se limita al bloque.
+	 * 
+	 * @param chunk Productos del bloque
+	 * @param upsert true para crear o actualizar por referencia, false para solo crear
+	 * @return Resultado del bloque; los índices de error son relativos al bloque
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public BulkResult writeChunk(List<Product> chunk, boolean upsert) {
+		BulkResult result = new BulkResult();
+		if (upsert) {
+			upsertChunk(chunk, 0, result);
+		} else {
+			createChunk(chunk, 0, new HashSet<>(), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Inserta un bloque de productos ya leído, validando cada fila.
+	 * 
+	 * @param chunk Productos del bloque
+	 * @param offset Posición del primer producto del bloque en la entrada completa
+	 * @param seen Referencias ya aceptadas en bloques anteriores de la misma operación
+	 * @param result Resultado acumulado
+	 */
+	void createChunk(List<Product> chunk, int offset, Set<String> seen, BulkResult result) {
+		Map<String, Integer> candidates = new LinkedHashMap<>();
+		for (int i = 0; i < chunk.size(); i++) {
+			Product product = chunk.get(i);
+			String error = ProductValidator.validate(product);
+			if (error != null) {
+				result.addError(offset + i, product == null ? null : product.getReferencia(), error);
+			} else if (!seen.add(product.getReferencia())) {
+				result.addError(offset + i, product.getReferencia(), "Referencia duplicada en la petición");
+			} else {
+				candidates.put(product.getReferencia(), i);
+			}
+		}
+
+		if (!candidates.isEmpty()) {
+			for (ProductDto existing : productStore.findByReferenciaIn(candidates.keySet())) {
+				int i = candidates.remove(existing.getReferencia());
+				result.addError(offset + i, existing.getReferencia(), "Ya existe un producto con la referencia especificada");
+			}
+		}
+
+		List<ProductDto> toInsert = new ArrayList<>(candidates.size());
+		for (int i : candidates.values()) {
+			ProductDto dto = productMapper.toDto(chunk.get(i));
+			dto.setId(null);
+			toInsert.add(dto);
+		}
+		productStore.saveAll(toInsert);
+		if (!toInsert.isEmpty()) {
+			eventPublisher.publishEvent(ProductChangeEvent.created(productMapper.toEntityList(toInsert)));
+		}
+
+		result.addCreated(toInsert.size());
+		result.addProcessed(chunk.size());
+	}
+
+	private void upsertChunk(List<Product> chunk, int offset, BulkResult result) {
+		Map<String, Product> valid = new LinkedHashMap<>();
+		for (int i = 0; i < chunk.size(); i++) {
+			Product product = chunk.get(i);
+			String error = ProductValidator.validate(product);
+			if (error != null) {
+				result.addError(offset + i, product == null ? null : product.getReferencia(), error);
+			} else {
+				valid.put(product.getReferencia(), product);
+			}
+		}
+
+		Map<String, ProductDto> existing = productStore.findByReferenciaIn(valid.keySet()).stream()
+				.collect(Collectors.toMap(ProductDto::getReferencia, dto -> dto));
+
+		List<ProductDto> toInsert = new ArrayList<>();
+		List<ProductDto> toUpdate = new ArrayList<>();
+		for (Product product : valid.values()) {
+			ProductDto dto = existing.get(product.getReferencia());
+			if (dto != null) {
+				// Con JPA es una entidad gestionada: el UPDATE se agrupa en el flush
+				copyFields(product, dto);
+				toUpdate.add(dto);
+			} else {
+				dto = productMapper.toDto(product);
+				dto.setId(null);
+				toInsert.add(dto);
+			}
+		}
+		List<ProductDto> toSave = new ArrayList<>(toInsert);
+		toSave.addAll(toUpdate);
+		productStore.saveAll(toSave);
+		if (!valid.isEmpty()) {
+			eventPublisher.publishEvent(new ProductChangeEvent(productMapper.toEntityList(toInsert),
+					productMapper.toEntityList(toUpdate), List.of()));
+		}
+
+		result.addCreated(toInsert.size());
+		result.addUpdated(valid.size() - toInsert.size());
+		result.addProcessed(chunk.size());
+	}
+
+	private static void copyFields(Product source, ProductDto target) {
+		target.setNombre(source.getNombre());
+		target.setMarca(source.getMarca());
+		target.setDescripcion(source.getDescripcion());
+		target.setPrecio(source.getPrecio());
+		target.setNumeroDisponible(source.getNumeroDisponible());
+		target.setDepartamento(source.getDepartamento());
+	}
+}
@@ -0,0 +1,235 @@
+package com.frida.productsdemo.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.frida.productsdemo.models.Product;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caché en memoria de productos por ID y por referencia.
+ *
+ * Es un LRU acotado por número de entradas ({@code products.cache.max-entries})
+ * y con caducidad por TTL ({@code products.cache.ttl}). Las entradas se
+ * invalidan cuando se confirma cualquier escritura ({@link ProductChangeEvent})
+ * y, si el modo near-cache está activo, también cuando otra instancia avisa
+ * por {@link ProductCacheChannel}.
+ *
+ * Para que una lectura lenta no vuelva a cachear un valor ya invalidado, el
+ * llamante obtiene un {@link #stamp()} antes de ir a la base de datos y la
+ * entrada solo se guarda si no ha habido invalidaciones desde entonces.
+ */
+@Component
+public class ProductCache {
+
+	private final int maxEntries;
+	private final long ttlMillis;
+
+	@Autowired
+	private ProductMapper productMapper;
+
+	@Autowired
+	private ProductCacheChannel channel;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private final Map<Long, Entry> byId;
+	private final Map<String, Long> idByReferencia = new HashMap<>();
+
+	private record Entry(Product product, long createdAt) {}
+
+	public ProductCache(@Value("${products.cache.max-entries:10000}") int maxEntries,
+	                    @Value("${products.cache.ttl:PT10M}") Duration ttl) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttl.toMillis();
+		this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+				if (size() > ProductCache.this.maxEntries) {
+					idByReferencia.remove(eldest.getValue().product().getReferencia());
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@PostConstruct
+	void registerChannel() {
+		channel.onInvalidation(this::invalidate);
+	}
+
+	/**
+	 * Marca de invalidación actual; se pasa a {@link #put(Product, long)}.
+	 */
+	public long stamp() {
+		return invalidations.get();
+	}
+
+	/**
+	 * Busca un producto por ID.
+	 *
+	 * @return Una copia del producto cacheado, o null si no hay entrada vigente
+	 */
+	public Product get(Long id) {
+		if (maxEntries <= 0) {
+			misses.incrementAndGet();
+			return null;
+		}
+		Product product;
+		synchronized (byId) {
+			product = lookup(id, System.currentTimeMillis());
+		}
+		return result(product);
+	}
+
+	/**
+	 * Busca un producto por referencia.
+	 *
+	 * @return Una copia del producto cacheado, o null si no hay entrada vigente
+	 */
+	public Product getByReferencia(String referencia) {
+		if (maxEntries <= 0) {
+			misses.incrementAndGet();
+			return null;
+		}
+		Product product = null;
+		synchronized (byId) {
+			Long id = idByReferencia.get(referencia);
+			if (id != null) {
+				product = lookup(id, System.currentTimeMillis());
+			}
+		}
+		return result(product);
+	}
+
+	/**
+	 * Guarda un producto leído de la base de datos si no ha habido
+	 * invalidaciones desde {@code stamp}.
+	 *
+	 * @param product Producto leído, con ID
+	 * @param stamp Valor de {@link #stamp()} obtenido antes de la lectura
+	 */
+	public void put(Product product, long stamp) {
+		if (product == null || product.getId() == null || maxEntries <= 0) {
+			return;
+		}
+		Entry entry = new Entry(productMapper.copy(product), System.currentTimeMillis());
+		synchronized (byId) {
+			if (invalidations.get() != stamp) {
+				return;
+			}
+			Entry previous = byId.put(product.getId(), entry);
+			if (previous != null) {
+				idByReferencia.remove(previous.product().getReferencia());
+			}
+			idByReferencia.put(product.getReferencia(), product.getId());
+		}
+	}
+
+	/**
+	 * Quita de la caché los productos escritos en cuanto se confirma la
+	 * transacción y avisa al resto de instancias.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChange(ProductChangeEvent event) {
+		List<Long> ids = new ArrayList<>(event.saved().size() + event.deleted().size());
+		for (Product product : event.saved()) {
+			ids.add(product.getId());
+		}
+		ids.addAll(event.deleted());
+		invalidate(ids);
+		channel.publish(ids);
+	}
+
+	/**
+	 * Quita los productos indicados de la caché local.
+	 */
+	public void invalidate(Collection<Long> ids) {
+		synchronized (byId) {
+			invalidations.incrementAndGet();
+			for (Long id : ids) {
+				Entry entry = byId.remove(id);
+				if (entry != null) {
+					idByReferencia.remove(entry.product().getReferencia());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Vacía la caché.
+	 */
+	public void clear() {
+		synchronized (byId) {
+			invalidations.incrementAndGet();
+			byId.clear();
+			idByReferencia.clear();
+		}
+	}
+
+	/**
+	 * Devuelve los contadores de uso de la caché.
+	 *
+	 * @return Mapa con tamaño, aciertos, fallos, desalojos, invalidaciones y ratio de acierto
+	 */
+	public Map<String, Object> getStats() {
+		long h = hits.get();
+		long m = misses.get();
+		long total = h + m;
+		Map<String, Object> stats = new LinkedHashMap<>();
+		synchronized (byId) {
+			stats.put("size", byId.size());
+		}
+		stats.put("maxEntries", maxEntries);
+		stats.put("hits", h);
+		stats.put("misses", m);
+		stats.put("evictions", evictions.get());
+		stats.put("invalidations", invalidations.get());
+		stats.put("hitRatio", total == 0 ? 0.0 : (double) h / total);
+		stats.put("nearCacheEnabled", channel.isEnabled());
+		stats.put("nearCacheSent", channel.getSent());
+		stats.put("nearCacheReceived", channel.getReceived());
+		stats.put("nearCacheRejected", channel.getRejected());
+		return stats;
+	}
+
+	private Product lookup(Long id, long now) {
+		Entry entry = byId.get(id);
+		if (entry == null) {
+			return null;
+		}
+		if (ttlMillis > 0 && now - entry.createdAt() > ttlMillis) {
+			byId.remove(id);
+			idByReferencia.remove(entry.product().getReferencia());
+			evictions.incrementAndGet();
+			return null;
+		}
+		return entry.product();
+	}
+
+	private Product result(Product cached) {
+		if (cached == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return productMapper.copy(cached);
+	}
+}
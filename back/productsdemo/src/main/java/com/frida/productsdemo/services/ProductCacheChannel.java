@@ -0,0 +1,193 @@
+package com.frida.productsdemo.services;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Canal de invalidación entre instancias para la caché de productos.
+ * 
+ * Cuando hay varias instancias sobre la misma base de datos, cada una envía
+ * por UDP a sus pares ({@code products.cache.near.peers}) los IDs de los
+ * productos que ha modificado, y al recibirlos el resto los quita de su
+ * caché. Es un aviso "best effort": un datagrama perdido deja la entrada
+ * hasta que caduca por TTL. Desactivado por defecto.
+ * 
+ * Los datagramas no van autenticados, así que el socket escucha solo en
+ * {@code products.cache.near.bind-address} (loopback por defecto; en un
+ * clúster, la interfaz de la red interna) y se descartan los que no vienen
+ * de la dirección de un par configurado.
+ */
+@Component
+public class ProductCacheChannel {
+
+	private static final Logger log = LoggerFactory.getLogger(ProductCacheChannel.class);
+
+	private static final int MAGIC = 0x50434943; // "PCIC"
+	private static final int IDS_PER_DATAGRAM = 1024;
+	private static final int HEADER_BYTES = 4 + 8 + 4;
+
+	private final boolean enabled;
+	private final int listenPort;
+	private final String bindAddress;
+	private final List<InetSocketAddress> peers = new ArrayList<>();
+	private final Set<InetAddress> peerAddresses = new HashSet<>();
+	private final long instanceId = ThreadLocalRandom.current().nextLong();
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	private volatile Consumer<Collection<Long>> receiver = ids -> { };
+	private DatagramSocket socket;
+	private Thread listener;
+
+	public ProductCacheChannel(@Value("${products.cache.near.enabled:false}") boolean enabled,
+	                           @Value("${products.cache.near.port:45680}") int listenPort,
+	                           @Value("${products.cache.near.bind-address:127.0.0.1}") String bindAddress,
+	                           @Value("${products.cache.near.peers:}") List<String> peers) {
+		this.enabled = enabled;
+		this.listenPort = listenPort;
+		this.bindAddress = bindAddress;
+		for (String peer : peers) {
+			if (peer.isBlank()) {
+				continue;
+			}
+			int colon = peer.lastIndexOf(':');
+			if (colon < 0) {
+				throw new IllegalArgumentException("Par de caché sin puerto: " + peer);
+			}
+			InetSocketAddress address = new InetSocketAddress(peer.substring(0, colon).trim(), Integer.parseInt(peer.substring(colon + 1).trim()));
+			this.peers.add(address);
+			if (address.isUnresolved()) {
+				log.warn("No se pudo resolver el par de caché {}: se descartarán sus invalidaciones", peer);
+			} else {
+				peerAddresses.add(address.getAddress());
+			}
+		}
+	}
+
+	@PostConstruct
+	void start() throws SocketException {
+		if (!enabled) {
+			return;
+		}
+		socket = new DatagramSocket(new InetSocketAddress(bindAddress, listenPort));
+		listener = new Thread(this::listen, "product-cache-channel");
+		listener.setDaemon(true);
+		listener.start();
+		log.info("Canal de invalidación de caché escuchando en {}:{} con {} pares", bindAddress, listenPort, peers.size());
+	}
+
+	@PreDestroy
+	void stop() {
+		if (socket != null) {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Registra quién recibe las invalidaciones que llegan de otras instancias.
+	 */
+	void onInvalidation(Consumer<Collection<Long>> receiver) {
+		this.receiver = receiver;
+	}
+
+	/**
+	 * Envía a los pares los IDs a invalidar, troceados en datagramas.
+	 * 
+	 * @param ids IDs de productos modificados o eliminados
+	 */
+	void publish(Collection<Long> ids) {
+		if (!enabled || peers.isEmpty() || ids.isEmpty()) {
+			return;
+		}
+		Iterator<Long> it = ids.iterator();
+		while (it.hasNext()) {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + IDS_PER_DATAGRAM * 8);
+			buffer.putInt(MAGIC).putLong(instanceId).putInt(0);
+			int count = 0;
+			while (it.hasNext() && count < IDS_PER_DATAGRAM) {
+				buffer.putLong(it.next());
+				count++;
+			}
+			buffer.putInt(12, count);
+			for (InetSocketAddress peer : peers) {
+				try {
+					socket.send(new DatagramPacket(buffer.array(), buffer.position(), peer));
+					sent.incrementAndGet();
+				} catch (IOException e) {
+					log.warn("No se pudo enviar la invalidación de caché a {}: {}", peer, e.getMessage());
+				}
+			}
+		}
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	long getSent() {
+		return sent.get();
+	}
+
+	long getReceived() {
+		return received.get();
+	}
+
+	long getRejected() {
+		return rejected.get();
+	}
+
+	private void listen() {
+		byte[] data = new byte[HEADER_BYTES + IDS_PER_DATAGRAM * 8];
+		while (!socket.isClosed()) {
+			DatagramPacket packet = new DatagramPacket(data, data.length);
+			try {
+				socket.receive(packet);
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					log.warn("Error al recibir una invalidación de caché: {}", e.getMessage());
+				}
+				continue;
+			}
+			if (!peerAddresses.contains(packet.getAddress())) {
+				rejected.incrementAndGet();
+				log.debug("Invalidación de caché descartada: {} no es un par configurado", packet.getSocketAddress());
+				continue;
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+			if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getLong() == instanceId) {
+				continue;
+			}
+			int count = Math.min(buffer.getInt(), buffer.remaining() / 8);
+			List<Long> ids = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				ids.add(buffer.getLong());
+			}
+			received.incrementAndGet();
+			receiver.accept(ids);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.frida.productsdemo.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Evento publicado cuando se crean, actualizan o eliminan productos.
+ * 
+ * Se publica dentro de la transacción de escritura; los oyentes que deban
+ * ver solo cambios confirmados usan {@code @TransactionalEventListener}.
+ *
+ * @param created Productos creados, con su ID
+ * @param updated Productos actualizados, con su ID
+ * @param deleted IDs de los productos eliminados
+ */
+public record ProductChangeEvent(List<Product> created, List<Product> updated, Collection<Long> deleted) {
+
+	public static ProductChangeEvent created(List<Product> products) {
+		return new ProductChangeEvent(products, List.of(), List.of());
+	}
+
+	public static ProductChangeEvent updated(List<Product> products) {
+		return new ProductChangeEvent(List.of(), products, List.of());
+	}
+
+	public static ProductChangeEvent deleted(Collection<Long> ids) {
+		return new ProductChangeEvent(List.of(), List.of(), ids);
+	}
+
+	/**
+	 * Productos creados o actualizados.
+	 */
+	public List<Product> saved() {
+		if (updated.isEmpty()) {
+			return created;
+		}
+		if (created.isEmpty()) {
+			return updated;
+		}
+		List<Product> saved = new ArrayList<>(created.size() + updated.size());
+		saved.addAll(created);
+		saved.addAll(updated);
+		return saved;
+	}
+
+	/**
+	 * Número total de cambios del evento.
+	 */
+	public int size() {
+		return created.size() + updated.size() + deleted.size();
+	}
+}
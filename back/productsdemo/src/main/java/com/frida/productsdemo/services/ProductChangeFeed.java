@@ -0,0 +1,399 @@
+package com.frida.productsdemo.services;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.entity.ProductChange;
+import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.models.ProductChangeEntry;
+import com.frida.productsdemo.models.ProductChangePage;
+import com.frida.productsdemo.repository.ProductChangeRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Registro de cambios del catálogo para sincronización incremental.
+ *
+ * Cada {@link ProductChangeEvent} se guarda, en la misma transacción que la
+ * escritura, como filas de {@link ProductChange} con números de secuencia
+ * reservados en {@link CatalogVersionService}. Los clientes piden los cambios
+ * posteriores a la última secuencia que conocen o se suscriben por SSE.
+ *
+ * Un único hilo de reparto, cada vez que se confirma una escritura (o cada
+ * {@code products.changes.poll-interval}, para ver las de otras instancias),
+ * lee de la base de datos los cambios pendientes y los deja en la cola de cada
+ * suscriptor, sin bloquearse. El envío por SSE lo hace otro hilo por
+ * suscriptor, así que un cliente lento no retrasa a los demás ni la purga:
+ * cuando su cola ({@code products.changes.subscriber-buffer}) se llena deja de
+ * recibir hasta vaciarla y se le sigue leyendo de la base de datos desde donde
+ * se quedó; si un envío no avanza en {@code products.changes.send-timeout} se
+ * le desconecta y puede reanudar con {@code Last-Event-ID}.
+ *
+ * Los cambios se conservan {@code products.changes.retention}; un cliente que
+ * pida una secuencia ya purgada debe volver a descargar el catálogo.
+ */
+@Service
+public class ProductChangeFeed {
+
+	private static final Logger log = LoggerFactory.getLogger(ProductChangeFeed.class);
+
+	private static final int DISPATCH_BATCH = 500;
+
+	@Autowired
+	private ProductChangeRepository changeRepository;
+
+	@Autowired
+	private CatalogVersionService catalogVersionService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Value("${products.changes.retention:P7D}")
+	private Duration retention;
+
+	@Value("${products.changes.poll-interval:PT5S}")
+	private Duration pollInterval;
+
+	@Value("${products.changes.max-page-size:1000}")
+	private int maxPageSize;
+
+	@Value("${products.changes.subscriber-buffer:1000}")
+	private int subscriberBuffer;
+
+	@Value("${products.changes.send-timeout:PT10S}")
+	private Duration sendTimeout;
+
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	private final Object signal = new Object();
+	private boolean pending;
+	private volatile boolean running = true;
+	private Thread dispatcher;
+	private ExecutorService senders;
+	private Instant lastPurge = Instant.EPOCH;
+
+	private static final class Subscriber {
+		final SseEmitter emitter;
+		final BlockingQueue<ProductChangeEntry> queue;
+		/** true mientras hay una tarea enviando la cola; nunca hay dos a la vez. */
+		final AtomicBoolean draining = new AtomicBoolean();
+		/** Última secuencia puesta en la cola; solo la usa el hilo de reparto. */
+		long lastSeq;
+		/** La cola se llenó y quedan cambios por leer de la base de datos. */
+		volatile boolean behind;
+		volatile boolean closed;
+		/** Momento (nanoTime) del último envío completado o del inicio del vaciado. */
+		volatile long lastProgress;
+
+		Subscriber(SseEmitter emitter, long lastSeq, int buffer) {
+			this.emitter = emitter;
+			this.lastSeq = lastSeq;
+			this.queue = new ArrayBlockingQueue<>(Math.max(1, buffer));
+		}
+	}
+
+	@PostConstruct
+	void start() {
+		AtomicInteger threads = new AtomicInteger();
+		// Como mucho un hilo por suscriptor, y solo mientras tiene cambios por enviar
+		senders = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "product-change-sender-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		dispatcher = new Thread(this::dispatchLoop, "product-change-feed");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	@PreDestroy
+	void stop() {
+		running = false;
+		dispatcher.interrupt();
+		senders.shutdownNow();
+		for (Subscriber subscriber : subscribers) {
+			try {
+				subscriber.emitter.complete();
+			} catch (IllegalStateException e) {
+				// La conexión ya se cerró sin que el emisor se enterase
+			}
+		}
+	}
+
+	/**
+	 * Guarda los cambios del evento con secuencias consecutivas, antes de
+	 * confirmar la transacción que los produjo.
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+	public void onProductChange(ProductChangeEvent event) {
+		if (event.size() == 0) {
+			return;
+		}
+		long seq = catalogVersionService.reserve(event.size()) - event.size();
+		Instant now = Instant.now();
+		for (Product product : event.created()) {
+			entityManager.persist(new ProductChange(++seq, product.getId(), ProductChange.Type.CREATED, now, toJson(product)));
+		}
+		for (Product product : event.updated()) {
+			entityManager.persist(new ProductChange(++seq, product.getId(), ProductChange.Type.UPDATED, now, toJson(product)));
+		}
+		for (Long id : event.deleted()) {
+			entityManager.persist(new ProductChange(++seq, id, ProductChange.Type.DELETED, now, null));
+		}
+	}
+
+	/**
+	 * Avisa al hilo de reparto de que hay cambios confirmados.
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onProductChangeCommitted(ProductChangeEvent event) {
+		wakeUp();
+	}
+
+	/**
+	 * Indica si los cambios posteriores a {@code since} ya no están completos
+	 * en el registro porque se han purgado.
+	 */
+	public boolean isExpired(long since) {
+		if (since >= catalogVersionService.current().counter()) {
+			return false;
+		}
+		Long minSeq = changeRepository.findMinSeq();
+		return minSeq == null || since < minSeq - 1;
+	}
+
+	/**
+	 * Devuelve los cambios posteriores a una secuencia.
+	 *
+	 * Sin {@code since} devuelve una página vacía cuyo {@code nextSince} es la
+	 * secuencia actual: es el punto de partida para un cliente que acaba de
+	 * descargar el catálogo completo.
+	 *
+	 * @param since Última secuencia conocida por el cliente, o null
+	 * @param limit Número máximo de cambios (acotado por products.changes.max-page-size)
+	 * @return Página de cambios y secuencia desde la que continuar
+	 */
+	@Transactional(readOnly = true)
+	public ProductChangePage changesSince(Long since, Integer limit) {
+		if (since == null) {
+			return new ProductChangePage(List.of(), catalogVersionService.current().counter(), false);
+		}
+		int size = limit == null || limit <= 0 ? maxPageSize : Math.min(limit, maxPageSize);
+		List<ProductChangeEntry> changes = load(since, size);
+		long next = changes.isEmpty() ? since : changes.get(changes.size() - 1).seq();
+		return new ProductChangePage(changes, next, changes.size() == size);
+	}
+
+	/**
+	 * Suscribe un emisor SSE a los cambios posteriores a {@code since}.
+	 * Primero recibe los pendientes y después los nuevos según se confirman.
+	 */
+	public void subscribe(SseEmitter emitter, long since) {
+		Subscriber subscriber = new Subscriber(emitter, since, subscriberBuffer);
+		emitter.onCompletion(() -> close(subscriber));
+		emitter.onTimeout(() -> close(subscriber));
+		emitter.onError(e -> close(subscriber));
+		subscribers.add(subscriber);
+		wakeUp();
+	}
+
+	/**
+	 * Número de suscriptores SSE conectados.
+	 */
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	private void wakeUp() {
+		synchronized (signal) {
+			pending = true;
+			signal.notifyAll();
+		}
+	}
+
+	private void dispatchLoop() {
+		while (running) {
+			try {
+				synchronized (signal) {
+					if (!pending) {
+						signal.wait(pollInterval.toMillis());
+					}
+					pending = false;
+				}
+				dispatch();
+				purgeIfDue();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				log.warn("Error al repartir cambios del catálogo: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Pone en las colas los cambios posteriores a lo ya encolado. Solo lee y
+	 * encola, sin esperar a ningún cliente: los suscriptores con la cola llena
+	 * se saltan y se retoman cuando su hilo de envío la vacía.
+	 */
+	private void dispatch() {
+		long now = System.nanoTime();
+		List<Subscriber> ready = new ArrayList<>();
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.draining.get() && now - subscriber.lastProgress > sendTimeout.toNanos()) {
+				drop(subscriber);
+			} else if (subscriber.queue.remainingCapacity() > 0) {
+				ready.add(subscriber);
+			}
+		}
+		while (!ready.isEmpty()) {
+			long from = ready.stream().mapToLong(s -> s.lastSeq).min().orElse(0);
+			List<ProductChangeEntry> batch = load(from, DISPATCH_BATCH);
+			for (Subscriber subscriber : ready) {
+				enqueue(subscriber, batch);
+			}
+			if (batch.size() < DISPATCH_BATCH) {
+				return;
+			}
+			ready.removeIf(s -> s.behind);
+		}
+	}
+
+	private void enqueue(Subscriber subscriber, List<ProductChangeEntry> batch) {
+		subscriber.behind = false;
+		for (ProductChangeEntry entry : batch) {
+			if (entry.seq() > subscriber.lastSeq) {
+				if (!subscriber.queue.offer(entry)) {
+					subscriber.behind = true;
+					break;
+				}
+				subscriber.lastSeq = entry.seq();
+			}
+		}
+		if (!subscriber.queue.isEmpty()) {
+			schedule(subscriber);
+		}
+	}
+
+	private void schedule(Subscriber subscriber) {
+		if (subscriber.closed || !subscriber.draining.compareAndSet(false, true)) {
+			return;
+		}
+		subscriber.lastProgress = System.nanoTime();
+		try {
+			senders.execute(() -> drain(subscriber));
+		} catch (RejectedExecutionException e) {
+			subscriber.draining.set(false);
+		}
+	}
+
+	/**
+	 * Envía la cola de un suscriptor. Es el único que escribe en su emisor, de
+	 * modo que un envío bloqueado solo retiene este hilo.
+	 */
+	private void drain(Subscriber subscriber) {
+		try {
+			ProductChangeEntry entry;
+			while (!subscriber.closed && (entry = subscriber.queue.poll()) != null) {
+				subscriber.emitter.send(SseEmitter.event()
+						.id(String.valueOf(entry.seq()))
+						.name("change")
+						.data(entry, MediaType.APPLICATION_JSON));
+				subscriber.lastProgress = System.nanoTime();
+			}
+			if (subscriber.closed) {
+				subscriber.emitter.completeWithError(new TimeoutException("Cliente SSE demasiado lento"));
+				return;
+			}
+		} catch (IOException | IllegalStateException e) {
+			close(subscriber);
+			subscriber.emitter.completeWithError(e);
+			return;
+		} finally {
+			subscriber.draining.set(false);
+		}
+		// Pueden haber llegado cambios entre el último poll y soltar el indicador
+		if (!subscriber.queue.isEmpty()) {
+			schedule(subscriber);
+		} else if (subscriber.behind) {
+			wakeUp();
+		}
+	}
+
+	/**
+	 * Desconecta un suscriptor cuyo envío lleva demasiado sin avanzar. El
+	 * emisor lo cierra su propio hilo de envío cuando el envío bloqueado
+	 * termine o falle, para no esperar aquí a que lo suelte.
+	 */
+	private void drop(Subscriber subscriber) {
+		close(subscriber);
+		log.warn("Suscriptor SSE de cambios desconectado: {} s sin completar un envío", sendTimeout.toSeconds());
+	}
+
+	private void close(Subscriber subscriber) {
+		subscriber.closed = true;
+		subscribers.remove(subscriber);
+	}
+
+	private List<ProductChangeEntry> load(long since, int size) {
+		List<ProductChange> rows = changeRepository.findBySeqGreaterThanOrderBySeqAsc(since, PageRequest.of(0, size));
+		List<ProductChangeEntry> entries = new ArrayList<>(rows.size());
+		for (ProductChange row : rows) {
+			entries.add(new ProductChangeEntry(row.getSeq(), row.getType().name(), row.getProductId(),
+					row.getCreatedAt(), row.getPayload()));
+		}
+		return entries;
+	}
+
+	private void purgeIfDue() {
+		Instant now = Instant.now();
+		if (Duration.between(lastPurge, now).compareTo(Duration.ofMinutes(1)) < 0) {
+			return;
+		}
+		lastPurge = now;
+		int purged = changeRepository.deleteOlderThan(now.minus(retention));
+		if (purged > 0) {
+			log.info("Purgados {} cambios del catálogo anteriores a {}", purged, now.minus(retention));
+		}
+	}
+
+	private String toJson(Product product) {
+		try {
+			return objectMapper.writeValueAsString(product);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("No se pudo serializar el producto " + product.getId(), e);
+		}
+	}
+}
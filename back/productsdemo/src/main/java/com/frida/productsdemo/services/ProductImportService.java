@@ -0,0 +1,334 @@
+package com.frida.productsdemo.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.models.BulkResult;
+import com.frida.productsdemo.models.ImportProgress;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Importación de catálogos de proveedores en CSV o NDJSON.
+ * 
+ * El fichero se lee en streaming y se procesa en bloques de
+ * {@code products.import.chunk-size} filas. Cada bloque se valida con
+ * {@link ProductValidator}, se deduplica por referencia y se escribe en su
+ * propia transacción mediante {@link ProductBulkService#writeChunk}, así que la
+ * memoria usada depende del tamaño del bloque y no del fichero: ningún registro
+ * puede superar {@code products.import.max-record-length} caracteres (en NDJSON
+ * la línea se rechaza y se sigue; en CSV, donde no se puede saber dónde empieza
+ * el siguiente registro, se interrumpe la importación). Los rechazos y
+ * el avance se notifican al {@link ImportListener} según se producen.
+ * 
+ * Si la importación se interrumpe (origen mal formado o fallo al escribir un
+ * bloque) se notifica con {@link ImportListener#onError}: los bloques ya
+ * confirmados se quedan en la base de datos y el resto no se importa.
+ */
+@Service
+public class ProductImportService {
+
+	private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+	public enum Format { CSV, NDJSON }
+
+	/**
+	 * Recibe los eventos de una importación en curso.
+	 */
+	public interface ImportListener {
+
+		/**
+		 * Una fila no se ha importado.
+		 * 
+		 * @param row Número de fila de datos (empezando en 1, sin contar la cabecera CSV)
+		 * @param referencia Referencia de la fila, si se pudo leer
+		 * @param error Motivo del rechazo
+		 */
+		void onReject(long row, String referencia, String error) throws IOException;
+
+		/**
+		 * Se ha confirmado un bloque o ha terminado la importación.
+		 * 
+		 * @param progress Contadores acumulados
+		 */
+		void onProgress(ImportProgress progress) throws IOException;
+
+		/**
+		 * La importación se ha interrumpido; no habrá más eventos.
+		 * 
+		 * @param progress Contadores de las filas con resultado conocido (bloques
+		 *                 confirmados y rechazos); las del bloque pendiente no cuentan
+		 * @param error Motivo de la interrupción
+		 */
+		void onError(ImportProgress progress, String error) throws IOException;
+	}
+
+	@Autowired
+	private ProductBulkService bulkService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${products.import.chunk-size:1000}")
+	private int chunkSize;
+
+	@Value("${products.import.max-record-length:65536}")
+	private int maxRecordLength;
+
+	/**
+	 * Importa un catálogo completo.
+	 * 
+	 * @param in Contenido del fichero (UTF-8)
+	 * @param format Formato del fichero
+	 * @param upsert true para actualizar las referencias existentes, false para rechazarlas
+	 * @param listener Receptor de rechazos y avance
+	 * @return Contadores finales, sin marcar como terminados si la importación se interrumpió
+	 * @throws IOException si, tras interrumpirse la importación, tampoco se puede notificar el error
+	 */
+	public ImportProgress importCatalog(InputStream in, Format format, boolean upsert, ImportListener listener) throws IOException {
+		ImportProgress progress = new ImportProgress();
+		ChunkBuffer chunk = new ChunkBuffer(chunkSize);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+
+		try {
+			if (format == Format.CSV) {
+				readCsv(reader, chunk, upsert, progress, listener);
+			} else {
+				readNdjson(reader, chunk, upsert, progress, listener);
+			}
+			flush(chunk, upsert, progress, listener);
+		} catch (IOException | RuntimeException e) {
+			log.warn("Importación interrumpida tras {} filas: {}", progress.getProcessed(), e.getMessage());
+			try {
+				listener.onError(progress, e.getMessage());
+			} catch (IOException | RuntimeException notified) {
+				// Normalmente el cliente ya se ha desconectado
+				e.addSuppressed(notified);
+				throw e;
+			}
+			return progress;
+		}
+
+		progress.markFinished();
+		listener.onProgress(progress);
+		return progress;
+	}
+
+	private void readNdjson(BufferedReader reader, ChunkBuffer chunk, boolean upsert,
+	                        ImportProgress progress, ImportListener listener) throws IOException {
+		BoundedLineReader lines = new BoundedLineReader(reader, maxRecordLength);
+		long row = 0;
+		String line;
+		while ((line = lines.readLine()) != null) {
+			if (lines.isTooLong()) {
+				row++;
+				reject(row, null, "La línea supera " + maxRecordLength + " caracteres", progress, listener);
+				continue;
+			}
+			if (line.isBlank()) {
+				continue;
+			}
+			row++;
+			try {
+				chunk.add(objectMapper.readValue(line, Product.class), row);
+			} catch (JsonProcessingException e) {
+				reject(row, null, "JSON inválido: " + e.getOriginalMessage(), progress, listener);
+			}
+			if (chunk.isFull()) {
+				flush(chunk, upsert, progress, listener);
+			}
+		}
+	}
+
+	private void readCsv(BufferedReader reader, ChunkBuffer chunk, boolean upsert,
+	                     ImportProgress progress, ImportListener listener) throws IOException {
+		// El separador se deduce del principio de la cabecera, sin leerla entera
+		char[] head = new char[4096];
+		reader.mark(head.length);
+		int read = reader.read(head, 0, head.length);
+		if (read == -1) {
+			return;
+		}
+		reader.reset();
+		String firstLine = new String(head, 0, read).split("[\r\n]", 2)[0];
+		char separator = firstLine.indexOf(';') >= 0 && firstLine.indexOf(',') < 0 ? ';' : ',';
+		CsvRecordReader csv = new CsvRecordReader(reader, separator, maxRecordLength);
+
+		Map<String, Integer> columns = new HashMap<>();
+		List<String> header = csv.readRecord();
+		for (int i = 0; i < header.size(); i++) {
+			String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+			columns.put(name, i);
+		}
+
+		long row = 0;
+		List<String> record;
+		while ((record = csv.readRecord()) != null) {
+			if (record.size() == 1 && record.get(0).isBlank()) {
+				continue;
+			}
+			row++;
+			String referencia = column(record, columns, "referencia");
+			try {
+				chunk.add(toProduct(record, columns), row);
+			} catch (IllegalArgumentException e) {
+				reject(row, referencia, e.getMessage(), progress, listener);
+			}
+			if (chunk.isFull()) {
+				flush(chunk, upsert, progress, listener);
+			}
+		}
+	}
+
+	private static Product toProduct(List<String> record, Map<String, Integer> columns) {
+		Product product = new Product();
+		product.setReferencia(column(record, columns, "referencia"));
+		product.setNombre(column(record, columns, "nombre"));
+		product.setMarca(column(record, columns, "marca"));
+		product.setDescripcion(column(record, columns, "descripcion"));
+		product.setDepartamento(column(record, columns, "departamento"));
+
+		String precio = column(record, columns, "precio");
+		if (precio != null) {
+			try {
+				product.setPrecio(new BigDecimal(precio));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("El precio no es un número válido: " + precio);
+			}
+		}
+		String numero = column(record, columns, "numerodisponible");
+		if (numero != null) {
+			try {
+				product.setNumeroDisponible(Integer.parseInt(numero));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("El número disponible no es un entero válido: " + numero);
+			}
+		}
+		return product;
+	}
+
+	private static String column(List<String> record, Map<String, Integer> columns, String name) {
+		Integer index = columns.get(name);
+		if (index == null || index >= record.size()) {
+			return null;
+		}
+		String value = record.get(index).trim();
+		return value.isEmpty() ? null : value;
+	}
+
+	private void flush(ChunkBuffer chunk, boolean upsert, ImportProgress progress, ImportListener listener) throws IOException {
+		if (chunk.products.isEmpty()) {
+			return;
+		}
+		BulkResult result = bulkService.writeChunk(chunk.products, upsert);
+		for (BulkResult.RowError error : result.getErrors()) {
+			listener.onReject(chunk.rows.get(error.index()), error.referencia(), error.error());
+		}
+		progress.addProcessed(result.getProcessed());
+		progress.addCreated(result.getCreated());
+		progress.addUpdated(result.getUpdated());
+		progress.addRejected(result.getFailed());
+		chunk.clear();
+		listener.onProgress(progress);
+	}
+
+	private static void reject(long row, String referencia, String error,
+	                           ImportProgress progress, ImportListener listener) throws IOException {
+		progress.addProcessed(1);
+		progress.addRejected(1);
+		listener.onReject(row, referencia, error);
+	}
+
+	/**
+	 * Lector de líneas con longitud máxima. Una línea más larga se descarta
+	 * hasta su salto de línea sin guardarla, y se devuelve vacía con
+	 * {@link #isTooLong()} a true.
+	 */
+	private static final class BoundedLineReader {
+		private final BufferedReader reader;
+		private final int maxLength;
+		private final StringBuilder line = new StringBuilder();
+		private boolean tooLong;
+
+		BoundedLineReader(BufferedReader reader, int maxLength) {
+			this.reader = reader;
+			this.maxLength = maxLength;
+		}
+
+		/**
+		 * @return La siguiente línea sin el salto de línea, o null al llegar al final
+		 */
+		String readLine() throws IOException {
+			line.setLength(0);
+			tooLong = false;
+			int c = reader.read();
+			if (c == -1) {
+				return null;
+			}
+			while (c != -1 && c != '\n') {
+				if (!tooLong) {
+					if (line.length() < maxLength) {
+						line.append((char) c);
+					} else {
+						tooLong = true;
+						line.setLength(0);
+					}
+				}
+				c = reader.read();
+			}
+			if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+				line.setLength(line.length() - 1);
+			}
+			return line.toString();
+		}
+
+		boolean isTooLong() {
+			return tooLong;
+		}
+	}
+
+	/**
+	 * Productos pendientes de escribir junto con su número de fila de origen.
+	 */
+	private static final class ChunkBuffer {
+		private final int capacity;
+		private final List<Product> products;
+		private final List<Long> rows;
+
+		ChunkBuffer(int capacity) {
+			this.capacity = capacity;
+			this.products = new ArrayList<>(capacity);
+			this.rows = new ArrayList<>(capacity);
+		}
+
+		void add(Product product, long row) {
+			products.add(product);
+			rows.add(row);
+		}
+
+		boolean isFull() {
+			return products.size() >= capacity;
+		}
+
+		void clear() {
+			products.clear();
+			rows.clear();
+		}
+	}
+}
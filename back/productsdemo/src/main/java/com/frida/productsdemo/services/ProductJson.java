@@ -0,0 +1,42 @@
+package com.frida.productsdemo.services;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Instancia compartida de Gson para (de)serializar {@link com.frida.productsdemo.models.Product}.
+ * 
+ * Gson es seguro entre hilos, así que se crea una sola vez. Incluye un
+ * adaptador ISO-8601 para {@link Instant}, que Gson no puede serializar por
+ * reflexión en Java 17.
+ */
+final class ProductJson {
+
+	static final Gson GSON = new GsonBuilder()
+			.registerTypeAdapter(Instant.class, new InstantAdapter().nullSafe())
+			.create();
+
+	private ProductJson() { /* Previene instanciación */ }
+
+	private static final class InstantAdapter extends TypeAdapter<Instant> {
+		@Override
+		public void write(JsonWriter out, Instant value) throws IOException {
+			out.value(value.toString());
+		}
+
+		@Override
+		public Instant read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NUMBER) {
+				return Instant.ofEpochMilli(in.nextLong());
+			}
+			return Instant.parse(in.nextString());
+		}
+	}
+}
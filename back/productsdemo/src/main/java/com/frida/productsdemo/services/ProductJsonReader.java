@@ -0,0 +1,352 @@
+package com.frida.productsdemo.services;
+
+import java.math.BigDecimal;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Lector del producto JSON de una respuesta completa del LLM.
+ *
+ * Recorre el texto una sola vez: salta lo anterior al primer '{', lee el
+ * objeto raíz y asigna cada campo directamente en el {@link Product}, sin
+ * recortar antes el fragmento ni pasar por la reflexión de Gson. Las claves
+ * se comparan sobre el propio texto, las cadenas sin escapes se copian de una
+ * vez y los números se convierten sin cadenas intermedias; solo las cadenas
+ * con escapes pasan por un búfer, que se reutiliza entre lecturas. Los objetos
+ * y arrays anidados se saltan respetando cadenas y escapes (incluido
+ * {@code \\"}), y lo que haya después del objeto raíz se ignora.
+ *
+ * Solo se leen los campos que pide el prompt; como Gson, acepta números entre
+ * comillas y textos sin comillas. Un campo ausente o a null queda sin asignar,
+ * y de eso se ocupa {@link ProductValidator}.
+ *
+ * Para texto que llega por fragmentos está {@link ProductJsonStreamParser}.
+ * Una instancia se puede reutilizar, pero no es thread-safe.
+ */
+public final class ProductJsonReader {
+
+	private static final String[] FIELDS = {
+			"referencia", "nombre", "marca", "descripcion", "departamento", "precio", "numeroDisponible" };
+	private static final int PRECIO = 5;
+	private static final int NUMERO_DISPONIBLE = 6;
+
+	private CharSequence text;
+	private int pos;
+	private StringBuilder buffer;
+
+	// Último valor leído: [valueStart, valueEnd) del texto, o el búfer si tenía escapes
+	private int valueStart;
+	private int valueEnd;
+	private boolean valueInBuffer;
+
+	/**
+	 * Lee el primer objeto JSON del texto como producto.
+	 *
+	 * @param text Respuesta del LLM, con o sin texto alrededor del JSON
+	 * @return El producto con los campos encontrados
+	 * @throws IllegalArgumentException si no hay un objeto JSON completo o un campo tiene un valor no válido
+	 */
+	public static Product parse(CharSequence text) {
+		return new ProductJsonReader().read(text);
+	}
+
+	/**
+	 * Como {@link #parse(CharSequence)}, reutilizando el estado de esta instancia.
+	 */
+	public Product read(CharSequence text) {
+		int start = -1;
+		for (int i = 0; text != null && i < text.length(); i++) {
+			if (text.charAt(i) == '{') {
+				start = i;
+				break;
+			}
+		}
+		if (start == -1) {
+			throw new IllegalArgumentException("No se encontró apertura JSON");
+		}
+		this.text = text;
+		this.pos = start + 1;
+		try {
+			return readObject();
+		} finally {
+			this.text = null;
+		}
+	}
+
+	private Product readObject() {
+		Product product = new Product();
+		skipWhitespace();
+		if (peek() == '}') {
+			return product;
+		}
+		while (true) {
+			if (next() != '"') {
+				throw malformed("se esperaba una clave");
+			}
+			readString();
+			int field = field();
+			skipWhitespace();
+			if (next() != ':') {
+				throw malformed("se esperaba ':'");
+			}
+			skipWhitespace();
+			readValue(product, field);
+			skipWhitespace();
+			char c = next();
+			if (c == '}') {
+				return product;
+			}
+			if (c != ',') {
+				throw malformed("se esperaba ',' o '}'");
+			}
+			skipWhitespace();
+		}
+	}
+
+	private void readValue(Product product, int field) {
+		char c = peek();
+		if (c == '"') {
+			pos++;
+			readString();
+		} else if (c == '{' || c == '[') {
+			if (field >= 0) {
+				throw new IllegalArgumentException("El campo " + FIELDS[field] + " no puede ser un objeto o un array");
+			}
+			skipNested();
+			return;
+		} else {
+			readLiteral();
+			if (isNull()) {
+				return;
+			}
+		}
+		if (field >= 0) {
+			assign(product, field);
+		}
+	}
+
+	private void assign(Product product, int field) {
+		switch (field) {
+			case 0 -> product.setReferencia(value());
+			case 1 -> product.setNombre(value());
+			case 2 -> product.setMarca(value());
+			case 3 -> product.setDescripcion(value());
+			case 4 -> product.setDepartamento(value());
+			case PRECIO -> product.setPrecio(decimal(FIELDS[PRECIO]));
+			case NUMERO_DISPONIBLE -> product.setNumeroDisponible(integer(FIELDS[NUMERO_DISPONIBLE]));
+			default -> { }
+		}
+	}
+
+	/**
+	 * Lee una cadena cuya comilla de apertura ya se ha consumido.
+	 */
+	private void readString() {
+		int begin = pos;
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				valueStart = begin;
+				valueEnd = pos - 1;
+				valueInBuffer = false;
+				return;
+			}
+			if (c == '\\') {
+				if (buffer == null) {
+					buffer = new StringBuilder(64);
+				}
+				buffer.setLength(0);
+				buffer.append(text, begin, pos - 1);
+				readEscapedString();
+				return;
+			}
+		}
+	}
+
+	private void readEscapedString() {
+		char c = '\\';
+		while (true) {
+			if (c == '\\') {
+				char e = next();
+				switch (e) {
+					case 'n' -> buffer.append('\n');
+					case 't' -> buffer.append('\t');
+					case 'r' -> buffer.append('\r');
+					case 'b' -> buffer.append('\b');
+					case 'f' -> buffer.append('\f');
+					case 'u' -> buffer.append(unicode());
+					default -> buffer.append(e);
+				}
+			} else if (c == '"') {
+				valueInBuffer = true;
+				return;
+			} else {
+				buffer.append(c);
+			}
+			c = next();
+		}
+	}
+
+	private char unicode() {
+		int code = 0;
+		for (int i = 0; i < 4; i++) {
+			int digit = Character.digit(next(), 16);
+			if (digit < 0) {
+				throw malformed("escape \\u no válido");
+			}
+			code = (code << 4) | digit;
+		}
+		return (char) code;
+	}
+
+	/**
+	 * Lee un número, true, false o null (o cualquier texto sin comillas hasta el siguiente separador).
+	 */
+	private void readLiteral() {
+		int begin = pos;
+		while (pos < text.length()) {
+			char c = text.charAt(pos);
+			if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+				break;
+			}
+			pos++;
+		}
+		if (pos == begin) {
+			throw malformed("se esperaba un valor");
+		}
+		valueStart = begin;
+		valueEnd = pos;
+		valueInBuffer = false;
+	}
+
+	private void skipNested() {
+		int depth = 0;
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				skipString();
+			} else if (c == '{' || c == '[') {
+				depth++;
+			} else if ((c == '}' || c == ']') && --depth == 0) {
+				return;
+			}
+		}
+	}
+
+	private void skipString() {
+		while (true) {
+			char c = next();
+			if (c == '\\') {
+				next();
+			} else if (c == '"') {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return Posición de la última cadena leída en {@link #FIELDS}, o -1 si no es un campo conocido
+	 */
+	private int field() {
+		for (int f = 0; f < FIELDS.length; f++) {
+			if (valueEquals(FIELDS[f])) {
+				return f;
+			}
+		}
+		return -1;
+	}
+
+	private boolean valueEquals(String expected) {
+		if (valueInBuffer) {
+			return expected.contentEquals(buffer);
+		}
+		if (valueEnd - valueStart != expected.length()) {
+			return false;
+		}
+		for (int i = 0; i < expected.length(); i++) {
+			if (text.charAt(valueStart + i) != expected.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isNull() {
+		return !valueInBuffer && valueEquals("null");
+	}
+
+	private String value() {
+		return valueInBuffer ? buffer.toString() : text.subSequence(valueStart, valueEnd).toString();
+	}
+
+	/**
+	 * Convierte el valor en BigDecimal. Los casos normales (hasta 18 dígitos, sin
+	 * exponente) se resuelven sin crear cadenas.
+	 */
+	private BigDecimal decimal(String name) {
+		if (!valueInBuffer) {
+			int i = valueStart;
+			int end = valueEnd;
+			boolean negative = i < end && text.charAt(i) == '-';
+			if (negative) {
+				i++;
+			}
+			long unscaled = 0;
+			int digits = 0;
+			int scale = -1;
+			for (; i < end; i++) {
+				char c = text.charAt(i);
+				if (c >= '0' && c <= '9') {
+					unscaled = unscaled * 10 + (c - '0');
+					if (scale >= 0) {
+						scale++;
+					}
+					digits++;
+				} else if (c == '.' && scale < 0) {
+					scale = 0;
+				} else {
+					break;
+				}
+			}
+			if (i == end && digits > 0 && digits <= 18 && scale != 0) {
+				return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+			}
+		}
+		try {
+			return new BigDecimal(value().trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("El campo " + name + " no es un número: " + value());
+		}
+	}
+
+	private int integer(String name) {
+		try {
+			return decimal(name).intValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("El campo " + name + " no es un número entero: " + value());
+		}
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private char peek() {
+		if (pos >= text.length()) {
+			throw new IllegalArgumentException("JSON incompleto o no balanceado");
+		}
+		return text.charAt(pos);
+	}
+
+	private char next() {
+		char c = peek();
+		pos++;
+		return c;
+	}
+
+	private IllegalArgumentException malformed(String detail) {
+		return new IllegalArgumentException("JSON no válido en la posición " + (pos - 1) + ": " + detail);
+	}
+}
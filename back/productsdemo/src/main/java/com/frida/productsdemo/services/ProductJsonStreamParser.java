@@ -0,0 +1,236 @@
+package com.frida.productsdemo.services;
+
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Parser incremental del JSON de producto que devuelve el LLM.
+ * 
+ * Recibe el texto en fragmentos arbitrarios (por ejemplo, los tokens de una
+ * respuesta en streaming), ignora todo lo anterior al primer '{' y, en cuanto
+ * termina cada par clave/valor del objeto raíz, asigna el campo en el
+ * {@link Product} y avisa al listener. Maneja escapes, incluidas secuencias
+ * como {@code \\"}, y salta objetos o arrays anidados sin interpretarlos.
+ * 
+ * No es thread-safe: se usa una instancia por respuesta.
+ */
+public class ProductJsonStreamParser {
+
+	private enum State { BEFORE_OBJECT, EXPECT_KEY, IN_KEY, EXPECT_COLON, EXPECT_VALUE, IN_STRING_VALUE, IN_LITERAL_VALUE, IN_NESTED_VALUE, AFTER_VALUE, DONE }
+
+	private final Product product = new Product();
+	private final BiConsumer<String, Object> listener;
+
+	private State state = State.BEFORE_OBJECT;
+	private final StringBuilder key = new StringBuilder();
+	private final StringBuilder value = new StringBuilder();
+	private boolean escaped;
+	private int unicodeDigits = -1;
+	private int unicodeValue;
+
+	// Estado para saltar valores anidados
+	private int nestedDepth;
+	private boolean nestedInString;
+	private boolean nestedEscaped;
+
+	/**
+	 * @param listener Recibe el nombre y el valor de cada campo conocido de Product en cuanto se completa; puede ser null
+	 */
+	public ProductJsonStreamParser(BiConsumer<String, Object> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Procesa un nuevo fragmento de texto.
+	 * 
+	 * @param chunk Fragmento recibido
+	 */
+	public void accept(CharSequence chunk) {
+		for (int i = 0; i < chunk.length() && state != State.DONE; i++) {
+			accept(chunk.charAt(i));
+		}
+	}
+
+	/**
+	 * @return true si ya se ha leído el objeto raíz completo
+	 */
+	public boolean isComplete() {
+		return state == State.DONE;
+	}
+
+	/**
+	 * @return true si ya se encontró el inicio del objeto JSON
+	 */
+	public boolean hasStarted() {
+		return state != State.BEFORE_OBJECT;
+	}
+
+	/**
+	 * Devuelve el producto con los campos leídos hasta ahora.
+	 * 
+	 * @return El producto (parcial si el objeto aún no se ha cerrado)
+	 */
+	public Product getProduct() {
+		return product;
+	}
+
+	private void accept(char c) {
+		switch (state) {
+			case BEFORE_OBJECT -> {
+				if (c == '{') state = State.EXPECT_KEY;
+			}
+			case EXPECT_KEY -> {
+				if (c == '"') {
+					key.setLength(0);
+					state = State.IN_KEY;
+				} else if (c == '}') {
+					state = State.DONE;
+				}
+			}
+			case IN_KEY -> {
+				if (appendStringChar(key, c)) state = State.EXPECT_COLON;
+			}
+			case EXPECT_COLON -> {
+				if (c == ':') state = State.EXPECT_VALUE;
+			}
+			case EXPECT_VALUE -> {
+				if (Character.isWhitespace(c)) return;
+				value.setLength(0);
+				if (c == '"') {
+					state = State.IN_STRING_VALUE;
+				} else if (c == '{' || c == '[') {
+					nestedDepth = 1;
+					nestedInString = false;
+					nestedEscaped = false;
+					state = State.IN_NESTED_VALUE;
+				} else {
+					value.append(c);
+					state = State.IN_LITERAL_VALUE;
+				}
+			}
+			case IN_STRING_VALUE -> {
+				if (appendStringChar(value, c)) {
+					assign(value.toString());
+					state = State.AFTER_VALUE;
+				}
+			}
+			case IN_LITERAL_VALUE -> {
+				if (c == ',' || c == '}' || Character.isWhitespace(c)) {
+					assignLiteral(value.toString());
+					state = State.AFTER_VALUE;
+					afterValue(c);
+				} else {
+					value.append(c);
+				}
+			}
+			case IN_NESTED_VALUE -> skipNested(c);
+			case AFTER_VALUE -> afterValue(c);
+			case DONE -> { }
+		}
+	}
+
+	private void afterValue(char c) {
+		if (c == ',') state = State.EXPECT_KEY;
+		else if (c == '}') state = State.DONE;
+	}
+
+	/**
+	 * Añade un carácter de una cadena JSON resolviendo escapes.
+	 * 
+	 * @return true si el carácter cierra la cadena
+	 */
+	private boolean appendStringChar(StringBuilder target, char c) {
+		if (unicodeDigits >= 0) {
+			unicodeValue = (unicodeValue << 4) | Character.digit(c, 16);
+			if (++unicodeDigits == 4) {
+				target.append((char) unicodeValue);
+				unicodeDigits = -1;
+			}
+			return false;
+		}
+		if (escaped) {
+			escaped = false;
+			switch (c) {
+				case 'n' -> target.append('\n');
+				case 't' -> target.append('\t');
+				case 'r' -> target.append('\r');
+				case 'b' -> target.append('\b');
+				case 'f' -> target.append('\f');
+				case 'u' -> {
+					unicodeDigits = 0;
+					unicodeValue = 0;
+				}
+				default -> target.append(c);
+			}
+			return false;
+		}
+		if (c == '\\') {
+			escaped = true;
+			return false;
+		}
+		if (c == '"') {
+			return true;
+		}
+		target.append(c);
+		return false;
+	}
+
+	private void skipNested(char c) {
+		if (nestedInString) {
+			if (nestedEscaped) nestedEscaped = false;
+			else if (c == '\\') nestedEscaped = true;
+			else if (c == '"') nestedInString = false;
+			return;
+		}
+		if (c == '"') nestedInString = true;
+		else if (c == '{' || c == '[') nestedDepth++;
+		else if ((c == '}' || c == ']') && --nestedDepth == 0) state = State.AFTER_VALUE;
+	}
+
+	private void assignLiteral(String literal) {
+		if (literal.equals("null")) {
+			return;
+		}
+		assign(literal);
+	}
+
+	private void assign(String raw) {
+		String name = key.toString();
+		Object assigned = raw;
+		switch (name) {
+			case "referencia" -> product.setReferencia(raw);
+			case "nombre" -> product.setNombre(raw);
+			case "marca" -> product.setMarca(raw);
+			case "descripcion" -> product.setDescripcion(raw);
+			case "departamento" -> product.setDepartamento(raw);
+			case "precio" -> {
+				BigDecimal precio = parseDecimal(raw);
+				if (precio == null) return;
+				product.setPrecio(precio);
+				assigned = precio;
+			}
+			case "numeroDisponible" -> {
+				BigDecimal numero = parseDecimal(raw);
+				if (numero == null) return;
+				product.setNumeroDisponible(numero.intValue());
+				assigned = numero.intValue();
+			}
+			default -> {
+				return;
+			}
+		}
+		if (listener != null) {
+			listener.accept(name, assigned);
+		}
+	}
+
+	private static BigDecimal parseDecimal(String raw) {
+		try {
+			return new BigDecimal(raw.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
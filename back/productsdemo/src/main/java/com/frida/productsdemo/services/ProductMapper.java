@@ -2,8 +2,8 @@ package com.frida.productsdemo.services;
 
 import java.util.List;
 
-import org.mapstruct.InheritInverseConfiguration;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 import com.frida.productsdemo.entity.ProductDto;
 import com.frida.productsdemo.models.Product;
@@ -11,11 +11,14 @@ import com.frida.productsdemo.models.Product;
 @Mapper(componentModel = "spring")
 public interface ProductMapper {
 
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
     ProductDto toDto(Product product);
 
-    @InheritInverseConfiguration
     Product toEntity(ProductDto dto);
     
+    Product copy(Product product);
+
     List<ProductDto> toDtoList(List<Product> products);
     List<Product> toEntityList(List<ProductDto> dtos);
     
@@ -1,23 +1,41 @@
 package com.frida.productsdemo.services;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.frida.productsdemo.entity.ProductDto;
 import com.frida.productsdemo.models.LlmContent;
 import com.frida.productsdemo.models.LlmDocument;
-import com.frida.productsdemo.models.LlmMessage;
 import com.frida.productsdemo.models.LlmRequest;
 import com.frida.productsdemo.models.LlmResponse;
 import com.frida.productsdemo.models.Product;
-import com.frida.productsdemo.repository.ProductRepository;
-import com.frida.productsdemo.services.frida.ModelConstants;
-import com.google.gson.Gson;
+import com.frida.productsdemo.models.ProductPage;
+import com.frida.productsdemo.models.ProductSearchCriteria;
+import com.frida.productsdemo.repository.ProductQuery;
+import com.frida.productsdemo.repository.ProductSpecifications;
+import com.frida.productsdemo.repository.ProductStore;
+import com.frida.productsdemo.services.frida.LlmMetrics;
+import com.frida.productsdemo.services.frida.LlmRequestBuilder;
+import com.frida.productsdemo.services.frida.LlmUnavailableException;
+import com.frida.productsdemo.services.frida.ModelRouter;
+import com.frida.productsdemo.services.frida.ResilientLlmClient;
+import com.google.gson.JsonParseException;
 
 /**
  * Servicio de productos para operaciones CRUD completas.
@@ -29,7 +47,8 @@ import com.google.gson.Gson;
  * de persistencia (ProductDto).
  * 
  * Funcionalidades principales:
- * - Obtener todos los productos
+ * - Obtener productos paginados o en streaming
+ * - Buscar productos con filtros, rangos y orden
  * - Obtener un producto por ID
  * - Crear nuevos productos
  * - Actualizar productos existentes
@@ -46,11 +65,17 @@ import com.google.gson.Gson;
 @Component
 public class ProductService {
 
+	/** Campos por los que se permite ordenar la búsqueda (todos con índice: clave primaria, único o secundario en ProductDto). */
+	private static final List<String> SEARCH_SORT_FIELDS = List.of("id", "referencia", "nombre", "precio", "numeroDisponible");
+
+	/** Un lector por hilo (peticiones y lotes), para reutilizar su búfer entre análisis. */
+	private static final ThreadLocal<ProductJsonReader> JSON_READER = ThreadLocal.withInitial(ProductJsonReader::new);
+
 	private static final String PROMPT_IMAGEN = "Analiza la imagen, dame la respuesta en un json que tenga los datos referencia, nombre, marca, descripcion, precio, numeroDisponible y departamento. " +
 			"Usa una referencia con la marca y algo corto. Precio y numero disponible son enteros, en caso de no poder saberlo pon 1";
 
 	@Autowired
-	private ProductRepository productRepository;
+	private ProductStore productStore;
 	
 	@Autowired
 	private ProductMapper productMapper;
@@ -58,6 +83,33 @@ public class ProductService {
 	@Autowired
 	private FridaLlmService fridaService;
 
+	@Autowired
+	private ResilientLlmClient llmClient;
+
+	@Autowired
+	private ModelRouter modelRouter;
+
+	@Autowired
+	private LlmMetrics llmMetrics;
+
+	@Autowired
+	private AnalysisCache analysisCache;
+
+	@Autowired
+	private ImagePreprocessor imagePreprocessor;
+
+	@Autowired
+	private ProductCache productCache;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Value("${products.page.default-size:100}")
+	private int defaultPageSize;
+
+	@Value("${products.page.max-size:1000}")
+	private int maxPageSize;
+
     /**
      * Analiza una imagen de producto utilizando inteligencia artificial.
      * 
@@ -71,70 +123,387 @@ public class ProductService {
      */
     public Product producEvaluation(MultipartFile file) {
         
-    	
-    	String base64 = null;
+		byte[] fileBytes;
 		try {
-            byte[] fileBytes = file.getBytes();
-            base64 = Base64.getEncoder().encodeToString(fileBytes);
-       
+            fileBytes = file.getBytes();
 		} catch (Exception e) {
             
             e.printStackTrace();
             return null;
         }
+		return producEvaluation(fileBytes);
+    }
+
+    /**
+     * Analiza una imagen de producto ya cargada en memoria.
+     * 
+     * Es el núcleo del análisis que comparten la subida individual y los
+     * trabajos por lotes. Los modelos se prueban en el orden que indica
+     * {@link ModelRouter}: si uno no está disponible o su respuesta no es un
+     * producto válido, se escala al siguiente.
+     * 
+     * @param fileBytes Bytes de la imagen del producto
+     * @return Un objeto Product con los datos extraídos de la imagen
+     * @throws LlmUnavailableException si ningún modelo está disponible
+     * @throws IllegalArgumentException si ningún modelo devuelve un producto válido
+     */
+    public Product producEvaluation(byte[] fileBytes) {
+        
+    	// Si esta misma imagen ya se analizó, se devuelve el resultado sin llamar al LLM
+    	String cacheKey = AnalysisCache.key(fileBytes, modelRouter.cacheScope(), PROMPT_IMAGEN);
+    	Product cached = analysisCache.get(cacheKey);
+    	if (cached != null) {
+    		return cached;
+    	}
     	
-    	LlmRequest req = new LlmRequest();
-    	req.setModel(ModelConstants.CLAUDE_4_SONNET);
-    	
-    	List<LlmMessage> messageArray = new ArrayList<>();
-    	
-    	
-    	
-    	
-    	LlmMessage msg = new LlmMessage();
-    	msg.setRole("user");
-    	List<LlmContent> contentArray = new ArrayList<>();
-    	
-    	
-    	LlmContent text = LlmContent.ofText(PROMPT_IMAGEN);
-    	LlmDocument doc = new LlmDocument();
-    	doc.setDetail("auto");
-    	doc.setUrl("data:image/jpeg;base64," + base64);
-		
-    	LlmContent image = LlmContent.ofImage(doc);
+    	ImagePreprocessor.PreparedImage image = imagePreprocessor.prepare(fileBytes);
+    	RuntimeException lastError = null;
     	
-		contentArray.add(image);
-		contentArray.add(text);
-		msg.setContent(contentArray);
-    	messageArray.add(msg);
-		
-		req.setMessages(messageArray);
-    	req.setStream(false);
-    	req.setEnable_catching(true);
+    	for (String model : modelRouter.plan()) {
+    		long start = System.nanoTime();
+    		LlmResponse response;
+    		try {
+    			response = llmClient.call(buildAnalysisRequest(model, image));
+    		} catch (LlmUnavailableException | RestClientException e) {
+    			modelRouter.recordError(model);
+    			lastError = e;
+    			continue;
+    		}
+    		long elapsed = (System.nanoTime() - start) / 1_000_000;
+    		
+    		try {
+    			Product obj = parseAnalysis(response);
+    			modelRouter.recordValid(model, elapsed);
+    			analysisCache.put(cacheKey, obj);
+    			return obj;
+    		} catch (IllegalArgumentException | IllegalStateException | JsonParseException e) {
+    			// Respuesta inservible: se escala al siguiente modelo
+    			modelRouter.recordInvalid(model, elapsed);
+    			lastError = e;
+    		}
+    	}
+    	throw lastError;
+    }
+
+    /**
+     * Extrae y valida el producto de la respuesta del LLM.
+     * 
+     * @throws IllegalStateException si la respuesta no tiene contenido
+     * @throws IllegalArgumentException si el contenido no es un producto JSON válido
+     */
+    private Product parseAnalysis(LlmResponse response) {
+		if (response == null || response.getChoices() == null || response.getChoices().isEmpty()
+				|| response.getChoices().get(0).getMessage() == null) {
+			throw new IllegalStateException("El LLM no devolvió ninguna respuesta");
+		}
     	
+		Product obj = JSON_READER.get().read(response.getChoices().get(0).getMessage().getContent());
+		String error = ProductValidator.validate(obj);
+		if (error != null) {
+			throw new IllegalArgumentException("Producto no válido: " + error);
+		}
+		return obj;
+    }
+
+    /**
+     * Analiza una imagen de producto en modo streaming.
+     * 
+     * Consume la respuesta del LLM token a token y notifica cada campo del
+     * producto en cuanto su valor JSON está completo, sin esperar al final de
+     * la respuesta. Si la imagen ya está en caché, se notifican todos los
+     * campos de inmediato.
+     * 
+     * Solo se pasa al siguiente modelo del {@link ModelRouter} si el anterior
+     * falla o responde sin ningún objeto JSON antes de notificar un campo: los
+     * campos ya notificados no se pueden retirar. Como en
+     * {@link #producEvaluation(byte[])}, solo se guarda en caché un producto válido.
+     * 
+     * @param fileBytes Bytes de la imagen del producto
+     * @param onField Recibe el nombre y el valor de cada campo según se extrae
+     * @return El producto completo una vez terminada la respuesta
+     * @throws IllegalArgumentException si la respuesta no contiene un objeto JSON completo o el producto no es válido
+     * @throws LlmUnavailableException si ningún modelo está disponible
+     */
+    public Product producEvaluationStream(byte[] fileBytes, BiConsumer<String, Object> onField) {
     	
-		LlmResponse response = fridaService.callChatCompletion(req);
+    	String cacheKey = AnalysisCache.key(fileBytes, modelRouter.cacheScope(), PROMPT_IMAGEN);
+    	Product cached = analysisCache.get(cacheKey);
+    	if (cached != null) {
+    		ProductJsonStreamParser replay = new ProductJsonStreamParser(onField);
+    		replay.accept(ProductJson.GSON.toJson(cached));
+    		return cached;
+    	}
     	
+    	ImagePreprocessor.PreparedImage image = imagePreprocessor.prepare(fileBytes);
+    	RuntimeException lastError = null;
     	
-		String fragment = extractJsonFragment(response.getChoices().get(0).getMessage().getContent());
-		Product obj = new Gson().fromJson(fragment, Product.class);
+    	for (String model : modelRouter.plan()) {
+    		ProductJsonStreamParser parser = new ProductJsonStreamParser(onField);
+    		long start = System.nanoTime();
+    		try {
+    			llmClient.stream(buildAnalysisRequest(model, image), parser::accept);
+    		} catch (LlmUnavailableException | RestClientException e) {
+    			modelRouter.recordError(model);
+    			if (parser.hasStarted()) {
+    				throw e;
+    			}
+    			lastError = e;
+    			continue;
+    		}
+    		long elapsed = (System.nanoTime() - start) / 1_000_000;
+    		
+    		if (!parser.isComplete()) {
+    			modelRouter.recordInvalid(model, elapsed);
+    			if (!parser.hasStarted()) {
+    				// Sin JSON no se ha notificado nada: se escala al siguiente modelo
+    				lastError = new IllegalArgumentException("No se encontró apertura JSON");
+    				continue;
+    			}
+    			throw new IllegalArgumentException("JSON incompleto o no balanceado");
+    		}
+    		
+    		Product obj = parser.getProduct();
+    		String error = ProductValidator.validate(obj);
+    		if (error != null) {
+    			modelRouter.recordInvalid(model, elapsed);
+    			throw new IllegalArgumentException("Producto no válido: " + error);
+    		}
+    		modelRouter.recordValid(model, elapsed);
+    		analysisCache.put(cacheKey, obj);
+    		return obj;
+    	}
+    	throw lastError;
+    }
 
-    	return obj;
+    /**
+     * Construye la petición de análisis con el prompt y la imagen en base64.
+     * 
+     * @param model Modelo LLM a utilizar
+     * @param image Imagen ya reducida, recodificada y sin metadatos
+     * @return Petición lista para enviar a Frida
+     */
+    private LlmRequest buildAnalysisRequest(String model, ImagePreprocessor.PreparedImage image) {
+    	// El base64 se genera al escribir el cuerpo HTTP, sin copias intermedias en memoria
+    	LlmDocument doc = LlmDocument.ofImage("auto", image.mimeType(), image.bytes());
     	
+    	// Instrucciones fijas primero y marcadas como prefijo cacheable; la imagen, que
+    	// cambia en cada petición, al final para no romper la caché de prompt
+    	return LlmRequestBuilder.forModel(model)
+    			.system(PROMPT_IMAGEN).cacheBreakpoint()
+    			.input(LlmContent.ofImage(doc))
+    			.build();
     }
 
 	/**
-	 * Obtiene la lista completa de todos los productos.
+	 * Devuelve las estadísticas de la caché de análisis de imágenes.
+	 * 
+	 * @return Mapa con aciertos, fallos, desalojos y ratio de acierto
+	 */
+	public Map<String, Object> getAnalysisCacheStats() {
+		return analysisCache.getStats();
+	}
+
+	/**
+	 * Devuelve las estadísticas del preprocesado de imágenes.
+	 * 
+	 * @return Mapa con imágenes procesadas y bytes ahorrados
+	 */
+	public Map<String, Object> getImagePreprocessingStats() {
+		return imagePreprocessor.getStats();
+	}
+
+	/**
+	 * Devuelve las estadísticas del pool de conexiones HTTP hacia el LLM.
+	 * 
+	 * @return Mapa con conexiones en uso, en espera y libres
+	 */
+	public Map<String, Object> getLlmPoolStats() {
+		return fridaService.getPoolStats();
+	}
+
+	/**
+	 * Devuelve el estado de la capa de resiliencia de las llamadas al LLM.
+	 * 
+	 * @return Mapa con la configuración y, por modelo, el estado del circuito y los contadores
+	 */
+	public Map<String, Object> getLlmResilienceStats() {
+		return llmClient.getStats();
+	}
+
+	/**
+	 * Devuelve el estado del enrutado entre modelos.
 	 * 
-	 * Recupera todos los productos almacenados en la base de datos
-	 * y los convierte a objetos de dominio para su uso en la aplicación.
+	 * @return Mapa con la política, los modelos candidatos y, por modelo, respuestas válidas, inválidas, errores y latencia media
+	 */
+	public Map<String, Object> getLlmRoutingStats() {
+		return modelRouter.getStats();
+	}
+
+	/**
+	 * Devuelve el uso de la caché de prompt del proveedor.
 	 * 
-	 * @return Lista de todos los productos disponibles. Lista vacía si no hay productos.
+	 * @return Mapa con, por modelo y endpoint, tokens de prompt, leídos y escritos en caché y ratio de acierto
 	 */
-	public List<Product> getAllProducts() {
-		List<ProductDto> entities = productRepository.findAll();
+	public Map<String, Object> getPromptCacheStats() {
+		return llmMetrics.getPromptCacheStats();
+	}
+
+	/**
+	 * Obtiene una página de productos usando paginación por keyset sobre el ID.
+	 * 
+	 * En lugar de OFFSET se filtra por {@code id > after}, de modo que el coste
+	 * de cada página no depende de su posición en el catálogo. El tamaño se
+	 * acota a {@code products.page.max-size}.
+	 * 
+	 * @param after ID del último producto recibido, o null para empezar desde el principio
+	 * @param limit Número máximo de productos a devolver, o null para usar el tamaño por defecto
+	 * @return Lista de productos con ID mayor que {@code after}, ordenada por ID
+	 */
+	public List<Product> getProductsPage(Long after, Integer limit) {
+		int size = resolvePageSize(limit);
+		long cursor = after == null ? 0L : after;
+		List<ProductDto> entities = productStore.findPage(cursor, size);
 		return productMapper.toEntityList(entities);
-		
+	}
+
+	/**
+	 * Busca productos aplicando filtros de igualdad, prefijo y rango.
+	 * 
+	 * Los filtros los resuelve el {@link ProductStore} (con JPA, como predicados
+	 * sobre columnas indexadas) y la paginación es por keyset sobre {@code (campo de orden, id)}: el cursor
+	 * devuelto codifica el orden, el valor del campo (o su ausencia) y el ID de
+	 * la última fila, por lo que el coste de cada página no depende de su
+	 * posición. Los nulos van primero en orden ascendente y al final en
+	 * descendente, como en H2. No se ejecuta ninguna consulta de recuento.
+	 * 
+	 * @param criteria Filtros a aplicar (los nulos se ignoran)
+	 * @param sort Orden como {@code campo[,asc|desc]}, o null para ordenar por ID
+	 * @param cursor Cursor devuelto por la página anterior, o null para la primera
+	 * @param limit Tamaño de página (acotado por products.page.max-size)
+	 * @return Página de productos y cursor de la siguiente, si la hay
+	 * @throws IllegalArgumentException si el orden o el cursor no son válidos
+	 */
+	@Transactional(readOnly = true)
+	public ProductPage searchProducts(ProductSearchCriteria criteria, String sort, String cursor, Integer limit) {
+		String field = "id";
+		boolean descending = false;
+		if (sort != null && !sort.isBlank()) {
+			String[] parts = sort.split(",", 2);
+			field = parts[0].trim();
+			if (!SEARCH_SORT_FIELDS.contains(field)) {
+				throw new IllegalArgumentException("Campo de orden no soportado: " + field + ". Valores válidos: " + SEARCH_SORT_FIELDS);
+			}
+			if (parts.length > 1) {
+				String direction = parts[1].trim();
+				if (direction.equalsIgnoreCase("desc")) {
+					descending = true;
+				} else if (!direction.equalsIgnoreCase("asc")) {
+					throw new IllegalArgumentException("Dirección de orden no válida: " + direction);
+				}
+			}
+		}
+
+		ProductQuery.Position after = null;
+		if (cursor != null && !cursor.isBlank()) {
+			after = decodeCursor(field, descending, cursor);
+		}
+		int size = resolvePageSize(limit);
+		List<ProductDto> entities = productStore.search(new ProductQuery(criteria, field, descending, after, size));
+
+		String nextCursor = null;
+		if (entities.size() == size) {
+			nextCursor = encodeCursor(field, descending, entities.get(entities.size() - 1));
+		}
+		return new ProductPage(productMapper.toEntityList(entities), nextCursor);
+	}
+
+	/**
+	 * Cursor {@code campo|asc o desc|id|valor}, con el valor precedido de {@code v:}
+	 * o la palabra {@code null} si la fila no lo tiene.
+	 */
+	private static String encodeCursor(String field, boolean descending, ProductDto last) {
+		Object value = switch (field) {
+			case "referencia" -> last.getReferencia();
+			case "nombre" -> last.getNombre();
+			case "precio" -> last.getPrecio();
+			case "numeroDisponible" -> last.getNumeroDisponible();
+			default -> last.getId();
+		};
+		String raw = field + "|" + (descending ? "desc" : "asc") + "|" + last.getId() + "|"
+				+ (value == null ? "null" : "v:" + value);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static ProductQuery.Position decodeCursor(String field, boolean descending, String cursor) {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] parts = raw.split("\\|", 4);
+			if (parts.length != 4 || !parts[0].equals(field) || !parts[1].equals(descending ? "desc" : "asc")) {
+				throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+			}
+			long id = Long.parseLong(parts[2]);
+			Comparable<?> value;
+			if (parts[3].equals("null")) {
+				value = null;
+			} else if (parts[3].startsWith("v:")) {
+				value = ProductSpecifications.parseValue(field, parts[3].substring(2));
+			} else {
+				throw new IllegalArgumentException("valor mal codificado");
+			}
+			return new ProductQuery.Position(value, id);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Cursor no válido: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Obtiene varios productos por ID conservando el orden de la lista.
+	 * 
+	 * Los IDs que ya no existen se omiten.
+	 * 
+	 * @param ids IDs en el orden deseado
+	 * @return Productos encontrados en el mismo orden
+	 */
+	public List<Product> getProductsByIds(List<Long> ids) {
+		Map<Long, ProductDto> byId = new HashMap<>();
+		for (ProductDto dto : productStore.findAllById(ids)) {
+			byId.put(dto.getId(), dto);
+		}
+		List<Product> products = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			ProductDto dto = byId.get(id);
+			if (dto != null) {
+				products.add(productMapper.toEntity(dto));
+			}
+		}
+		return products;
+	}
+
+	/**
+	 * Normaliza el tamaño de página solicitado al rango [1, max-size].
+	 * 
+	 * @param limit Tamaño pedido por el cliente, puede ser null
+	 * @return Tamaño de página efectivo
+	 */
+	public int resolvePageSize(Integer limit) {
+		if (limit == null || limit <= 0) {
+			return Math.min(defaultPageSize, maxPageSize);
+		}
+		return Math.min(limit, maxPageSize);
+	}
+
+	/**
+	 * Recorre todo el catálogo fila a fila entregando cada producto al consumidor.
+	 * 
+	 * El {@link ProductStore} entrega los productos uno a uno (con JPA, mediante
+	 * un cursor de solo lectura que desvincula cada entidad tras procesarla), por
+	 * lo que la memoria usada no crece con el tamaño del catálogo.
+	 * 
+	 * @param consumer Receptor de cada producto en orden de ID
+	 */
+	@Transactional(readOnly = true)
+	public void streamAllProducts(Consumer<Product> consumer) {
+		productStore.forEachOrderedById(dto -> consumer.accept(productMapper.toEntity(dto)));
 	}
 	
 	/**
@@ -147,15 +516,68 @@ public class ProductService {
 	 * @return El producto encontrado o null si no existe
 	 */
 	public Product getProductById(Long id) {
-		// Buscar el producto por ID en el repositorio
-		ProductDto productDto = productRepository.findById(id).orElse(null);
+		Product cached = productCache.get(id);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = productCache.stamp();
+		
+		// Buscar el producto por ID en el almacén
+		ProductDto productDto = productStore.findById(id).orElse(null);
 		
 		if (productDto == null) {
 			return null;
 		}
 		
-		// Convertir ProductDto a Product y retornar
-		return productMapper.toEntity(productDto);
+		// Convertir ProductDto a Product, cachear y retornar
+		Product product = productMapper.toEntity(productDto);
+		productCache.put(product, stamp);
+		return product;
+	}
+
+	/**
+	 * Obtiene un producto por su referencia.
+	 * 
+	 * Igual que {@link #getProductById(Long)}, consulta primero la caché de
+	 * productos y solo va a la base de datos si no hay entrada vigente.
+	 * 
+	 * @param referencia Referencia única del producto
+	 * @return El producto encontrado o null si no existe
+	 */
+	public Product getProductByReferencia(String referencia) {
+		Product cached = productCache.getByReferencia(referencia);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = productCache.stamp();
+		ProductDto productDto = productStore.findByReferencia(referencia).orElse(null);
+		if (productDto == null) {
+			return null;
+		}
+		Product product = productMapper.toEntity(productDto);
+		productCache.put(product, stamp);
+		return product;
+	}
+
+	/**
+	 * Lee la versión actual de un producto en el almacén, sin pasar por la
+	 * caché, para resolver precondiciones que admiten varias versiones.
+	 * 
+	 * @param id El identificador único del producto
+	 * @return La versión guardada o null si el producto no existe
+	 */
+	@Transactional(readOnly = true)
+	public Long getProductVersion(Long id) {
+		return productStore.findVersionById(id);
+	}
+
+	/**
+	 * Devuelve las estadísticas de la caché de productos.
+	 * 
+	 * @return Mapa con tamaño, aciertos, fallos, invalidaciones y ratio de acierto
+	 */
+	public Map<String, Object> getProductCacheStats() {
+		return productCache.getStats();
 	}
 
 	/**
@@ -169,104 +591,81 @@ public class ProductService {
 	 * @return El producto creado con su ID asignado por la base de datos
 	 * @throws RuntimeException si ocurre un error durante la persistencia
 	 */
+	@Transactional
 	public Product createProduct(Product product) {
 		// Convertir Product a ProductDto para persistir
 		ProductDto productDto = productMapper.toDto(product);
 		
+		// El ID siempre lo asigna la base de datos
+		productDto.setId(null);
+		
 		// Guardar en la base de datos
-		ProductDto savedDto = productRepository.save(productDto);
+		ProductDto savedDto = productStore.insert(productDto);
 		
 		// Convertir de vuelta a Product y retornar
-		return productMapper.toEntity(savedDto);
+		Product saved = productMapper.toEntity(savedDto);
+		eventPublisher.publishEvent(ProductChangeEvent.created(List.of(saved)));
+		return saved;
 	}
 
 	/**
 	 * Actualiza un producto existente en la base de datos.
 	 * 
-	 * Busca el producto por su ID y actualiza todos sus campos con los nuevos valores.
-	 * Si el producto no existe, retorna null.
+	 * Actualiza todos los campos del producto con los nuevos valores mediante
+	 * una única sentencia UPDATE. Si el producto no existe, retorna null.
+	 * 
+	 * Si el producto recibido trae {@code version}, la actualización solo se
+	 * aplica cuando coincide con la versión guardada; así dos clientes que
+	 * editan a la vez no se pisan los cambios.
 	 * 
 	 * @param id El identificador único del producto a actualizar
-	 * @param product Los nuevos datos del producto
+	 * @param product Los nuevos datos del producto, con la versión leída (opcional)
 	 * @return El producto actualizado o null si no existe
+	 * @throws OptimisticLockingFailureException si la versión no coincide
 	 */
+	@Transactional
 	public Product updateProduct(Long id, Product product) {
-		// Verificar si el producto existe
-		ProductDto existingDto = productRepository.findById(id).orElse(null);
+		// Una única actualización condicionada a la versión, si se indica
+		Instant now = Instant.now();
+		Long expectedVersion = product.getVersion();
+		int updated = productStore.update(id, productMapper.toDto(product), expectedVersion, now);
 		
-		if (existingDto == null) {
+		if (updated == 0) {
+			Long currentVersion = expectedVersion == null ? null : productStore.findVersionById(id);
+			if (currentVersion != null) {
+				throw new OptimisticLockingFailureException("El producto " + id + " ha cambiado: versión actual "
+						+ currentVersion + ", versión enviada " + expectedVersion);
+			}
 			return null;
 		}
 		
-		// Convertir el nuevo producto a DTO
-		ProductDto updatedDto = productMapper.toDto(product);
-		
-		// Asignar el ID del producto existente
-		updatedDto.setId(id);
-		
-		// Guardar los cambios en la base de datos
-		ProductDto savedDto = productRepository.save(updatedDto);
-		
-		// Convertir de vuelta a Product y retornar
-		return productMapper.toEntity(savedDto);
+		// Devolver los datos guardados con el ID, la versión y la fecha de modificación
+		Product saved = productMapper.toEntity(productMapper.toDto(product));
+		saved.setId(id);
+		saved.setVersion(expectedVersion != null ? expectedVersion + 1 : productStore.findVersionById(id));
+		saved.setLastModified(now);
+		eventPublisher.publishEvent(ProductChangeEvent.updated(List.of(saved)));
+		return saved;
 	}
 
 	/**
 	 * Elimina un producto de la base de datos.
 	 * 
-	 * Busca el producto por su ID y lo elimina si existe.
+	 * Ejecuta un único DELETE por ID; el número de filas afectadas indica
+	 * si el producto existía.
 	 * 
 	 * @param id El identificador único del producto a eliminar
 	 * @return true si el producto fue eliminado, false si no existía
 	 */
+	@Transactional
 	public boolean deleteProduct(Long id) {
-		// Verificar si el producto existe
-		if (!productRepository.existsById(id)) {
+		if (productStore.deleteById(id) == 0) {
 			return false;
 		}
-		
-		// Eliminar el producto
-		productRepository.deleteById(id);
-		
+		eventPublisher.publishEvent(ProductChangeEvent.deleted(List.of(id)));
 		return true;
 	}
 	
-	/**
-	 * Extrae el primer fragmento JSON válido de una cadena de texto.
-	 * 
-	 * Método utilitario que busca y extrae el primer objeto JSON o array JSON
-	 * completo encontrado en un texto. Realiza balanceo de llaves/corchetes
-	 * para asegurar que el JSON extraído esté bien formado.
-	 * 
-	 * @param text La cadena de texto que contiene JSON embebido
-	 * @return El fragmento JSON extraído como cadena
-	 * @throws IllegalArgumentException si no se encuentra JSON válido o está mal formado
-	 */
-	public static String extractJsonFragment(String text) {
-	    int start = -1;
-	    char open = 0;
-	    for (int i = 0; i < text.length(); i++) {
-	        char c = text.charAt(i);
-	        if (c == '{' || c == '[') { start = i; open = c; break; }
-	    }
-	    if (start == -1) throw new IllegalArgumentException("No se encontró apertura JSON");
-
-	    char close = open == '{' ? '}' : ']';
-	    int depth = 0;
-	    boolean inString = false;
-	    for (int i = start; i < text.length(); i++) {
-	        char c = text.charAt(i);
-	        if (c == '"' && (i == 0 || text.charAt(i - 1) != '\\')) inString = !inString;
-	        if (inString) continue;
-	        if (c == open) depth++;
-	        else if (c == close) {
-	            depth--;
-	            if (depth == 0) return text.substring(start, i + 1);
-	        }
-	    }
-	    throw new IllegalArgumentException("JSON incompleto o no balanceado");
-	}
-	
 	
 	
 }
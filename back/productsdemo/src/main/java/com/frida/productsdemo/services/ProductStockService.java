@@ -0,0 +1,112 @@
+package com.frida.productsdemo.services;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.frida.productsdemo.entity.ProductDto;
+import com.frida.productsdemo.models.BulkResult;
+import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.models.StockReservation;
+import com.frida.productsdemo.models.StockReservationResult;
+import com.frida.productsdemo.repository.ProductStore;
+
+/**
+ * Servicio de ajustes de stock atómicos.
+ * 
+ * Cada ajuste es una única escritura condicional ({@code stock + delta >= 0})
+ * que el {@link ProductStore} aplica sobre el valor actual del producto, por lo
+ * que hilos o instancias concurrentes no pierden actualizaciones ni necesitan
+ * leer antes de escribir. Todos los ajustes suben la versión del producto.
+ */
+@Service
+public class ProductStockService {
+
+	@Autowired
+	private ProductStore productStore;
+
+	@Autowired
+	private ProductMapper productMapper;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	/**
+	 * Suma o resta unidades al stock de un producto.
+	 * 
+	 * @param id ID del producto
+	 * @param delta Unidades a sumar (positivo) o restar (negativo)
+	 * @return El producto con el stock actualizado, o null si no existe
+	 * @throws IllegalStateException si el stock quedaría por debajo de cero
+	 */
+	@Transactional
+	public Product adjustStock(Long id, int delta) {
+		if (productStore.adjustStock(id, delta, Instant.now()) == 0) {
+			if (productStore.existsById(id)) {
+				throw new IllegalStateException("Stock insuficiente para el producto " + id);
+			}
+			return null;
+		}
+		Product product = productMapper.toEntity(productStore.findById(id).orElseThrow());
+		eventPublisher.publishEvent(ProductChangeEvent.updated(List.of(product)));
+		return product;
+	}
+
+	/**
+	 * Reserva stock de varios productos de forma atómica: o se descuentan
+	 * todas las líneas o ninguna.
+	 * 
+	 * Las líneas del mismo producto se suman y se descuentan todas de una vez
+	 * en el {@link ProductStore} (con JPA, en un único lote JDBC ordenado por ID).
+	 * 
+	 * @param reservations Líneas a reservar
+	 * @return Resultado con los productos actualizados o las líneas que fallaron
+	 */
+	@Transactional
+	public StockReservationResult reserve(List<StockReservation> reservations) {
+		List<BulkResult.RowError> errors = new ArrayList<>();
+		Map<Long, Integer> quantities = new TreeMap<>();
+		Map<Long, Integer> firstIndex = new TreeMap<>();
+		for (int i = 0; i < reservations.size(); i++) {
+			StockReservation line = reservations.get(i);
+			if (line == null || line.id() == null || line.id() <= 0) {
+				errors.add(new BulkResult.RowError(i, null, "El ID del producto debe ser un número positivo válido"));
+			} else if (line.quantity() == null || line.quantity() <= 0) {
+				errors.add(new BulkResult.RowError(i, null, "La cantidad debe ser mayor que cero"));
+			} else {
+				quantities.merge(line.id(), line.quantity(), Integer::sum);
+				firstIndex.putIfAbsent(line.id(), i);
+			}
+		}
+		if (!errors.isEmpty() || quantities.isEmpty()) {
+			return new StockReservationResult(false, List.of(), errors);
+		}
+
+		List<Long> failed = productStore.reserveStock(quantities, Instant.now());
+		if (!failed.isEmpty()) {
+			TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+			Set<Long> existing = new HashSet<>(productStore.findExistingIds(failed));
+			for (Long id : failed) {
+				errors.add(new BulkResult.RowError(firstIndex.get(id), null, existing.contains(id)
+						? "Stock insuficiente para el producto " + id
+						: "No se encontró un producto con el ID especificado: " + id));
+			}
+			return new StockReservationResult(false, List.of(), errors);
+		}
+
+		List<ProductDto> updated = productStore.findAllById(quantities.keySet());
+		List<Product> products = productMapper.toEntityList(updated);
+		eventPublisher.publishEvent(ProductChangeEvent.updated(products));
+		return new StockReservationResult(true, products, List.of());
+	}
+}
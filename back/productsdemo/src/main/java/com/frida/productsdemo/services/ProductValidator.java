@@ -0,0 +1,95 @@
+package com.frida.productsdemo.services;
+
+import java.math.BigDecimal;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Reglas de validación de los datos de un producto.
+ * 
+ * Centraliza las comprobaciones que aplican el alta y la modificación
+ * individual, las operaciones masivas y la importación de catálogos, para
+ * que todas rechacen exactamente los mismos datos con los mismos mensajes.
+ */
+public final class ProductValidator {
+
+	private static final BigDecimal MAX_PRICE = new BigDecimal("999999.99");
+
+	private ProductValidator() { /* Previene instanciación */ }
+
+	/**
+	 * Valida un producto.
+	 * 
+	 * @param product El producto a validar
+	 * @return El mensaje del primer error encontrado, o null si el producto es válido
+	 */
+	public static String validate(Product product) {
+		// Validación básica de datos requeridos
+		if (product == null) {
+			return "Los datos del producto son requeridos";
+		}
+		
+		// Validación del nombre (campo requerido)
+		if (product.getNombre() == null || product.getNombre().trim().isEmpty()) {
+			return "El nombre del producto es requerido";
+		}
+		
+		// Validación del precio (campo requerido, debe ser mayor a 0)
+		if (product.getPrecio() == null || product.getPrecio().compareTo(BigDecimal.ZERO) <= 0) {
+			return "El precio del producto debe ser mayor a 0";
+		}
+		
+		// Validación de la referencia (campo requerido)
+		if (product.getReferencia() == null || product.getReferencia().trim().isEmpty()) {
+			return "La referencia del producto es requerida";
+		}
+		
+		// Validación de la marca (campo requerido)
+		if (product.getMarca() == null || product.getMarca().trim().isEmpty()) {
+			return "La marca del producto es requerida";
+		}
+		
+		// Validación del departamento (campo requerido)
+		if (product.getDepartamento() == null || product.getDepartamento().trim().isEmpty()) {
+			return "El departamento del producto es requerido";
+		}
+		
+		// Validación del número disponible (debe ser mayor o igual a 0)
+		if (product.getNumeroDisponible() < 0) {
+			return "El número disponible del producto no puede ser negativo";
+		}
+		
+		// Validación de la descripción (opcional pero si se proporciona no debe estar vacía)
+		if (product.getDescripcion() != null && product.getDescripcion().trim().isEmpty()) {
+			return "La descripción del producto no puede estar vacía";
+		}
+		
+		// Validaciones de formato y longitud
+		if (product.getNombre().length() > 255) {
+			return "El nombre del producto no puede exceder 255 caracteres";
+		}
+		
+		if (product.getReferencia().length() > 50) {
+			return "La referencia del producto no puede exceder 50 caracteres";
+		}
+		
+		if (product.getMarca().length() > 100) {
+			return "La marca del producto no puede exceder 100 caracteres";
+		}
+		
+		if (product.getDepartamento().length() > 100) {
+			return "El departamento del producto no puede exceder 100 caracteres";
+		}
+		
+		if (product.getDescripcion() != null && product.getDescripcion().length() > 1000) {
+			return "La descripción del producto no puede exceder 1000 caracteres";
+		}
+		
+		// Validación del precio máximo razonable
+		if (product.getPrecio().compareTo(MAX_PRICE) > 0) {
+			return "El precio del producto no puede exceder $999,999.99";
+		}
+		
+		return null;
+	}
+}
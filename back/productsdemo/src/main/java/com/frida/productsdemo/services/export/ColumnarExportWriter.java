@@ -0,0 +1,168 @@
+package com.frida.productsdemo.services.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Formato binario columnar compacto por bloques de filas.
+ * 
+ * Las filas se agrupan en bloques de tamaño fijo y, dentro de cada bloque,
+ * cada campo se escribe como una columna contigua. La memoria usada es la de
+ * un bloque, independientemente del tamaño del catálogo.
+ * 
+ * <pre>
+ * fichero  := "FRPC" version:u8(=1) numCampos:varint campo* bloque* fin
+ * campo    := tipo:u8 (0=LONG 1=INT 2=DECIMAL 3=STRING) nombre:cadena
+ * bloque   := filas:varint (&gt; 0) columna*            (una por campo, en orden)
+ * columna  := presentes:bitmap[ceil(filas/8)] valores  (bit a 1 = valor no nulo)
+ * LONG     := zigzag-varint de la diferencia con el valor anterior del bloque
+ * INT      := zigzag-varint
+ * DECIMAL  := escala:varint + zigzag-varint del valor sin escala
+ * STRING   := 0 cadena*                                  (plano)
+ *           | 1 tamañoDicc:varint cadena* índice:varint*  (diccionario)
+ * cadena   := longitud:varint + bytes UTF-8
+ * fin      := 0:varint
+ * </pre>
+ */
+public class ColumnarExportWriter implements ExportWriter {
+
+    static final byte[] MAGIC = { 'F', 'R', 'P', 'C' };
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+    private final List<ExportField> fields;
+    private final int blockRows;
+    private final List<Product> block;
+
+    public ColumnarExportWriter(OutputStream out, List<ExportField> fields, int blockRows) throws IOException {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.fields = fields;
+        this.blockRows = blockRows;
+        this.block = new ArrayList<>(blockRows);
+
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+        writeVarint(fields.size());
+        for (ExportField field : fields) {
+            this.out.write(field.getType().ordinal());
+            writeString(field.getFieldName());
+        }
+    }
+
+    @Override
+    public void write(Product product) throws IOException {
+        block.add(product);
+        if (block.size() >= blockRows) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!block.isEmpty()) {
+            writeBlock();
+        }
+        writeVarint(0);
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        writeVarint(block.size());
+        for (ExportField field : fields) {
+            Object[] values = new Object[block.size()];
+            byte[] present = new byte[(block.size() + 7) / 8];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = field.get(block.get(i));
+                if (values[i] != null) {
+                    present[i >> 3] |= (byte) (1 << (i & 7));
+                }
+            }
+            out.write(present);
+            switch (field.getType()) {
+                case LONG -> writeLongColumn(values);
+                case INT -> {
+                    for (Object value : values) {
+                        if (value != null) writeVarint(zigzag((Integer) value));
+                    }
+                }
+                case DECIMAL -> {
+                    for (Object value : values) {
+                        if (value == null) continue;
+                        BigDecimal decimal = (BigDecimal) value;
+                        writeVarint(Math.max(decimal.scale(), 0));
+                        writeVarint(zigzag(decimal.setScale(Math.max(decimal.scale(), 0)).unscaledValue().longValueExact()));
+                    }
+                }
+                case STRING -> writeStringColumn(values);
+            }
+        }
+        block.clear();
+    }
+
+    private void writeLongColumn(Object[] values) throws IOException {
+        long previous = 0;
+        for (Object value : values) {
+            if (value == null) continue;
+            long current = (Long) value;
+            writeVarint(zigzag(current - previous));
+            previous = current;
+        }
+    }
+
+    private void writeStringColumn(Object[] values) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int present = 0;
+        for (Object value : values) {
+            if (value == null) continue;
+            present++;
+            if (dictionary.putIfAbsent((String) value, entries.size()) == null) {
+                entries.add((String) value);
+            }
+        }
+
+        // Diccionario solo si hay muchas repeticiones (marca, departamento...)
+        if (entries.size() * 2 <= present) {
+            out.write(1);
+            writeVarint(entries.size());
+            for (String entry : entries) {
+                writeString(entry);
+            }
+            for (Object value : values) {
+                if (value != null) writeVarint(dictionary.get(value));
+            }
+        } else {
+            out.write(0);
+            for (Object value : values) {
+                if (value != null) writeString((String) value);
+            }
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
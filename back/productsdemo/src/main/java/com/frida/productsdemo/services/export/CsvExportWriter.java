@@ -0,0 +1,65 @@
+package com.frida.productsdemo.services.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * CSV (RFC 4180) con cabecera. Los campos con separador, comillas o saltos
+ * de línea se escriben entre comillas.
+ */
+public class CsvExportWriter implements ExportWriter {
+
+    private final Writer writer;
+    private final List<ExportField> fields;
+
+    public CsvExportWriter(OutputStream out, List<ExportField> fields) throws IOException {
+        this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        this.fields = fields;
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) writer.write(',');
+            writer.write(fields.get(i).getFieldName());
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void write(Product product) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) writer.write(',');
+            Object value = fields.get(i).get(product);
+            if (value == null) {
+                continue;
+            }
+            String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+            writeEscaped(text);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,66 @@
+package com.frida.productsdemo.services.export;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Campos de Product que se pueden incluir en una exportación.
+ */
+public enum ExportField {
+
+    ID("id", Type.LONG, Product::getId),
+    REFERENCIA("referencia", Type.STRING, Product::getReferencia),
+    NOMBRE("nombre", Type.STRING, Product::getNombre),
+    MARCA("marca", Type.STRING, Product::getMarca),
+    DESCRIPCION("descripcion", Type.STRING, Product::getDescripcion),
+    PRECIO("precio", Type.DECIMAL, Product::getPrecio),
+    NUMERO_DISPONIBLE("numeroDisponible", Type.INT, Product::getNumeroDisponible),
+    DEPARTAMENTO("departamento", Type.STRING, Product::getDepartamento);
+
+    /** Tipo de columna, usado por el formato binario. */
+    public enum Type { LONG, INT, DECIMAL, STRING }
+
+    private final String fieldName;
+    private final Type type;
+    private final Function<Product, Object> accessor;
+
+    ExportField(String fieldName, Type type, Function<Product, Object> accessor) {
+        this.fieldName = fieldName;
+        this.type = type;
+        this.accessor = accessor;
+    }
+
+    public String getFieldName() { return fieldName; }
+    public Type getType() { return type; }
+    public Object get(Product product) { return accessor.apply(product); }
+
+    /**
+     * Resuelve una lista de nombres separados por comas.
+     * 
+     * @param names Nombres de campo (sin distinguir mayúsculas), o null/vacío para todos
+     * @return Campos en el orden indicado
+     * @throws IllegalArgumentException si algún nombre no corresponde a un campo
+     */
+    public static List<ExportField> parse(String names) {
+        if (names == null || names.isBlank()) {
+            return Arrays.asList(values());
+        }
+        List<ExportField> fields = new ArrayList<>();
+        for (String name : names.split(",")) {
+            String wanted = name.trim().toLowerCase(Locale.ROOT);
+            ExportField field = Arrays.stream(values())
+                .filter(f -> f.fieldName.toLowerCase(Locale.ROOT).equals(wanted))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Campo desconocido: " + name.trim()));
+            if (!fields.contains(field)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+}
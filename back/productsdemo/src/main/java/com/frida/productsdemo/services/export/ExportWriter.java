@@ -0,0 +1,21 @@
+package com.frida.productsdemo.services.export;
+
+import java.io.IOException;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Escribe productos en un formato de exportación, uno a uno.
+ */
+public interface ExportWriter {
+
+    /**
+     * Escribe un producto con los campos seleccionados.
+     */
+    void write(Product product) throws IOException;
+
+    /**
+     * Escribe lo pendiente y el pie del formato. No cierra el stream subyacente.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,54 @@
+package com.frida.productsdemo.services.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Un objeto JSON por línea con solo los campos seleccionados. Se escribe con
+ * el generador de Jackson directamente, sin construir objetos intermedios.
+ */
+public class NdjsonExportWriter implements ExportWriter {
+
+    private final JsonGenerator generator;
+    private final List<ExportField> fields;
+
+    public NdjsonExportWriter(OutputStream out, List<ExportField> fields, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+        this.fields = fields;
+    }
+
+    @Override
+    public void write(Product product) throws IOException {
+        generator.writeStartObject();
+        for (ExportField field : fields) {
+            Object value = field.get(product);
+            generator.writeFieldName(field.getFieldName());
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof String text) {
+                generator.writeString(text);
+            } else if (value instanceof BigDecimal decimal) {
+                generator.writeNumber(decimal);
+            } else if (value instanceof Long number) {
+                generator.writeNumber(number);
+            } else {
+                generator.writeNumber((Integer) value);
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        generator.close();
+    }
+}
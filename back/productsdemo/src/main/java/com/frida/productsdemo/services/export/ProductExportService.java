@@ -0,0 +1,129 @@
+package com.frida.productsdemo.services.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frida.productsdemo.services.ProductService;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Exportación del catálogo completo en streaming.
+ * 
+ * Recorre los productos con el cursor de solo lectura de
+ * {@link ProductService#streamAllProducts} y los escribe directamente en la
+ * salida en CSV, NDJSON o el formato columnar de {@link ColumnarExportWriter},
+ * con compresión gzip o zstd opcional y solo los campos pedidos.
+ */
+@Service
+public class ProductExportService {
+
+	public enum Format {
+		CSV("text/csv", "csv"),
+		NDJSON("application/x-ndjson", "ndjson"),
+		COLUMNAR("application/octet-stream", "frpc");
+
+		private final String contentType;
+		private final String extension;
+
+		Format(String contentType, String extension) {
+			this.contentType = contentType;
+			this.extension = extension;
+		}
+
+		public String getContentType() { return contentType; }
+		public String getExtension() { return extension; }
+	}
+
+	public enum Compression {
+		NONE(null), GZIP("gzip"), ZSTD("zstd");
+
+		private final String contentEncoding;
+
+		Compression(String contentEncoding) {
+			this.contentEncoding = contentEncoding;
+		}
+
+		/** Valor de la cabecera Content-Encoding, o null sin compresión. */
+		public String getContentEncoding() { return contentEncoding; }
+	}
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${products.export.columnar-block-rows:4096}")
+	private int columnarBlockRows;
+
+	public static Format parseFormat(String value) {
+		try {
+			return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Formato desconocido: " + value);
+		}
+	}
+
+	public static Compression parseCompression(String value) {
+		if (value == null || value.isBlank()) {
+			return Compression.NONE;
+		}
+		try {
+			return Compression.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Compresión desconocida: " + value);
+		}
+	}
+
+	/**
+	 * Escribe todo el catálogo en la salida indicada.
+	 * 
+	 * @param out Salida (no se cierra)
+	 * @param format Formato de exportación
+	 * @param compression Compresión a aplicar
+	 * @param fields Campos a incluir, en orden
+	 * @throws IOException si falla la escritura
+	 */
+	public void export(OutputStream out, Format format, Compression compression, List<ExportField> fields) throws IOException {
+		// El stream de la respuesta lo cierra el contenedor, no el compresor
+		OutputStream target = switch (compression) {
+			case GZIP -> new GZIPOutputStream(StreamUtils.nonClosing(out), 64 * 1024);
+			case ZSTD -> new ZstdOutputStream(StreamUtils.nonClosing(out));
+			case NONE -> out;
+		};
+
+		ExportWriter writer = switch (format) {
+			case CSV -> new CsvExportWriter(target, fields);
+			case NDJSON -> new NdjsonExportWriter(target, fields, objectMapper);
+			case COLUMNAR -> new ColumnarExportWriter(target, fields, columnarBlockRows);
+		};
+
+		try {
+			productService.streamAllProducts(product -> {
+				try {
+					writer.write(product);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.finish();
+
+		if (target != out) {
+			// Escribe el pie del compresor
+			target.close();
+		}
+	}
+}
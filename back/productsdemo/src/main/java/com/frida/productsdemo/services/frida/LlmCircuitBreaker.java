@@ -0,0 +1,165 @@
+package com.frida.productsdemo.services.frida;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker for the calls to one LLM model.
+ *
+ * Keeps the outcome of the last {@code windowSize} calls. Once at least
+ * {@code minimumCalls} have been recorded and the failure rate reaches the
+ * threshold, the breaker opens and every call is rejected for
+ * {@code openDuration}. After that a single trial call is let through
+ * (half-open): if it succeeds the breaker closes, otherwise it opens again.
+ */
+public class LlmCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRate;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long opened;
+
+    public LlmCircuitBreaker(int windowSize, int minimumCalls, double failureRate, Duration openDuration) {
+        this(windowSize, minimumCalls, failureRate, openDuration, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock Source of {@link System#nanoTime()}-style readings, replaceable in tests
+     */
+    LlmCircuitBreaker(int windowSize, int minimumCalls, double failureRate, Duration openDuration, LongSupplier nanoClock) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.window.length));
+        this.failureRate = failureRate;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Asks for permission to make a call. Every granted permission must be
+     * followed by exactly one of {@link #onSuccess()}, {@link #onFailure()}
+     * or {@link #onIgnored()}.
+     *
+     * @return true if the call may go ahead
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * Records a call that reached the model and got a usable answer.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            reset();
+            state = State.CLOSED;
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Records a call that failed because the model is unhealthy
+     * (throttling, 5xx, timeout or I/O error).
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            open();
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && failures >= failureRate * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * Releases a permission without recording an outcome, for calls that
+     * were abandoned before the model answered.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return Time left until a trial call is allowed, or zero if the breaker is not open
+     */
+    public synchronized Duration getRemainingOpen() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openNanos - (nanoClock.getAsLong() - openedAt)));
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0.0 : (double) failures / recorded;
+    }
+
+    /**
+     * @return Number of times the breaker has opened since startup
+     */
+    public synchronized long getOpenedCount() {
+        return opened;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        opened++;
+        reset();
+    }
+
+    private void reset() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
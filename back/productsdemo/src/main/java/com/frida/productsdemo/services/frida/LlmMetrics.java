@@ -0,0 +1,139 @@
+package com.frida.productsdemo.services.frida;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import com.frida.productsdemo.models.LLmUsage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters for the LLM calls, tagged by model and endpoint
+ * ({@code completions} or {@code completions-stream}):
+ *
+ * - {@code llm.request}: latency histogram of each call, retries included,
+ *   also tagged by outcome (success, rejected, unavailable, error)
+ * - {@code llm.tokens}: prompt, completion, cache_read and cache_write tokens
+ *   reported in {@link LLmUsage}
+ * - {@code llm.prompt.cache.hit.ratio}: share of prompt tokens served from the
+ *   provider's prompt cache since startup
+ *
+ * Exported with the rest of the application metrics at /actuator/prometheus.
+ */
+@Component
+public class LlmMetrics {
+
+    public static final String ENDPOINT_COMPLETIONS = "completions";
+    public static final String ENDPOINT_STREAM = "completions-stream";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, TokenCounters> tokens = new ConcurrentHashMap<>();
+
+    private final class TokenCounters {
+        final Counter prompt;
+        final Counter completion;
+        final Counter cacheRead;
+        final Counter cacheWrite;
+        final AtomicLong promptTotal = new AtomicLong();
+        final AtomicLong cacheReadTotal = new AtomicLong();
+        final AtomicLong cacheWriteTotal = new AtomicLong();
+
+        TokenCounters(String model, String endpoint) {
+            prompt = tokenCounter(model, endpoint, "prompt");
+            completion = tokenCounter(model, endpoint, "completion");
+            cacheRead = tokenCounter(model, endpoint, "cache_read");
+            cacheWrite = tokenCounter(model, endpoint, "cache_write");
+            Gauge.builder("llm.prompt.cache.hit.ratio", this, TokenCounters::hitRatio)
+                    .description("Prompt tokens read from the prompt cache over all prompt tokens")
+                    .tag("model", model)
+                    .tag("endpoint", endpoint)
+                    .register(registry);
+        }
+
+        double hitRatio() {
+            long total = promptTotal.get();
+            // prompt_tokens already includes the cached ones
+            return total == 0 ? 0.0 : Math.min(1.0, (double) cacheReadTotal.get() / total);
+        }
+    }
+
+    public LlmMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records the duration of one call.
+     *
+     * @param outcome success, rejected (4xx), unavailable or error
+     */
+    public void recordCall(String model, String endpoint, String outcome, long nanos) {
+        Timer.builder("llm.request")
+                .description("LLM chat completion calls, retries and backoff included")
+                .tag("model", model)
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(50))
+                .maximumExpectedValue(Duration.ofMinutes(3))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the token counts of one answer.
+     *
+     * @param usage Usage reported by the provider; ignored if null
+     */
+    public void recordUsage(String model, String endpoint, LLmUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        TokenCounters counters = tokens.computeIfAbsent(model + '|' + endpoint, k -> new TokenCounters(model, endpoint));
+        counters.prompt.increment(usage.getPrompt_tokens());
+        counters.completion.increment(usage.getCompletion_tokens());
+        counters.cacheRead.increment(usage.getCache_read_input_tokens());
+        counters.cacheWrite.increment(usage.getCache_write_input_tokens());
+        counters.promptTotal.addAndGet(usage.getPrompt_tokens());
+        counters.cacheReadTotal.addAndGet(usage.getCache_read_input_tokens());
+        counters.cacheWriteTotal.addAndGet(usage.getCache_write_input_tokens());
+    }
+
+    /**
+     * Returns the prompt-cache usage since startup.
+     *
+     * @return Per "model endpoint": prompt tokens, tokens read from and written to the cache, and hit ratio
+     */
+    public Map<String, Object> getPromptCacheStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        tokens.forEach((key, counters) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("promptTokens", counters.promptTotal.get());
+            entry.put("cacheReadTokens", counters.cacheReadTotal.get());
+            entry.put("cacheWriteTokens", counters.cacheWriteTotal.get());
+            entry.put("hitRatio", counters.hitRatio());
+            stats.put(key.replace('|', ' '), entry);
+        });
+        return stats;
+    }
+
+    private Counter tokenCounter(String model, String endpoint, String type) {
+        return Counter.builder("llm.tokens")
+                .description("Tokens reported by the LLM provider")
+                .baseUnit("tokens")
+                .tag("model", model)
+                .tag("endpoint", endpoint)
+                .tag("type", type)
+                .register(registry);
+    }
+}
@@ -0,0 +1,124 @@
+package com.frida.productsdemo.services.frida;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frida.productsdemo.models.LlmCacheControl;
+import com.frida.productsdemo.models.LlmContent;
+import com.frida.productsdemo.models.LlmMessage;
+import com.frida.productsdemo.models.LlmRequest;
+
+/**
+ * Builds chat requests laid out for provider-side prompt caching.
+ *
+ * A prompt cache only hits on an identical prefix, so the layout is fixed:
+ * the system prompt first, then the stable user instructions, and only then
+ * the per-request inputs (images, product data...). Stable parts are added
+ * with {@link #system(String)} and {@link #instruction(String)}, variable
+ * ones with {@link #input(LlmContent)}, and the builder always emits them in
+ * that order whatever the call order. {@link #cacheBreakpoint()} marks the
+ * last stable block added so far as the end of a cacheable prefix.
+ *
+ * Example:
+ * <pre>
+ * LlmRequest req = LlmRequestBuilder.forModel(model)
+ *     .system(PROMPT).cacheBreakpoint()
+ *     .input(LlmContent.ofImage(image))
+ *     .build();
+ * </pre>
+ */
+public final class LlmRequestBuilder {
+
+    /** Most providers accept at most four cache breakpoints per request. */
+    public static final int MAX_BREAKPOINTS = 4;
+
+    private final String model;
+    private final List<LlmContent> system = new ArrayList<>();
+    private final List<LlmContent> instructions = new ArrayList<>();
+    private final List<LlmContent> inputs = new ArrayList<>();
+    private LlmContent lastStable;
+    private int breakpoints;
+    private boolean stream;
+
+    private LlmRequestBuilder(String model) {
+        this.model = model;
+    }
+
+    public static LlmRequestBuilder forModel(String model) {
+        return new LlmRequestBuilder(model);
+    }
+
+    /**
+     * Adds stable text to the system message.
+     */
+    public LlmRequestBuilder system(String text) {
+        lastStable = LlmContent.ofText(text);
+        system.add(lastStable);
+        return this;
+    }
+
+    /**
+     * Adds stable text to the start of the user message, before any input.
+     */
+    public LlmRequestBuilder instruction(String text) {
+        lastStable = LlmContent.ofText(text);
+        instructions.add(lastStable);
+        return this;
+    }
+
+    /**
+     * Adds content that changes from one request to the next. It always goes
+     * after every stable block, so it never breaks the cached prefix.
+     */
+    public LlmRequestBuilder input(LlmContent content) {
+        inputs.add(content);
+        return this;
+    }
+
+    /**
+     * Marks the last stable block added as the end of a cacheable prefix.
+     *
+     * @throws IllegalStateException if there is no stable block yet, it is already
+     *         marked, or the request would exceed {@link #MAX_BREAKPOINTS}
+     */
+    public LlmRequestBuilder cacheBreakpoint() {
+        if (lastStable == null) {
+            throw new IllegalStateException("A cache breakpoint needs stable content before it");
+        }
+        if (lastStable.getCache_control() != null) {
+            throw new IllegalStateException("The last stable block is already a cache breakpoint");
+        }
+        if (breakpoints == MAX_BREAKPOINTS) {
+            throw new IllegalStateException("At most " + MAX_BREAKPOINTS + " cache breakpoints per request");
+        }
+        lastStable.setCache_control(LlmCacheControl.ephemeral());
+        breakpoints++;
+        return this;
+    }
+
+    public LlmRequestBuilder stream(boolean stream) {
+        this.stream = stream;
+        return this;
+    }
+
+    /**
+     * Builds the request. Provider caching ({@code enable_catching}) is
+     * requested whenever a breakpoint was set.
+     *
+     * @throws IllegalStateException if the request would have no user content
+     */
+    public LlmRequest build() {
+        if (instructions.isEmpty() && inputs.isEmpty()) {
+            throw new IllegalStateException("The request needs user content");
+        }
+        List<LlmMessage> messages = new ArrayList<>(2);
+        if (!system.isEmpty()) {
+            messages.add(new LlmMessage("system", new ArrayList<>(system)));
+        }
+        List<LlmContent> user = new ArrayList<>(instructions.size() + inputs.size());
+        user.addAll(instructions);
+        user.addAll(inputs);
+        messages.add(new LlmMessage("user", user));
+        return new LlmRequest(model, messages, stream, breakpoints > 0);
+    }
+}
@@ -0,0 +1,30 @@
+package com.frida.productsdemo.services.frida;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an LLM call is not attempted or is given up on: the model's
+ * bulkhead is full, its circuit breaker is open, or the retries ran out.
+ * Callers should answer 503 and may suggest retrying after {@link #getRetryAfter()}.
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String model;
+    private final Duration retryAfter;
+
+    public LlmUnavailableException(String model, String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.model = model;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
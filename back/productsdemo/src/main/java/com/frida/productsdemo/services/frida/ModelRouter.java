@@ -0,0 +1,239 @@
+package com.frida.productsdemo.services.frida;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Chooses which models to try, and in which order, for each image analysis.
+ *
+ * The candidates are {@code llm.routing.models}, names from {@link ModelConstants}
+ * listed from cheapest to strongest. The caller tries them in the order
+ * returned by {@link #plan()} and moves on to the next one when a model is
+ * unavailable or its answer does not pass validation, so cheap models serve
+ * most requests and stronger ones only see the hard cases.
+ *
+ * Policies:
+ * - ORDERED: the configured order.
+ * - FASTEST: healthy models by recent latency, fastest first.
+ *
+ * A model is demoted to the end of the plan while its circuit breaker is open,
+ * its recent success rate (valid answers) drops below {@code min-success-rate},
+ * or its recent latency exceeds {@code slow-threshold}. Every
+ * {@code probe-interval} a demoted model gets one request back in its normal
+ * place so it can recover.
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    /** Weight of the latest call in the moving averages. */
+    private static final double ALPHA = 0.2;
+
+    public enum Policy { ORDERED, FASTEST }
+
+    @Autowired
+    private ResilientLlmClient llmClient;
+
+    @Value("${llm.routing.models:" + ModelConstants.CLAUDE_4_SONNET + "}")
+    private List<String> models;
+
+    @Value("${llm.routing.policy:ORDERED}")
+    private Policy policy;
+
+    @Value("${llm.routing.slow-threshold:PT20S}")
+    private Duration slowThreshold;
+
+    @Value("${llm.routing.min-success-rate:0.5}")
+    private double minSuccessRate;
+
+    @Value("${llm.routing.min-samples:5}")
+    private int minSamples;
+
+    @Value("${llm.routing.probe-interval:PT1M}")
+    private Duration probeInterval;
+
+    private final Map<String, ModelStats> stats = new LinkedHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    private static final class ModelStats {
+        long answered;
+        long valid;
+        long invalid;
+        long errors;
+        double latencyMillis;
+        double successRate = 1.0;
+        long samples;
+        long lastTried = System.nanoTime();
+    }
+
+    @PostConstruct
+    void init() {
+        models = models.stream().map(String::trim).filter(m -> !m.isEmpty()).distinct().toList();
+        if (models.isEmpty()) {
+            throw new IllegalStateException("llm.routing.models must list at least one model");
+        }
+        Set<String> known = knownModels();
+        for (String model : models) {
+            if (!known.contains(model)) {
+                log.warn("Model {} in llm.routing.models is not declared in ModelConstants", model);
+            }
+            stats.put(model, new ModelStats());
+        }
+        log.info("LLM routing: {} over {}", policy, models);
+    }
+
+    /**
+     * Returns the models to try for one request, best candidate first.
+     * Every configured model is included; unhealthy ones go last.
+     */
+    public List<String> plan() {
+        requests.incrementAndGet();
+        long now = System.nanoTime();
+        List<String> healthy = new ArrayList<>(models.size());
+        List<String> demoted = new ArrayList<>();
+        Map<String, Double> latency = new LinkedHashMap<>();
+        synchronized (stats) {
+            for (String model : models) {
+                ModelStats s = stats.get(model);
+                latency.put(model, s.samples == 0 ? 0.0 : s.latencyMillis);
+                if (isHealthy(model, s)) {
+                    healthy.add(model);
+                } else if (now - s.lastTried >= probeInterval.toNanos() && !llmClient.isCircuitOpen(model)) {
+                    // Probe: let this request try it in its usual place
+                    s.lastTried = now;
+                    healthy.add(model);
+                } else {
+                    demoted.add(model);
+                }
+            }
+        }
+        if (policy == Policy.FASTEST) {
+            healthy.sort(Comparator.comparingDouble(latency::get));
+        }
+        healthy.addAll(demoted);
+        return healthy;
+    }
+
+    /**
+     * Identifies the set of candidate models, for cache keys that must not
+     * depend on which of them finally answered.
+     */
+    public String cacheScope() {
+        return String.join(",", models);
+    }
+
+    /** The model answered with a product that passed validation. */
+    public void recordValid(String model, long latencyMillis) {
+        record(model, latencyMillis, true);
+    }
+
+    /** The model answered, but the product could not be parsed or failed validation. */
+    public void recordInvalid(String model, long latencyMillis) {
+        record(model, latencyMillis, false);
+    }
+
+    /** The call did not get an answer (rejected, circuit open, retries exhausted or 4xx). */
+    public void recordError(String model) {
+        synchronized (stats) {
+            ModelStats s = stats.get(model);
+            if (s == null) {
+                return;
+            }
+            s.errors++;
+            s.lastTried = System.nanoTime();
+            s.successRate = s.samples == 0 ? 0.0 : (1 - ALPHA) * s.successRate;
+            s.samples++;
+        }
+    }
+
+    /**
+     * Returns the routing settings and, per model, its outcome counters,
+     * moving averages and health.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("policy", policy);
+        result.put("models", models);
+        result.put("requests", requests.get());
+        Map<String, Object> perModel = new LinkedHashMap<>();
+        synchronized (stats) {
+            for (String model : models) {
+                ModelStats s = stats.get(model);
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("healthy", isHealthy(model, s));
+                m.put("answered", s.answered);
+                m.put("valid", s.valid);
+                m.put("invalid", s.invalid);
+                m.put("errors", s.errors);
+                m.put("successRate", s.successRate);
+                m.put("avgLatencyMillis", Math.round(s.latencyMillis));
+                perModel.put(model, m);
+            }
+        }
+        result.put("perModel", perModel);
+        return result;
+    }
+
+    private void record(String model, long latencyMillis, boolean valid) {
+        synchronized (stats) {
+            ModelStats s = stats.get(model);
+            if (s == null) {
+                return;
+            }
+            s.answered++;
+            if (valid) {
+                s.valid++;
+            } else {
+                s.invalid++;
+            }
+            s.lastTried = System.nanoTime();
+            double outcome = valid ? 1.0 : 0.0;
+            boolean first = s.samples == 0;
+            s.successRate = first ? outcome : ALPHA * outcome + (1 - ALPHA) * s.successRate;
+            s.latencyMillis = s.answered == 1 ? latencyMillis : ALPHA * latencyMillis + (1 - ALPHA) * s.latencyMillis;
+            s.samples++;
+        }
+    }
+
+    private boolean isHealthy(String model, ModelStats s) {
+        if (llmClient.isCircuitOpen(model)) {
+            return false;
+        }
+        if (s.samples < minSamples) {
+            return true;
+        }
+        return s.successRate >= minSuccessRate && s.latencyMillis <= slowThreshold.toMillis();
+    }
+
+    private static Set<String> knownModels() {
+        Set<String> known = new HashSet<>();
+        for (Field field : ModelConstants.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    known.add((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    // Not a public constant
+                }
+            }
+        }
+        return known;
+    }
+}
@@ -0,0 +1,495 @@
+package com.frida.productsdemo.services.frida;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import com.frida.productsdemo.models.LLmUsage;
+import com.frida.productsdemo.models.LlmRequest;
+import com.frida.productsdemo.models.LlmResponse;
+import com.frida.productsdemo.services.FridaLlmService;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Resilience layer in front of {@link FridaLlmService}.
+ *
+ * Every model gets its own guard:
+ * - Bulkhead: at most {@code llm.resilience.bulkhead.max-concurrent} calls in
+ *   flight (overridable per model with {@code llm.resilience.bulkhead.models.<model>});
+ *   a caller waits up to {@code max-wait} for a slot and is then rejected, so a
+ *   slow model cannot tie up every request thread. The slot is taken for each
+ *   attempt and given back during the retry backoff, so sleeping callers do
+ *   not hold capacity that others could use.
+ * - Retries: 429, 5xx and I/O errors are retried up to {@code max-attempts}
+ *   with exponential backoff and full jitter, honouring Retry-After.
+ * - Circuit breaker: see {@link LlmCircuitBreaker}; while open, calls fail
+ *   immediately without touching the network.
+ * - Hedging (optional): if the answer takes longer than the model's recent
+ *   p95 latency, a second identical request is sent and the first answer wins.
+ *   It costs tokens, so it is off by default.
+ *
+ * Calls that are not attempted or are given up on end in {@link LlmUnavailableException}.
+ * Latency, outcome and tokens of every call go to {@link LlmMetrics}.
+ */
+@Service
+public class ResilientLlmClient {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientLlmClient.class);
+
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    @Autowired
+    private FridaLlmService fridaService;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private LlmMetrics metrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${llm.resilience.bulkhead.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${llm.resilience.bulkhead.max-wait:PT2S}")
+    private Duration maxWait;
+
+    @Value("${llm.resilience.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${llm.resilience.retry.base-delay:PT0.5S}")
+    private Duration baseDelay;
+
+    @Value("${llm.resilience.retry.max-delay:PT10S}")
+    private Duration maxDelay;
+
+    @Value("${llm.resilience.breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${llm.resilience.breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${llm.resilience.breaker.failure-rate:0.5}")
+    private double failureRate;
+
+    @Value("${llm.resilience.breaker.open-duration:PT30S}")
+    private Duration openDuration;
+
+    @Value("${llm.resilience.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${llm.resilience.hedge.delay:PT10S}")
+    private Duration hedgeDelay;
+
+    @Value("${llm.resilience.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    private final Map<String, ModelGuard> guards = new ConcurrentHashMap<>();
+
+    private ExecutorService hedgeExecutor;
+
+    private final class ModelGuard {
+        final String model;
+        final int permits;
+        final Semaphore bulkhead;
+        final LlmCircuitBreaker breaker;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong shortCircuited = new AtomicLong();
+        final AtomicLong hedges = new AtomicLong();
+        final AtomicLong hedgeWins = new AtomicLong();
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int latencyCount;
+        private int latencyNext;
+
+        ModelGuard(String model) {
+            this.model = model;
+            this.permits = Math.max(1, environment.getProperty(
+                    "llm.resilience.bulkhead.models." + model, Integer.class, maxConcurrent));
+            this.bulkhead = new Semaphore(permits, true);
+            this.breaker = new LlmCircuitBreaker(windowSize, minimumCalls, failureRate, openDuration);
+            bind("llm.resilience.retries", retries, "Attempts repeated after a 429, 5xx or I/O error");
+            bind("llm.resilience.rejected", rejected, "Calls rejected because the bulkhead was full");
+            bind("llm.resilience.short.circuited", shortCircuited, "Calls rejected while the circuit breaker was open");
+            bind("llm.resilience.hedges", hedges, "Hedged requests sent");
+            Gauge.builder("llm.resilience.in.flight", bulkhead, b -> permits - b.availablePermits())
+                    .description("LLM calls holding a bulkhead slot")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            Gauge.builder("llm.resilience.circuit.open", breaker, b -> b.getState() == LlmCircuitBreaker.State.OPEN ? 1 : 0)
+                    .description("1 while the circuit breaker rejects calls")
+                    .tag("model", model)
+                    .register(meterRegistry);
+        }
+
+        private void bind(String name, AtomicLong counter, String description) {
+            FunctionCounter.builder(name, counter, AtomicLong::get)
+                    .description(description)
+                    .tag("model", model)
+                    .register(meterRegistry);
+        }
+
+        synchronized void recordLatency(long millis) {
+            latencies[latencyNext] = millis;
+            latencyNext = (latencyNext + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        }
+
+        synchronized long latencyPercentile(double percentile) {
+            if (latencyCount == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+        }
+
+        /** Recent p-th latency once there are enough samples, the configured delay until then. */
+        synchronized Duration hedgeAfter() {
+            if (hedgePercentile <= 0 || latencyCount < MIN_LATENCY_SAMPLES) {
+                return hedgeDelay;
+            }
+            return Duration.ofMillis(latencyPercentile(hedgePercentile));
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (hedgeEnabled) {
+            AtomicInteger threads = new AtomicInteger();
+            // Unbounded, but in-flight calls are already capped by the bulkheads
+            hedgeExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "llm-hedge-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a chat completion through the model's bulkhead, retries and
+     * circuit breaker, hedging it if enabled.
+     *
+     * @param request Chat completion request payload
+     * @return Chat completion response
+     * @throws LlmUnavailableException if the call was rejected or every attempt failed
+     * @throws RestClientResponseException for 4xx answers other than 429, which are not retried
+     */
+    public LlmResponse call(LlmRequest request) {
+        ModelGuard guard = guard(request.getModel());
+        return metered(guard, LlmMetrics.ENDPOINT_COMPLETIONS, () -> withRetries(guard, () -> hedgeEnabled
+                ? hedged(guard, request)
+                : timed(guard, () -> fridaService.callChatCompletion(request)), () -> true),
+                LlmResponse::getUsage);
+    }
+
+    /**
+     * Streams a chat completion through the model's bulkhead, retries and
+     * circuit breaker. A failed attempt is only retried if no delta has been
+     * delivered yet, since the consumer cannot take the text back.
+     *
+     * @param request Chat completion request payload
+     * @param onDelta Receives every text fragment of the completion, in order
+     * @return Token usage reported in the final chunk, or null if the server sent none
+     * @throws LlmUnavailableException if the call was rejected or every attempt failed
+     */
+    public LLmUsage stream(LlmRequest request, Consumer<String> onDelta) {
+        ModelGuard guard = guard(request.getModel());
+        AtomicBoolean started = new AtomicBoolean();
+        Consumer<String> tracking = delta -> {
+            started.set(true);
+            onDelta.accept(delta);
+        };
+        return metered(guard, LlmMetrics.ENDPOINT_STREAM, () -> withRetries(guard,
+                () -> timed(guard, () -> fridaService.streamChatCompletion(request, tracking)),
+                () -> !started.get()), usage -> usage);
+    }
+
+    /**
+     * Whether calls to the model are currently rejected by its circuit breaker.
+     */
+    public boolean isCircuitOpen(String model) {
+        ModelGuard guard = guards.get(model);
+        return guard != null && guard.breaker.getState() == LlmCircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * Returns the state of every model guard used so far.
+     *
+     * @return Settings plus, per model, breaker state, in-flight calls, outcome counters and latency percentiles
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("bulkheadMaxWaitMillis", maxWait.toMillis());
+        stats.put("breakerOpenMillis", openDuration.toMillis());
+        stats.put("hedgeEnabled", hedgeEnabled);
+        Map<String, Object> models = new TreeMap<>();
+        for (ModelGuard guard : guards.values()) {
+            Map<String, Object> model = new LinkedHashMap<>();
+            model.put("state", guard.breaker.getState());
+            model.put("failureRate", guard.breaker.getFailureRate());
+            model.put("timesOpened", guard.breaker.getOpenedCount());
+            model.put("maxConcurrent", guard.permits);
+            model.put("inFlight", guard.permits - guard.bulkhead.availablePermits());
+            model.put("waiting", guard.bulkhead.getQueueLength());
+            model.put("calls", guard.calls.get());
+            model.put("successes", guard.successes.get());
+            model.put("failures", guard.failures.get());
+            model.put("retries", guard.retries.get());
+            model.put("rejected", guard.rejected.get());
+            model.put("shortCircuited", guard.shortCircuited.get());
+            model.put("hedges", guard.hedges.get());
+            model.put("hedgeWins", guard.hedgeWins.get());
+            model.put("p50Millis", guard.latencyPercentile(0.5));
+            model.put("p95Millis", guard.latencyPercentile(0.95));
+            models.put(guard.model, model);
+        }
+        stats.put("models", models);
+        return stats;
+    }
+
+    /**
+     * Runs a call and records its duration, outcome and token usage in
+     * {@link LlmMetrics}.
+     */
+    private <T> T metered(ModelGuard guard, String endpoint, Supplier<T> call, Function<T, LLmUsage> usage) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            if (result != null) {
+                metrics.recordUsage(guard.model, endpoint, usage.apply(result));
+            }
+            return result;
+        } catch (LlmUnavailableException e) {
+            outcome = "unavailable";
+            throw e;
+        } catch (RestClientResponseException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            metrics.recordCall(guard.model, endpoint, outcome, System.nanoTime() - start);
+        }
+    }
+
+    private ModelGuard guard(String model) {
+        return guards.computeIfAbsent(model == null ? "default" : model, ModelGuard::new);
+    }
+
+    private void acquire(ModelGuard guard) {
+        try {
+            if (guard.bulkhead.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        guard.rejected.incrementAndGet();
+        throw new LlmUnavailableException(guard.model,
+                "Too many concurrent calls to model " + guard.model, Duration.ofSeconds(1), null);
+    }
+
+    private <T> T withRetries(ModelGuard guard, Supplier<T> attempt, BooleanSupplier retryable) {
+        RuntimeException last = null;
+        for (int i = 1; ; i++) {
+            if (!guard.breaker.tryAcquire()) {
+                guard.shortCircuited.incrementAndGet();
+                Duration remaining = guard.breaker.getRemainingOpen();
+                throw new LlmUnavailableException(guard.model, "Circuit breaker open for model " + guard.model,
+                        remaining.isZero() ? Duration.ofSeconds(1) : remaining, last);
+            }
+            try {
+                acquire(guard);
+            } catch (LlmUnavailableException e) {
+                guard.breaker.onIgnored();
+                throw e;
+            }
+            guard.calls.incrementAndGet();
+            try {
+                T result = attempt.get();
+                guard.breaker.onSuccess();
+                guard.successes.incrementAndGet();
+                return result;
+            } catch (RuntimeException e) {
+                if (!isModelFailure(e)) {
+                    // A 4xx means the model is up and rejected this request; anything else is ours
+                    if (e instanceof RestClientResponseException) {
+                        guard.breaker.onSuccess();
+                    } else {
+                        guard.breaker.onIgnored();
+                    }
+                    throw e;
+                }
+                guard.breaker.onFailure();
+                guard.failures.incrementAndGet();
+                last = e;
+            } finally {
+                // Released before the backoff below; the next attempt queues for a slot again
+                guard.bulkhead.release();
+            }
+            if (i >= maxAttempts || !retryable.getAsBoolean()) {
+                break;
+            }
+            Duration delay = backoff(i, last);
+            log.debug("LLM call to {} failed ({}), retrying in {} ms", guard.model, last.getMessage(), delay.toMillis());
+            guard.retries.incrementAndGet();
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new LlmUnavailableException(guard.model, "LLM call to " + guard.model + " failed: " + last.getMessage(),
+                retryAfter(last).orElse(Duration.ofSeconds(1)), last);
+    }
+
+    private LlmResponse hedged(ModelGuard guard, LlmRequest request) {
+        CompletableFuture<LlmResponse> primary = CompletableFuture.supplyAsync(
+                () -> timed(guard, () -> fridaService.callChatCompletion(request)), hedgeExecutor);
+        try {
+            return primary.get(guard.hedgeAfter().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Slower than usual: hedge below
+        } catch (Exception e) {
+            return rethrow(e, guard);
+        }
+        // The hedge needs its own slot; if the model is saturated, just wait for the first request
+        if (!guard.bulkhead.tryAcquire()) {
+            return await(primary, guard);
+        }
+        guard.hedges.incrementAndGet();
+        CompletableFuture<LlmResponse> hedge = CompletableFuture.supplyAsync(
+                () -> timed(guard, () -> fridaService.callChatCompletion(request)), hedgeExecutor);
+        hedge.whenComplete((r, t) -> guard.bulkhead.release());
+
+        CompletableFuture<LlmResponse> first = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        primary.whenComplete((r, t) -> {
+            if (t == null) {
+                first.complete(r);
+            } else if (failed.incrementAndGet() == 2) {
+                first.completeExceptionally(t);
+            }
+        });
+        hedge.whenComplete((r, t) -> {
+            if (t == null) {
+                if (first.complete(r)) {
+                    guard.hedgeWins.incrementAndGet();
+                }
+            } else if (failed.incrementAndGet() == 2) {
+                first.completeExceptionally(t);
+            }
+        });
+        return await(first, guard);
+    }
+
+    private static <T> T await(CompletableFuture<T> future, ModelGuard guard) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            return rethrow(e, guard);
+        }
+    }
+
+    private static <T> T rethrow(Exception e, ModelGuard guard) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            throw new LlmUnavailableException(guard.model, "Interrupted while waiting for " + guard.model,
+                    Duration.ofSeconds(1), e);
+        }
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    private static <T> T timed(ModelGuard guard, Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = call.get();
+        guard.recordLatency((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /** Throttling, server errors and I/O problems (including timeouts) say the model is unhealthy. */
+    private static boolean isModelFailure(RuntimeException e) {
+        if (e instanceof RestClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof ResourceAccessException;
+    }
+
+    private Duration backoff(int attempt, RuntimeException failure) {
+        Duration hinted = retryAfter(failure).orElse(null);
+        if (hinted != null) {
+            return hinted.compareTo(maxDelay) > 0 ? maxDelay : hinted;
+        }
+        long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private static Optional<Duration> retryAfter(RuntimeException failure) {
+        if (failure instanceof RestClientResponseException response && response.getResponseHeaders() != null) {
+            String value = response.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+            if (value != null) {
+                try {
+                    return Optional.of(Duration.ofSeconds(Long.parseLong(value.trim())));
+                } catch (NumberFormatException e) {
+                    // HTTP-date form: fall back to the computed backoff
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
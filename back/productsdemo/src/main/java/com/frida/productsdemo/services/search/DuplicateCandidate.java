@@ -0,0 +1,6 @@
+package com.frida.productsdemo.services.search;
+
+/**
+ * Posible duplicado: ID del producto existente y su similitud coseno (0 a 1).
+ */
+public record DuplicateCandidate(long id, double similarity) {}
@@ -0,0 +1,430 @@
+package com.frida.productsdemo.services.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Grafo HNSW (Hierarchical Navigable Small World) para buscar los vectores
+ * más parecidos de {@link ProductEmbedder} sin recorrer todo el catálogo.
+ *
+ * Cada nodo se enlaza con sus {@code m} vecinos más cercanos (el doble en la
+ * capa 0) en varias capas de densidad decreciente; una búsqueda baja por las
+ * capas de forma voraz y explora la capa 0 con una lista de {@code ef}
+ * candidatos. La similitud es el producto escalar de los vectores cuantizados.
+ *
+ * Casi todo el tiempo se va en leer vectores y enlaces de nodos dispersos, así
+ * que los vectores y los enlaces de la capa 0 se guardan en arrays contiguos
+ * indexados por nodo, en lugar de un objeto por nodo; solo los pocos nodos de
+ * las capas superiores tienen arrays propios.
+ *
+ * Los borrados dejan el nodo en el grafo como lápida, para no romper caminos,
+ * y se excluyen de los resultados; una actualización es un borrado más un alta.
+ * Quien lo use debe reconstruirlo cuando las lápidas pesen demasiado
+ * ({@link #deletedCount()}).
+ *
+ * No es seguro para hilos: admite lecturas concurrentes solo si nadie escribe.
+ */
+final class HnswIndex {
+
+	/** Vecino encontrado: ID externo y similitud (producto escalar). */
+	record Neighbor(long id, int similarity) {}
+
+	private static final int DIMENSIONS = ProductEmbedder.DIMENSIONS;
+
+	private final int m;
+	private final int maxLinks0;
+	private final int efConstruction;
+	private final double levelFactor;
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private int nodeCount;
+	private long[] ids;
+	/** Vector del nodo n en [n * DIMENSIONS, (n + 1) * DIMENSIONS). */
+	private byte[] vectors;
+	/** Enlaces de la capa 0 del nodo n a partir de n * maxLinks0, con su similitud en similarities0. */
+	private int[] links0;
+	private int[] similarities0;
+	private int[] linkCounts0;
+	/** Enlaces de las capas 1 en adelante; null para los nodos que solo están en la capa 0. */
+	private UpperLinks[] upper;
+	private final BitSet deletedNodes = new BitSet();
+
+	private final Map<Long, Integer> nodeById = new HashMap<>();
+	private int entryPoint = -1;
+	private int maxLevel = -1;
+	private int deleted;
+
+	private static final class UpperLinks {
+		final int[][] links;
+		final int[][] similarities;
+		final int[] counts;
+
+		UpperLinks(int levels, int m) {
+			links = new int[levels][m];
+			similarities = new int[levels][m];
+			counts = new int[levels];
+		}
+	}
+
+	HnswIndex(int m, int efConstruction) {
+		this.m = m;
+		this.maxLinks0 = 2 * m;
+		this.efConstruction = efConstruction;
+		this.levelFactor = 1 / Math.log(m);
+		allocate(1024);
+	}
+
+	int size() {
+		return nodeById.size();
+	}
+
+	int deletedCount() {
+		return deleted;
+	}
+
+	/**
+	 * Añade o sustituye el vector de un ID. Si el vector no ha cambiado (por
+	 * ejemplo, solo ha cambiado el stock) no se toca el grafo.
+	 */
+	void add(long id, byte[] vector) {
+		Integer existing = nodeById.get(id);
+		if (existing != null && Arrays.equals(vectors, existing * DIMENSIONS, (existing + 1) * DIMENSIONS, vector, 0, DIMENSIONS)) {
+			return;
+		}
+		remove(id);
+		int level = (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelFactor);
+		if (nodeCount == ids.length) {
+			allocate(nodeCount * 2);
+		}
+		int node = nodeCount++;
+		ids[node] = id;
+		System.arraycopy(vector, 0, vectors, node * DIMENSIONS, DIMENSIONS);
+		if (level > 0) {
+			upper[node] = new UpperLinks(level, m);
+		}
+		nodeById.put(id, node);
+
+		if (entryPoint < 0) {
+			entryPoint = node;
+			maxLevel = level;
+			return;
+		}
+
+		int current = entryPoint;
+		for (int l = maxLevel; l > level; l--) {
+			current = greedy(vector, current, l);
+		}
+		for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+			long[] candidates = searchLayer(vector, current, efConstruction, l);
+			for (long selected : selectNeighbors(candidates, l == 0 ? maxLinks0 : m)) {
+				link(node, nodeOf(selected), similarityOf(selected), l);
+				link(nodeOf(selected), node, similarityOf(selected), l);
+			}
+			current = nodeOf(candidates[0]);
+		}
+		if (level > maxLevel) {
+			maxLevel = level;
+			entryPoint = node;
+		}
+	}
+
+	/**
+	 * Marca como borrado el vector de un ID.
+	 */
+	void remove(long id) {
+		Integer node = nodeById.remove(id);
+		if (node != null) {
+			deletedNodes.set(node);
+			deleted++;
+		}
+	}
+
+	/**
+	 * Busca los {@code k} vectores vivos más parecidos.
+	 *
+	 * @param ef Tamaño de la lista de candidatos (más alto, más exacto y más lento)
+	 * @return Vecinos ordenados por similitud descendente
+	 */
+	List<Neighbor> search(byte[] query, int k, int ef) {
+		if (entryPoint < 0 || k <= 0) {
+			return List.of();
+		}
+		int current = entryPoint;
+		for (int l = maxLevel; l > 0; l--) {
+			current = greedy(query, current, l);
+		}
+		long[] candidates = searchLayer(query, current, Math.max(ef, k), 0);
+		List<Neighbor> result = new ArrayList<>(k);
+		for (long candidate : candidates) {
+			int node = nodeOf(candidate);
+			if (!deletedNodes.get(node)) {
+				result.add(new Neighbor(ids[node], similarityOf(candidate)));
+				if (result.size() == k) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private int greedy(byte[] query, int start, int level) {
+		int current = start;
+		int best = similarity(query, current);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			UpperLinks links = upper[current];
+			for (int i = 0; i < links.counts[level - 1]; i++) {
+				int candidate = links.links[level - 1][i];
+				int similarity = similarity(query, candidate);
+				if (similarity > best) {
+					best = similarity;
+					current = candidate;
+					improved = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Búsqueda en una capa con {@code ef} candidatos.
+	 *
+	 * @return Candidatos codificados con {@link #encode}, de más a menos parecido
+	 */
+	private long[] searchLayer(byte[] query, int start, int ef, int level) {
+		BitSet visited = new BitSet(nodeCount);
+		visited.set(start);
+		long first = encode(similarity(query, start), start);
+		// Frontera: se expande primero el más parecido
+		LongHeap frontier = new LongHeap(ef * 2, true);
+		// Resultados: en la cima el peor, para sustituirlo
+		LongHeap results = new LongHeap(ef + 1, false);
+		frontier.push(first);
+		results.push(first);
+
+		while (frontier.size() > 0) {
+			long closest = frontier.pop();
+			if (results.size() >= ef && similarityOf(closest) < similarityOf(results.peek())) {
+				break;
+			}
+			int node = nodeOf(closest);
+			int[] links;
+			int base;
+			int count;
+			if (level == 0) {
+				links = links0;
+				base = node * maxLinks0;
+				count = linkCounts0[node];
+			} else {
+				links = upper[node].links[level - 1];
+				base = 0;
+				count = upper[node].counts[level - 1];
+			}
+			for (int i = base; i < base + count; i++) {
+				int neighbor = links[i];
+				if (visited.get(neighbor)) {
+					continue;
+				}
+				visited.set(neighbor);
+				int similarity = similarity(query, neighbor);
+				if (results.size() < ef || similarity > similarityOf(results.peek())) {
+					long encoded = encode(similarity, neighbor);
+					frontier.push(encoded);
+					results.push(encoded);
+					if (results.size() > ef) {
+						results.pop();
+					}
+				}
+			}
+		}
+		long[] sorted = results.toArray();
+		Arrays.sort(sorted);
+		// Orden ascendente de la codificación = menos parecido primero: se invierte
+		for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+			long swap = sorted[i];
+			sorted[i] = sorted[j];
+			sorted[j] = swap;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Heurística de selección de HNSW: un candidato entra si se parece más al
+	 * nuevo nodo que a cualquiera de los ya elegidos, lo que reparte los
+	 * enlaces en distintas direcciones en lugar de concentrarlos en un grupo.
+	 */
+	private long[] selectNeighbors(long[] candidates, int max) {
+		long[] selected = new long[Math.min(max, candidates.length)];
+		int count = 0;
+		for (long candidate : candidates) {
+			if (count == selected.length) {
+				break;
+			}
+			int offset = nodeOf(candidate) * DIMENSIONS;
+			boolean diverse = true;
+			for (int i = 0; i < count; i++) {
+				if (ProductEmbedder.dot(vectors, offset, vectors, nodeOf(selected[i]) * DIMENSIONS) > similarityOf(candidate)) {
+					diverse = false;
+					break;
+				}
+			}
+			if (diverse) {
+				selected[count++] = candidate;
+			}
+		}
+		return Arrays.copyOf(selected, count);
+	}
+
+	private void link(int from, int to, int similarity, int level) {
+		int[] links;
+		int[] similarities;
+		int base;
+		int capacity;
+		int count;
+		if (level == 0) {
+			links = links0;
+			similarities = similarities0;
+			base = from * maxLinks0;
+			capacity = maxLinks0;
+			count = linkCounts0[from];
+		} else {
+			links = upper[from].links[level - 1];
+			similarities = upper[from].similarities[level - 1];
+			base = 0;
+			capacity = m;
+			count = upper[from].counts[level - 1];
+		}
+		if (count < capacity) {
+			links[base + count] = to;
+			similarities[base + count] = similarity;
+			if (level == 0) {
+				linkCounts0[from] = count + 1;
+			} else {
+				upper[from].counts[level - 1] = count + 1;
+			}
+			return;
+		}
+		// Lleno: el nuevo sustituye al enlace menos parecido si lo mejora
+		int worst = base;
+		for (int i = base + 1; i < base + count; i++) {
+			if (similarities[i] < similarities[worst]) {
+				worst = i;
+			}
+		}
+		if (similarity > similarities[worst]) {
+			links[worst] = to;
+			similarities[worst] = similarity;
+		}
+	}
+
+	private int similarity(byte[] query, int node) {
+		return ProductEmbedder.dot(query, 0, vectors, node * DIMENSIONS);
+	}
+
+	private void allocate(int capacity) {
+		if (ids == null) {
+			ids = new long[capacity];
+			vectors = new byte[capacity * DIMENSIONS];
+			links0 = new int[capacity * maxLinks0];
+			similarities0 = new int[capacity * maxLinks0];
+			linkCounts0 = new int[capacity];
+			upper = new UpperLinks[capacity];
+			return;
+		}
+		ids = Arrays.copyOf(ids, capacity);
+		vectors = Arrays.copyOf(vectors, capacity * DIMENSIONS);
+		links0 = Arrays.copyOf(links0, capacity * maxLinks0);
+		similarities0 = Arrays.copyOf(similarities0, capacity * maxLinks0);
+		linkCounts0 = Arrays.copyOf(linkCounts0, capacity);
+		upper = Arrays.copyOf(upper, capacity);
+	}
+
+	/** Similitud en los 32 bits altos y nodo en los bajos: ordenar el long ordena por similitud. */
+	private static long encode(int similarity, int node) {
+		return ((long) similarity << 32) | (node & 0xFFFFFFFFL);
+	}
+
+	private static int similarityOf(long encoded) {
+		return (int) (encoded >> 32);
+	}
+
+	private static int nodeOf(long encoded) {
+		return (int) encoded;
+	}
+
+	/**
+	 * Montículo binario de longs sin boxing.
+	 */
+	private static final class LongHeap {
+		private long[] items;
+		private int size;
+		private final boolean max;
+
+		LongHeap(int capacity, boolean max) {
+			this.items = new long[Math.max(capacity, 4)];
+			this.max = max;
+		}
+
+		int size() {
+			return size;
+		}
+
+		long peek() {
+			return items[0];
+		}
+
+		void push(long value) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!before(value, items[parent])) {
+					break;
+				}
+				items[i] = items[parent];
+				i = parent;
+			}
+			items[i] = value;
+		}
+
+		long pop() {
+			long top = items[0];
+			long last = items[--size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && before(items[child + 1], items[child])) {
+					child++;
+				}
+				if (!before(items[child], last)) {
+					break;
+				}
+				items[i] = items[child];
+				i = child;
+			}
+			if (size > 0) {
+				items[i] = last;
+			}
+			return top;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(items, size);
+		}
+
+		private boolean before(long a, long b) {
+			return max ? a > b : a < b;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package com.frida.productsdemo.services.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.frida.productsdemo.models.DuplicateMatch;
+import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.services.ProductChangeEvent;
+import com.frida.productsdemo.services.ProductService;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Detección de productos casi duplicados antes de darlos de alta.
+ *
+ * Cada producto se representa con el vector de {@link ProductEmbedder}
+ * (nombre, marca y descripción) dentro de un grafo {@link HnswIndex}, de modo
+ * que encontrar los más parecidos a un producto nuevo cuesta unas decenas de
+ * comparaciones en lugar de recorrer el catálogo. Se consideran duplicados
+ * probables los que superan {@code products.dedup.threshold} de similitud
+ * coseno, aunque tengan otra referencia.
+ *
+ * El grafo se construye desde la base de datos al arrancar, en segundo plano
+ * (hasta que termina las consultas no devuelven nada), y se mantiene con los
+ * {@link ProductChangeEvent} confirmados; los que llegan durante una
+ * construcción se aplican al terminarla. Insertar en el grafo cuesta bastante
+ * más que una consulta, así que los cambios se aplican en un hilo propio, en
+ * orden, sin retrasar la transacción que los produjo ni bloquear las consultas
+ * más que lo que tarda cada producto. Cuando los borrados y modificaciones
+ * acumulados superan a los productos vivos se reconstruye de nuevo.
+ */
+@Service
+public class ProductDuplicateDetector implements ApplicationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(ProductDuplicateDetector.class);
+
+	@Autowired
+	private ProductService productService;
+
+	@Value("${products.dedup.enabled:true}")
+	private boolean enabled;
+
+	@Value("${products.dedup.threshold:0.85}")
+	private double threshold;
+
+	@Value("${products.dedup.max-candidates:5}")
+	private int maxCandidates;
+
+	@Value("${products.dedup.hnsw.m:16}")
+	private int m;
+
+	@Value("${products.dedup.hnsw.ef-construction:40}")
+	private int efConstruction;
+
+	@Value("${products.dedup.hnsw.ef-search:64}")
+	private int efSearch;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private HnswIndex index;
+	/** Cambios recibidos durante una construcción; null si no hay ninguna en curso. */
+	private List<ProductChangeEvent> pending;
+	private final AtomicBoolean building = new AtomicBoolean();
+	private final ThreadPoolExecutor updates = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(), r -> {
+				Thread t = new Thread(r, "product-dedup-updates");
+				t.setDaemon(true);
+				return t;
+			});
+
+	private volatile long buildMillis;
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong lookupNanos = new AtomicLong();
+	private final AtomicLong flagged = new AtomicLong();
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (enabled) {
+			rebuildAsync();
+		}
+	}
+
+	/**
+	 * Lanza la reconstrucción del grafo en un hilo aparte, salvo que ya haya una en curso.
+	 */
+	public void rebuildAsync() {
+		if (!building.compareAndSet(false, true)) {
+			return;
+		}
+		Thread thread = new Thread(this::rebuild, "product-dedup-index");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void rebuild() {
+		long start = System.nanoTime();
+		try {
+			lock.writeLock().lock();
+			try {
+				pending = new ArrayList<>();
+			} finally {
+				lock.writeLock().unlock();
+			}
+
+			HnswIndex fresh = new HnswIndex(m, efConstruction);
+			productService.streamAllProducts(product -> {
+				byte[] vector = ProductEmbedder.embed(product);
+				if (vector != null) {
+					fresh.add(product.getId(), vector);
+				}
+			});
+
+			lock.writeLock().lock();
+			try {
+				for (ProductChangeEvent event : pending) {
+					apply(fresh, event);
+				}
+				pending = null;
+				index = fresh;
+			} finally {
+				lock.writeLock().unlock();
+			}
+			buildMillis = (System.nanoTime() - start) / 1_000_000;
+			log.info("Índice de duplicados construido: {} productos en {} ms", fresh.size(), buildMillis);
+		} catch (RuntimeException e) {
+			log.warn("No se pudo construir el índice de duplicados: {}", e.getMessage());
+			lock.writeLock().lock();
+			try {
+				pending = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} finally {
+			building.set(false);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		updates.shutdownNow();
+	}
+
+	/**
+	 * Encola los cambios ya confirmados en base de datos para aplicarlos al grafo.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChange(ProductChangeEvent event) {
+		if (enabled) {
+			updates.execute(() -> applyChange(event));
+		}
+	}
+
+	private void applyChange(ProductChangeEvent event) {
+		lock.writeLock().lock();
+		try {
+			if (pending != null) {
+				pending.add(event);
+			}
+			if (index == null) {
+				return;
+			}
+			for (Long id : event.deleted()) {
+				index.remove(id);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		// Un producto por bloqueo, para que un lote grande no frene las consultas
+		for (Product product : event.saved()) {
+			if (product.getId() == null) {
+				continue;
+			}
+			byte[] vector = ProductEmbedder.embed(product);
+			lock.writeLock().lock();
+			try {
+				if (vector == null) {
+					index.remove(product.getId());
+				} else {
+					index.add(product.getId(), vector);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		boolean compact;
+		lock.readLock().lock();
+		try {
+			compact = index.deletedCount() > Math.max(1000, index.size());
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (compact) {
+			rebuildAsync();
+		}
+	}
+
+	/**
+	 * Busca productos ya existentes que probablemente sean el mismo que {@code product}.
+	 *
+	 * @param product Producto a comprobar (no hace falta que tenga ID)
+	 * @return Candidatos por encima del umbral, de más a menos parecido; nunca el propio producto
+	 */
+	public List<DuplicateCandidate> findDuplicates(Product product) {
+		if (!enabled || product == null) {
+			return List.of();
+		}
+		byte[] vector = ProductEmbedder.embed(product);
+		if (vector == null) {
+			return List.of();
+		}
+		long start = System.nanoTime();
+		List<HnswIndex.Neighbor> neighbors;
+		lock.readLock().lock();
+		try {
+			if (index == null) {
+				return List.of();
+			}
+			neighbors = index.search(vector, maxCandidates + 1, efSearch);
+		} finally {
+			lock.readLock().unlock();
+		}
+		List<DuplicateCandidate> candidates = new ArrayList<>();
+		for (HnswIndex.Neighbor neighbor : neighbors) {
+			double similarity = (double) neighbor.similarity() / ProductEmbedder.SCALE_SQUARED;
+			if (similarity >= threshold && (product.getId() == null || neighbor.id() != product.getId())) {
+				candidates.add(new DuplicateCandidate(neighbor.id(), Math.min(1.0, similarity)));
+			}
+		}
+		if (candidates.size() > maxCandidates) {
+			candidates = candidates.subList(0, maxCandidates);
+		}
+		lookups.incrementAndGet();
+		lookupNanos.addAndGet(System.nanoTime() - start);
+		if (!candidates.isEmpty()) {
+			flagged.incrementAndGet();
+		}
+		return candidates;
+	}
+
+	/**
+	 * Como {@link #findDuplicates(Product)}, pero con los productos cargados de base de datos.
+	 *
+	 * @return Productos existentes parecidos con su similitud, de más a menos parecido
+	 */
+	public List<DuplicateMatch> findMatches(Product product) {
+		List<DuplicateCandidate> candidates = findDuplicates(product);
+		if (candidates.isEmpty()) {
+			return List.of();
+		}
+		Map<Long, Double> similarity = new LinkedHashMap<>();
+		for (DuplicateCandidate candidate : candidates) {
+			similarity.put(candidate.id(), candidate.similarity());
+		}
+		List<DuplicateMatch> matches = new ArrayList<>(candidates.size());
+		for (Product existing : productService.getProductsByIds(new ArrayList<>(similarity.keySet()))) {
+			matches.add(new DuplicateMatch(existing, similarity.get(existing.getId())));
+		}
+		return matches;
+	}
+
+	/**
+	 * Devuelve el tamaño del grafo, el umbral y los tiempos de construcción y consulta.
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled);
+		lock.readLock().lock();
+		try {
+			stats.put("ready", index != null);
+			stats.put("products", index == null ? 0 : index.size());
+			stats.put("tombstones", index == null ? 0 : index.deletedCount());
+		} finally {
+			lock.readLock().unlock();
+		}
+		stats.put("building", building.get());
+		stats.put("pendingUpdates", updates.getQueue().size());
+		stats.put("buildMillis", buildMillis);
+		stats.put("threshold", threshold);
+		long n = lookups.get();
+		stats.put("lookups", n);
+		stats.put("flagged", flagged.get());
+		stats.put("avgLookupMicros", n == 0 ? 0 : lookupNanos.get() / n / 1000);
+		return stats;
+	}
+
+	private static void apply(HnswIndex target, ProductChangeEvent event) {
+		for (Long id : event.deleted()) {
+			target.remove(id);
+		}
+		for (Product product : event.saved()) {
+			if (product.getId() == null) {
+				continue;
+			}
+			byte[] vector = ProductEmbedder.embed(product);
+			if (vector == null) {
+				target.remove(product.getId());
+			} else {
+				target.add(product.getId(), vector);
+			}
+		}
+	}
+}
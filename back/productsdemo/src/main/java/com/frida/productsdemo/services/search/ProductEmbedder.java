@@ -0,0 +1,97 @@
+package com.frida.productsdemo.services.search;
+
+import com.frida.productsdemo.models.Product;
+
+/**
+ * Convierte un producto en un vector denso para detectar duplicados.
+ *
+ * Es un embedding léxico calculado en local, sin llamar a ningún modelo: las
+ * palabras de {@link TextAnalyzer} y sus trigramas de caracteres se proyectan
+ * con hashing firmado sobre {@value #DIMENSIONS} dimensiones, ponderadas por
+ * campo (nombre x3, marca x2, descripción x1). Los trigramas hacen que una
+ * errata, un plural o un orden distinto de palabras apenas cambien el vector.
+ *
+ * El vector se normaliza (norma 1) y se cuantiza a un byte por dimensión, de
+ * modo que el producto escalar entre dos vectores, dividido por
+ * {@link #SCALE_SQUARED}, aproxima su similitud coseno.
+ */
+final class ProductEmbedder {
+
+	static final int DIMENSIONS = 128;
+	static final int SCALE = 127;
+	static final int SCALE_SQUARED = SCALE * SCALE;
+
+	private static final float WEIGHT_NOMBRE = 3f;
+	private static final float WEIGHT_MARCA = 2f;
+	private static final float WEIGHT_DESCRIPCION = 1f;
+	private static final float TRIGRAM_WEIGHT = 0.5f;
+
+	private ProductEmbedder() { /* Previene instanciación */ }
+
+	/**
+	 * @return Vector cuantizado, o null si el producto no tiene texto
+	 */
+	static byte[] embed(Product product) {
+		return embed(product.getNombre(), product.getMarca(), product.getDescripcion());
+	}
+
+	static byte[] embed(String nombre, String marca, String descripcion) {
+		float[] vector = new float[DIMENSIONS];
+		addField(vector, nombre, WEIGHT_NOMBRE);
+		addField(vector, marca, WEIGHT_MARCA);
+		addField(vector, descripcion, WEIGHT_DESCRIPCION);
+
+		double norm = 0;
+		for (float v : vector) {
+			norm += v * v;
+		}
+		if (norm == 0) {
+			return null;
+		}
+		double scale = SCALE / Math.sqrt(norm);
+		byte[] quantized = new byte[DIMENSIONS];
+		for (int i = 0; i < DIMENSIONS; i++) {
+			quantized[i] = (byte) Math.round(vector[i] * scale);
+		}
+		return quantized;
+	}
+
+	/**
+	 * Producto escalar de dos vectores cuantizados.
+	 */
+	static int dot(byte[] a, byte[] b) {
+		return dot(a, 0, b, 0);
+	}
+
+	/**
+	 * Producto escalar de dos vectores guardados a partir de las posiciones indicadas.
+	 */
+	static int dot(byte[] a, int aOffset, byte[] b, int bOffset) {
+		// Cuatro acumuladores independientes: el JIT no vectoriza la reducción
+		// byte a int, pero así solapa las multiplicaciones
+		int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		for (int i = 0; i < DIMENSIONS; i += 4) {
+			s0 += a[aOffset + i] * b[bOffset + i];
+			s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+			s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+			s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+		}
+		return s0 + s1 + s2 + s3;
+	}
+
+	private static void addField(float[] vector, String text, float weight) {
+		for (String token : TextAnalyzer.tokenize(text)) {
+			add(vector, token.hashCode(), weight);
+			String padded = "#" + token + "#";
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				add(vector, padded.substring(i, i + 3).hashCode() * 0x9E3779B1, weight * TRIGRAM_WEIGHT);
+			}
+		}
+	}
+
+	private static void add(float[] vector, int hash, float weight) {
+		int mixed = hash ^ (hash >>> 16);
+		// El bit alto decide el signo para que las colisiones se compensen en media
+		vector[(mixed & 0x7FFFFFFF) % DIMENSIONS] += mixed < 0 ? -weight : weight;
+	}
+}
@@ -0,0 +1,475 @@
+package com.frida.productsdemo.services.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.repository.ProductStore;
+import com.frida.productsdemo.services.CatalogVersionService;
+import com.frida.productsdemo.services.ProductChangeEvent;
+import com.frida.productsdemo.services.ProductService;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Índice invertido en memoria sobre nombre, marca y descripción de los productos.
+ *
+ * Cada término apunta a la lista de productos que lo contienen con su
+ * frecuencia ponderada por campo (nombre x3, marca x2, descripción x1). Las
+ * consultas exigen que aparezcan todas sus palabras, admiten coincidencia por
+ * prefijo y, opcionalmente, aproximada por distancia de edición, y ordenan los
+ * resultados con BM25.
+ *
+ * El índice se actualiza tras confirmarse cada alta, modificación o borrado
+ * ({@link ProductChangeEvent}). Al parar la aplicación se guarda una instantánea
+ * en {@code products.search.snapshot-file} junto con el contador de cambios del
+ * catálogo ({@link CatalogVersionService}); al arrancar se carga solo si el
+ * contador no ha avanzado desde entonces (ninguna escritura, tampoco de otra
+ * instancia ni una modificación que no cambie el número de filas) y, si no,
+ * se reconstruye recorriendo la tabla. La instantánea se borra tras cargarla,
+ * de modo que una parada abrupta fuerza la reconstrucción completa en el
+ * siguiente arranque.
+ */
+@Service
+public class ProductTextIndex implements ApplicationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(ProductTextIndex.class);
+
+	private static final int WEIGHT_NOMBRE = 3;
+	private static final int WEIGHT_MARCA = 2;
+	private static final int WEIGHT_DESCRIPCION = 1;
+
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+	private static final double PREFIX_BOOST = 0.7;
+	private static final double FUZZY_BOOST = 0.5;
+	private static final int MAX_EXPANSIONS = 64;
+
+	private static final int SNAPSHOT_MAGIC = 0x50544958; // "PTIX"
+	private static final int SNAPSHOT_VERSION = 2;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductStore productStore;
+
+	@Autowired
+	private CatalogVersionService catalogVersionService;
+
+	@Value("${products.search.snapshot-file:./database/search-index.snap}")
+	private String snapshotFile;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final NavigableMap<String, Postings> terms = new TreeMap<>();
+	private final Map<Long, Doc> docs = new HashMap<>();
+	private long totalLength;
+	private int generation;
+
+	private volatile String loadedFrom = "none";
+	private volatile long loadMillis;
+	private final AtomicLong queries = new AtomicLong();
+
+	/** Términos de un producto tal y como están en el índice. */
+	private record Doc(String[] terms, int[] tfs, int length, int generation) {}
+
+	/**
+	 * Lista de apariciones de un término. Las entradas de productos borrados o
+	 * reindexados no se quitan al momento: se descartan al leer comparando la
+	 * generación y se compactan cuando superan la mitad de la lista.
+	 */
+	private static final class Postings {
+		long[] ids = new long[4];
+		int[] tfs = new int[4];
+		int[] generations = new int[4];
+		int size;
+		int dead;
+
+		void add(long id, int tf, int gen) {
+			if (size == ids.length) {
+				int capacity = size * 2;
+				ids = Arrays.copyOf(ids, capacity);
+				tfs = Arrays.copyOf(tfs, capacity);
+				generations = Arrays.copyOf(generations, capacity);
+			}
+			ids[size] = id;
+			tfs[size] = tf;
+			generations[size] = gen;
+			size++;
+		}
+
+		boolean isLive(int i, Map<Long, Doc> docs) {
+			Doc doc = docs.get(ids[i]);
+			return doc != null && doc.generation() == generations[i];
+		}
+
+		void compact(Map<Long, Doc> docs) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (isLive(i, docs)) {
+					ids[kept] = ids[i];
+					tfs[kept] = tfs[i];
+					generations[kept] = generations[i];
+					kept++;
+				}
+			}
+			size = kept;
+			dead = 0;
+		}
+
+		int liveCount() {
+			return size - dead;
+		}
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		rebuild();
+	}
+
+	/**
+	 * Vacía el índice y lo vuelve a cargar desde la instantánea o, si no es
+	 * válida, desde la base de datos. Las actualizaciones que lleguen mientras
+	 * tanto esperan al final de la carga.
+	 */
+	public void rebuild() {
+		long start = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			clear();
+			if (loadSnapshot()) {
+				loadedFrom = "snapshot";
+			} else {
+				clear();
+				productService.streamAllProducts(this::indexProduct);
+				loadedFrom = "scan";
+			}
+			loadMillis = (System.nanoTime() - start) / 1_000_000;
+			log.info("Índice de texto cargado desde {}: {} productos, {} términos en {} ms",
+					loadedFrom, docs.size(), terms.size(), loadMillis);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Aplica al índice los cambios ya confirmados en base de datos.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChange(ProductChangeEvent event) {
+		lock.writeLock().lock();
+		try {
+			for (Long id : event.deleted()) {
+				removeDoc(id);
+			}
+			for (Product product : event.saved()) {
+				indexProduct(product);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Busca productos que contengan todas las palabras de la consulta.
+	 *
+	 * @param query Texto libre
+	 * @param limit Número máximo de resultados
+	 * @param fuzzy true para aceptar también palabras a 1-2 ediciones de distancia
+	 * @return Resultados ordenados por relevancia descendente
+	 */
+	public List<TextSearchHit> search(String query, int limit, boolean fuzzy) {
+		queries.incrementAndGet();
+		List<String> tokens = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(query)));
+		if (tokens.isEmpty() || limit <= 0) {
+			return List.of();
+		}
+
+		lock.readLock().lock();
+		try {
+			if (docs.isEmpty()) {
+				return List.of();
+			}
+			double averageLength = (double) totalLength / docs.size();
+			Map<Long, Double> combined = null;
+			for (String token : tokens) {
+				Map<Long, Double> tokenScores = scoreToken(token, fuzzy, averageLength);
+				if (combined == null) {
+					combined = tokenScores;
+				} else {
+					combined.keySet().retainAll(tokenScores.keySet());
+					combined.replaceAll((id, score) -> score + tokenScores.get(id));
+				}
+				if (combined.isEmpty()) {
+					return List.of();
+				}
+			}
+			return topHits(combined, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Devuelve el tamaño del índice y cómo se cargó.
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		lock.readLock().lock();
+		try {
+			stats.put("products", docs.size());
+			stats.put("terms", terms.size());
+		} finally {
+			lock.readLock().unlock();
+		}
+		stats.put("loadedFrom", loadedFrom);
+		stats.put("loadMillis", loadMillis);
+		stats.put("queries", queries.get());
+		return stats;
+	}
+
+	@PreDestroy
+	void saveSnapshot() {
+		if (snapshotFile == null || snapshotFile.isBlank()) {
+			return;
+		}
+		Path target = Path.of(snapshotFile);
+		lock.readLock().lock();
+		try {
+			// Si ya no se puede leer el contador no se guarda: el siguiente arranque reconstruye
+			long counter = catalogVersionService.current().counter();
+			if (target.getParent() != null) {
+				Files.createDirectories(target.getParent());
+			}
+			Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), "search-index", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeInt(SNAPSHOT_VERSION);
+				out.writeLong(counter);
+				out.writeLong(docs.size());
+				for (Map.Entry<Long, Doc> entry : docs.entrySet()) {
+					Doc doc = entry.getValue();
+					out.writeLong(entry.getKey());
+					out.writeInt(doc.terms().length);
+					for (int i = 0; i < doc.terms().length; i++) {
+						out.writeUTF(doc.terms()[i]);
+						out.writeInt(doc.tfs()[i]);
+					}
+				}
+			}
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.info("Instantánea del índice de texto guardada: {} productos", docs.size());
+		} catch (IOException | RuntimeException e) {
+			log.warn("No se pudo guardar la instantánea del índice de texto: {}", e.getMessage());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean loadSnapshot() {
+		if (snapshotFile == null || snapshotFile.isBlank()) {
+			return false;
+		}
+		Path source = Path.of(snapshotFile);
+		if (!Files.isRegularFile(source)) {
+			return false;
+		}
+		try {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source), 1 << 16))) {
+				if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+					log.info("Instantánea del índice de texto con formato desconocido, se reconstruye");
+					return false;
+				}
+				long counter = in.readLong();
+				long count = in.readLong();
+				if (counter != catalogVersionService.current().counter() || count != productStore.count()) {
+					log.info("Instantánea del índice de texto desactualizada, se reconstruye");
+					return false;
+				}
+				for (long n = 0; n < count; n++) {
+					long id = in.readLong();
+					int termCount = in.readInt();
+					String[] docTerms = new String[termCount];
+					int[] tfs = new int[termCount];
+					int length = 0;
+					for (int i = 0; i < termCount; i++) {
+						docTerms[i] = in.readUTF();
+						tfs[i] = in.readInt();
+						length += tfs[i];
+					}
+					addDoc(id, docTerms, tfs, length);
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			log.warn("No se pudo leer la instantánea del índice de texto: {}", e.getMessage());
+			return false;
+		} finally {
+			// Solo vale para un arranque: tras una parada abrupta no se reutiliza
+			try {
+				Files.deleteIfExists(source);
+			} catch (IOException e) {
+				log.warn("No se pudo borrar la instantánea del índice de texto: {}", e.getMessage());
+			}
+		}
+	}
+
+	private void indexProduct(Product product) {
+		if (product.getId() == null) {
+			return;
+		}
+		Map<String, Integer> frequencies = new LinkedHashMap<>();
+		int length = addField(frequencies, product.getNombre(), WEIGHT_NOMBRE)
+				+ addField(frequencies, product.getMarca(), WEIGHT_MARCA)
+				+ addField(frequencies, product.getDescripcion(), WEIGHT_DESCRIPCION);
+		String[] docTerms = new String[frequencies.size()];
+		int[] tfs = new int[frequencies.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+			docTerms[i] = entry.getKey();
+			tfs[i] = entry.getValue();
+			i++;
+		}
+		addDoc(product.getId(), docTerms, tfs, length);
+	}
+
+	private static int addField(Map<String, Integer> frequencies, String text, int weight) {
+		int length = 0;
+		for (String token : TextAnalyzer.tokenize(text)) {
+			frequencies.merge(token, weight, Integer::sum);
+			length += weight;
+		}
+		return length;
+	}
+
+	private void addDoc(long id, String[] docTerms, int[] tfs, int length) {
+		removeDoc(id);
+		int gen = ++generation;
+		docs.put(id, new Doc(docTerms, tfs, length, gen));
+		for (int i = 0; i < docTerms.length; i++) {
+			terms.computeIfAbsent(docTerms[i], t -> new Postings()).add(id, tfs[i], gen);
+		}
+		totalLength += length;
+	}
+
+	private void removeDoc(long id) {
+		Doc doc = docs.remove(id);
+		if (doc == null) {
+			return;
+		}
+		totalLength -= doc.length();
+		for (String term : doc.terms()) {
+			Postings postings = terms.get(term);
+			if (postings == null) {
+				continue;
+			}
+			postings.dead++;
+			if (postings.dead * 2 > postings.size) {
+				postings.compact(docs);
+				if (postings.size == 0) {
+					terms.remove(term);
+				}
+			}
+		}
+	}
+
+	private void clear() {
+		terms.clear();
+		docs.clear();
+		totalLength = 0;
+	}
+
+	/**
+	 * Mejor puntuación BM25 de cada producto para una palabra de la consulta,
+	 * considerando la coincidencia exacta, por prefijo y aproximada.
+	 */
+	private Map<Long, Double> scoreToken(String token, boolean fuzzy, double averageLength) {
+		Map<String, Double> expansions = new LinkedHashMap<>();
+		if (terms.containsKey(token)) {
+			expansions.put(token, 1.0);
+		}
+		for (String term : terms.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+			if (expansions.size() >= MAX_EXPANSIONS) {
+				break;
+			}
+			expansions.put(term, PREFIX_BOOST);
+		}
+		if (fuzzy && token.length() >= 4 && !token.chars().allMatch(Character::isDigit)) {
+			int maxEdits = token.length() >= 8 ? 2 : 1;
+			String first = token.substring(0, 1);
+			int fuzzyCount = 0;
+			for (String term : terms.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+				if (fuzzyCount >= MAX_EXPANSIONS) {
+					break;
+				}
+				if (expansions.containsKey(term) || Math.abs(term.length() - token.length()) > maxEdits) {
+					continue;
+				}
+				int distance = TextAnalyzer.boundedDistance(token, term, maxEdits);
+				if (distance <= maxEdits) {
+					expansions.put(term, FUZZY_BOOST / distance);
+					fuzzyCount++;
+				}
+			}
+		}
+
+		Map<Long, Double> scores = new HashMap<>();
+		int totalDocs = docs.size();
+		for (Map.Entry<String, Double> expansion : expansions.entrySet()) {
+			Postings postings = terms.get(expansion.getKey());
+			int df = postings.liveCount();
+			double idf = Math.log(1 + (totalDocs - df + 0.5) / (df + 0.5));
+			for (int i = 0; i < postings.size; i++) {
+				if (!postings.isLive(i, docs)) {
+					continue;
+				}
+				double tf = postings.tfs[i];
+				double norm = K1 * (1 - B + B * docs.get(postings.ids[i]).length() / averageLength);
+				double score = expansion.getValue() * idf * tf * (K1 + 1) / (tf + norm);
+				scores.merge(postings.ids[i], score, Math::max);
+			}
+		}
+		return scores;
+	}
+
+	private static List<TextSearchHit> topHits(Map<Long, Double> scores, int limit) {
+		PriorityQueue<TextSearchHit> heap = new PriorityQueue<>(limit + 1,
+				(a, b) -> a.score() != b.score() ? Double.compare(a.score(), b.score()) : Long.compare(b.id(), a.id()));
+		for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+			heap.add(new TextSearchHit(entry.getKey(), entry.getValue()));
+			if (heap.size() > limit) {
+				heap.poll();
+			}
+		}
+		List<TextSearchHit> hits = new ArrayList<>(heap);
+		hits.sort(heap.comparator().reversed());
+		return hits;
+	}
+}
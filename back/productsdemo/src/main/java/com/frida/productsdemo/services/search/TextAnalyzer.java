@@ -0,0 +1,85 @@
+package com.frida.productsdemo.services.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Convierte texto libre en términos indexables.
+ * 
+ * Pasa a minúsculas, elimina tildes y diacríticos, separa por cualquier
+ * carácter que no sea letra o dígito y descarta palabras vacías en español.
+ * Se usa igual al indexar y al consultar.
+ */
+final class TextAnalyzer {
+
+	private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+	private static final Set<String> STOPWORDS = Set.of(
+			"de", "del", "la", "las", "el", "los", "lo", "un", "una", "unos", "unas",
+			"y", "o", "e", "u", "en", "con", "sin", "para", "por", "al", "a", "que", "se", "su", "sus");
+
+	private TextAnalyzer() { /* Previene instanciación */ }
+
+	/**
+	 * Devuelve los términos del texto en orden de aparición (con repeticiones).
+	 */
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null || text.isEmpty()) {
+			return tokens;
+		}
+		String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+				.replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i <= normalized.length(); i++) {
+			boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				String token = normalized.substring(start, i);
+				if (!STOPWORDS.contains(token)) {
+					tokens.add(token);
+				}
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Distancia de Levenshtein acotada: devuelve {@code max + 1} en cuanto se
+	 * sabe que la distancia supera {@code max}.
+	 */
+	static int boundedDistance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		}
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMin = current[0];
+			char ca = a.charAt(i - 1);
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = ca == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > max) {
+				return max + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+}
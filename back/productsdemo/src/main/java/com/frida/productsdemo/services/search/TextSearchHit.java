@@ -0,0 +1,6 @@
+package com.frida.productsdemo.services.search;
+
+/**
+ * Resultado de la búsqueda de texto: ID del producto y su puntuación.
+ */
+public record TextSearchHit(long id, double score) {}
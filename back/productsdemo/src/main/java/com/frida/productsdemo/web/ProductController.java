@@ -1,36 +1,112 @@
 package com.frida.productsdemo.web;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonParseException;
+import com.frida.productsdemo.models.AnalysisJob;
+import com.frida.productsdemo.models.BulkResult;
+import com.frida.productsdemo.models.ImportProgress;
 import com.frida.productsdemo.models.Product;
+import com.frida.productsdemo.models.ProductChangePage;
+import com.frida.productsdemo.models.ProductPage;
+import com.frida.productsdemo.models.ProductSearchCriteria;
+import com.frida.productsdemo.models.StockAdjustment;
+import com.frida.productsdemo.models.StockReservation;
+import com.frida.productsdemo.models.StockReservationResult;
+import com.frida.productsdemo.services.AnalysisJobService;
+import com.frida.productsdemo.services.CatalogVersionService;
+import com.frida.productsdemo.services.CatalogVersionService.CatalogVersion;
+import com.frida.productsdemo.services.ImageTooLargeException;
+import com.frida.productsdemo.services.ProductChangeFeed;
+import com.frida.productsdemo.services.ProductBulkService;
+import com.frida.productsdemo.services.ProductImportService;
 import com.frida.productsdemo.services.ProductService;
+import com.frida.productsdemo.services.ProductStockService;
+import com.frida.productsdemo.services.ProductValidator;
+import com.frida.productsdemo.services.export.ExportField;
+import com.frida.productsdemo.services.frida.LlmUnavailableException;
+import com.frida.productsdemo.services.export.ProductExportService;
+import com.frida.productsdemo.services.search.DuplicateCandidate;
+import com.frida.productsdemo.services.search.ProductDuplicateDetector;
+import com.frida.productsdemo.services.search.ProductTextIndex;
+import com.frida.productsdemo.services.search.TextSearchHit;
 
 /**
  * Controlador REST para manejo completo de productos.
  * 
  * Proporciona endpoints para operaciones CRUD completas sobre productos:
- * - GET /api/products - Obtener lista de todos los productos
+ * - GET /api/products - Obtener una página de productos (paginación por keyset)
+ * - GET /api/products/search - Buscar productos con filtros, rangos y orden
+ * - GET /api/products/search/text - Búsqueda de texto por relevancia en nombre, marca y descripción
+ * - GET /api/products/search/text/stats - Estadísticas del índice de texto
+ * - GET /api/products/changes - Cambios del catálogo posteriores a una secuencia
+ * - GET /api/products/changes/stream - Cambios del catálogo en directo por SSE
+ * - GET /api/products/stream - Obtener todo el catálogo en streaming NDJSON
  * - GET /api/products/{id} - Obtener un producto específico por ID
- * - POST /api/products/new - Crear un nuevo producto
- * - PUT /api/products/{id} - Actualizar un producto existente
+ * - GET /api/products/referencia/{referencia} - Obtener un producto por su referencia
+ * - GET /api/products/cache - Estadísticas de la caché de productos
+ * - POST /api/products/new - Crear un nuevo producto (marcando, rechazando o fusionando posibles duplicados)
+ * - POST /api/products/duplicates - Buscar productos existentes parecidos a uno dado
+ * - GET /api/products/duplicates/stats - Estadísticas del detector de duplicados
+ * - PUT /api/products/{id} - Actualizar un producto existente (con bloqueo optimista opcional)
+ * - PATCH /api/products/{id}/stock - Sumar o restar stock de forma atómica
+ * - POST /api/products/stock/reserve - Reservar stock de varios productos a la vez
  * - DELETE /api/products/{id} - Eliminar un producto
+ * - POST /api/products/bulk - Alta masiva de productos
+ * - PUT /api/products/bulk - Alta o actualización masiva por referencia
+ * - DELETE /api/products/bulk - Borrado masivo por ID
+ * - POST /api/products/import - Importación en streaming de catálogos CSV o NDJSON
+ * - GET /api/products/export - Exportación en streaming en CSV, NDJSON o binario columnar
  * - POST /api/products/analize - Analizar producto desde archivo
+ * - POST /api/products/analize/stream - Analizar producto desde archivo enviando los campos por SSE
+ * - GET /api/products/analize/cache - Estadísticas de la caché de análisis
+ * - GET /api/products/analize/images - Estadísticas del preprocesado de imágenes
+ * - GET /api/products/analize/pool - Estadísticas del pool de conexiones al LLM
+ * - GET /api/products/analize/resilience - Estado de los circuitos y límites de concurrencia del LLM
+ * - GET /api/products/analize/routing - Enrutado entre modelos y resultados de cada uno
+ * - GET /api/products/analize/prompt-cache - Aciertos de la caché de prompt del proveedor
+ * - POST /api/products/analize/batch - Analizar un lote de imágenes en segundo plano
+ * - GET /api/products/analize/jobs/{jobId} - Resultados de un lote
+ * - GET /api/products/analize/jobs/{jobId}/status - Progreso de un lote
  * 
  * Todos los endpoints implementan validación completa de datos de entrada,
  * manejo de errores consistente y respuestas HTTP apropiadas.
@@ -39,17 +115,295 @@ import com.frida.productsdemo.services.ProductService;
 @RequestMapping("/api/products")
 public class ProductController {
 
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+	static final String POSSIBLE_DUPLICATES_HEADER = "X-Possible-Duplicates";
+
+	/** Espera sugerida cuando la cola de análisis por lotes está llena. */
+	static final int BATCH_RETRY_AFTER_SECONDS = 30;
+
 	@Autowired
 	private ProductService service;
 
+	@Autowired
+	private AnalysisJobService jobService;
+
+	@Autowired
+	private ProductBulkService bulkService;
+
+	@Autowired
+	private ProductImportService importService;
+
+	@Autowired
+	private ProductExportService exportService;
+
+	@Autowired
+	private ProductTextIndex textIndex;
+
+	@Autowired
+	private CatalogVersionService catalogVersionService;
+
+	@Autowired
+	private ProductChangeFeed changeFeed;
+
+	@Autowired
+	private ProductStockService stockService;
+
+	@Autowired
+	private ProductDuplicateDetector duplicateDetector;
+
+	@Value("${products.changes.stream-timeout:PT30M}")
+	private Duration changesStreamTimeout;
+
+	@Value("${products.search.max-results:100}")
+	private int maxTextResults;
+
+	@Value("${products.bulk.max-rows:100000}")
+	private int bulkMaxRows;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private AsyncTaskExecutor taskExecutor;
+
+	@Value("${analysis.stream.timeout:PT3M}")
+	private Duration streamTimeout;
+
     /**
-     * Obtiene la lista de todos los productos.
-     * @return Lista de productos.
+     * Obtiene una página de productos ordenada por ID.
+     * 
+     * La paginación es por keyset: el cliente envía el ID del último producto
+     * recibido en {@code after} y el servidor devuelve los siguientes. Si la
+     * página está completa se incluye la cabecera {@code X-Next-Cursor} con el
+     * valor a usar en la siguiente petición; su ausencia indica el final.
+     * 
+     * La respuesta lleva como ETag el contador de cambios del catálogo y como
+     * Last-Modified la fecha del último cambio; si el cliente envía
+     * {@code If-None-Match} o {@code If-Modified-Since} y el catálogo no ha
+     * cambiado, se responde 304 sin consultar los productos.
+     * 
+     * @param after ID del último producto recibido (opcional)
+     * @param limit Tamaño de página (opcional, acotado por products.page.max-size)
+     * @param request Petición, para las cabeceras condicionales
+     * @return Lista de productos de la página solicitada, o 304 si no ha cambiado
+     * 
+     * @apiNote Ejemplo de uso:
+     *          GET /api/products?limit=100
+     *          GET /api/products?after=100&limit=100
      */
     @GetMapping
-    public List<Product> getAllProducts() {
-        List<Product> products = service.getAllProducts();
-        return products;
+    public ResponseEntity<List<Product>> getAllProducts(@RequestParam(required = false) Long after,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        WebRequest request) {
+        // Se lee antes que los productos: si cambian entre medias, el ETag queda antiguo y el cliente volverá a pedir
+        CatalogVersion version = catalogVersionService.current();
+        if (request.checkNotModified(catalogEtag(version), version.lastModified().toEpochMilli())) {
+            return null;
+        }
+        List<Product> products = service.getProductsPage(after, limit);
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!products.isEmpty() && products.size() == service.resolvePageSize(limit)) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(products.get(products.size() - 1).getId()));
+        }
+        return response.body(products);
+    }
+
+    /**
+     * Busca productos por departamento, marca, referencia, precio y stock.
+     * 
+     * Todos los filtros son opcionales y se combinan con AND. El orden admite
+     * id, referencia, nombre, precio y numeroDisponible, con dirección asc o
+     * desc. La paginación es por keyset: si hay más resultados se devuelve la
+     * cabecera {@code X-Next-Cursor} con el cursor opaco a enviar en
+     * {@code cursor} junto con los mismos filtros y orden.
+     * 
+     * @param departamento Departamento exacto (opcional)
+     * @param marca Marca exacta (opcional)
+     * @param referencia Referencia exacta (opcional)
+     * @param referenciaPrefix Prefijo de referencia (opcional)
+     * @param precioMin Precio mínimo incluido (opcional)
+     * @param precioMax Precio máximo incluido (opcional)
+     * @param disponibleMin Stock mínimo incluido (opcional)
+     * @param disponibleMax Stock máximo incluido (opcional)
+     * @param sort Orden como campo[,asc|desc] (opcional, por defecto id)
+     * @param cursor Cursor de la página anterior (opcional)
+     * @param limit Tamaño de página (opcional, acotado por products.page.max-size)
+     * @return Lista de productos de la página o mensaje de error
+     * 
+     * @apiNote Ejemplo de uso:
+     *          GET /api/products/search?departamento=Electrónica&precioMax=100&sort=precio,desc&limit=50
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProducts(@RequestParam(required = false) String departamento,
+                                            @RequestParam(required = false) String marca,
+                                            @RequestParam(required = false) String referencia,
+                                            @RequestParam(required = false) String referenciaPrefix,
+                                            @RequestParam(required = false) BigDecimal precioMin,
+                                            @RequestParam(required = false) BigDecimal precioMax,
+                                            @RequestParam(required = false) Integer disponibleMin,
+                                            @RequestParam(required = false) Integer disponibleMax,
+                                            @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setDepartamento(departamento);
+        criteria.setMarca(marca);
+        criteria.setReferencia(referencia);
+        criteria.setReferenciaPrefix(referenciaPrefix);
+        criteria.setPrecioMin(precioMin);
+        criteria.setPrecioMax(precioMax);
+        criteria.setDisponibleMin(disponibleMin);
+        criteria.setDisponibleMax(disponibleMax);
+
+        try {
+            ProductPage page = service.searchProducts(criteria, sort, cursor, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.items());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Búsqueda de texto libre en nombre, marca y descripción.
+     * 
+     * Usa el índice invertido en memoria: deben aparecer todas las palabras de
+     * la consulta, ya sea completas, como prefijo o, si {@code fuzzy} está
+     * activo, con una o dos letras de diferencia. Los resultados se devuelven
+     * ordenados por relevancia.
+     * 
+     * @param q Texto a buscar
+     * @param limit Número máximo de resultados (opcional, acotado por products.search.max-results)
+     * @param fuzzy Aceptar coincidencias aproximadas (por defecto true)
+     * @return Lista de productos ordenada por relevancia o mensaje de error
+     * 
+     * @apiNote Ejemplo de uso:
+     *          GET /api/products/search/text?q=zapatilla runing&limit=20
+     */
+    @GetMapping("/search/text")
+    public ResponseEntity<?> searchText(@RequestParam String q,
+                                        @RequestParam(required = false) Integer limit,
+                                        @RequestParam(defaultValue = "true") boolean fuzzy) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body("Error: La consulta no puede estar vacía");
+        }
+        try {
+            int size = limit == null || limit <= 0 ? maxTextResults : Math.min(limit, maxTextResults);
+            List<Long> ids = textIndex.search(q, size, fuzzy).stream().map(TextSearchHit::id).toList();
+            return ResponseEntity.ok(ids.isEmpty() ? List.of() : service.getProductsByIds(ids));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve el tamaño del índice de texto y cómo se cargó al arrancar.
+     * 
+     * @return Mapa con productos, términos, origen y tiempo de carga
+     */
+    @GetMapping("/search/text/stats")
+    public ResponseEntity<Map<String, Object>> getTextIndexStats() {
+        return ResponseEntity.ok(textIndex.getStats());
+    }
+
+    /**
+     * Devuelve los cambios del catálogo posteriores a una secuencia.
+     * 
+     * Permite mantener una réplica local con tráfico incremental: el cliente
+     * pide primero sin {@code since} para conocer la secuencia actual,
+     * descarga el catálogo y después aplica los cambios desde esa secuencia,
+     * usando {@code nextSince} de cada respuesta en la siguiente petición.
+     * Si la secuencia pedida ya se ha purgado se responde 410 y el cliente
+     * debe volver a descargar el catálogo.
+     * 
+     * @param since Última secuencia aplicada por el cliente (opcional)
+     * @param limit Número máximo de cambios (opcional, acotado por products.changes.max-page-size)
+     * @return Página de cambios o mensaje de error
+     * 
+     * @apiNote Ejemplo de uso:
+     *          GET /api/products/changes
+     *          GET /api/products/changes?since=1520&limit=500
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<?> getChanges(@RequestParam(required = false) Long since,
+                                        @RequestParam(required = false) Integer limit) {
+        try {
+            if (since != null && since < 0) {
+                return ResponseEntity.badRequest().body("Error: La secuencia no puede ser negativa");
+            }
+            if (since != null && changeFeed.isExpired(since)) {
+                return ResponseEntity.status(HttpStatus.GONE)
+                    .body("Error: Los cambios posteriores a " + since + " ya no están disponibles, vuelva a descargar el catálogo");
+            }
+            ProductChangePage page = changeFeed.changesSince(since, limit);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envía por Server-Sent Events los cambios del catálogo.
+     * 
+     * Primero se envían los cambios pendientes posteriores a {@code since} y
+     * después cada cambio nuevo según se confirma, como eventos "change" cuyo
+     * id es la secuencia. Al reconectar, el navegador envía la cabecera
+     * {@code Last-Event-ID} y la suscripción continúa desde ahí. Si la
+     * secuencia ya se ha purgado se envía un evento "error" y se cierra.
+     * 
+     * @param since Última secuencia aplicada por el cliente (opcional, por defecto la actual)
+     * @param lastEventId Cabecera Last-Event-ID de una reconexión (opcional)
+     * @return Emisor SSE asociado a la respuesta
+     */
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(changesStreamTimeout.toMillis());
+        long from = lastEventId != null ? lastEventId
+                : since != null ? since : catalogVersionService.current().counter();
+        if (from < 0 || changeFeed.isExpired(from)) {
+            try {
+                emitter.send(SseEmitter.event().name("error")
+                    .data("Error: Los cambios posteriores a " + from + " ya no están disponibles, vuelva a descargar el catálogo"));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+        changeFeed.subscribe(emitter, from);
+        return emitter;
+    }
+
+    /**
+     * Devuelve todo el catálogo como NDJSON (un producto JSON por línea).
+     * 
+     * Las filas se escriben en la respuesta a medida que se leen de la base de
+     * datos, sin construir la lista completa en memoria.
+     * 
+     * @return Cuerpo en streaming con los productos ordenados por ID
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        StreamingResponseBody body = out -> service.streamAllProducts(product -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(product));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     /**
@@ -59,10 +413,17 @@ public class ProductController {
      * específico mediante su identificador único. Es útil para operaciones
      * de consulta individual y como paso previo para editar un producto.
      * 
+     * La respuesta lleva un ETag fuerte basado en la versión del producto y su
+     * fecha de modificación como Last-Modified, de modo que los clientes que
+     * consultan periódicamente pueden usar {@code If-None-Match} o
+     * {@code If-Modified-Since}.
+     * 
      * @param id El identificador único del producto a recuperar
+     * @param request Petición, para las cabeceras condicionales
      * 
      * @return ResponseEntity que contiene:
      *         - 200 OK: Producto encontrado con sus datos completos
+     *         - 304 NOT MODIFIED: El producto no ha cambiado desde la versión del cliente
      *         - 404 NOT FOUND: Producto no encontrado con el ID especificado
      *         - 400 BAD REQUEST: ID inválido (no numérico o negativo)
      *         - 500 INTERNAL SERVER ERROR: Error interno del servidor
@@ -79,11 +440,13 @@ public class ProductController {
      *            "precio": 29.99,
      *            "numeroDisponible": 100,
      *            "departamento": "Electrónicos",
-     *            "descripcion": "Descripción del producto"
+     *            "descripcion": "Descripción del producto",
+     *            "version": 3,
+     *            "lastModified": "2024-05-01T10:00:00Z"
      *          }
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable Long id) {
+    public ResponseEntity<?> getProductById(@PathVariable Long id, WebRequest request) {
         try {
             // Validación del ID
             if (id == null || id <= 0) {
@@ -99,6 +462,9 @@ public class ProductController {
                     .body("Error: No se encontró un producto con el ID especificado: " + id);
             }
             
+            if (isNotModified(product, request)) {
+                return null;
+            }
             return ResponseEntity.ok(product);
             
         } catch (Exception e) {
@@ -108,14 +474,267 @@ public class ProductController {
     }
 
     /**
-     * @param file
-     * @return
-     * @throws IOException
+     * Analiza una imagen de producto con el LLM.
+     * 
+     * @param file La imagen del producto a analizar
+     * 
+     * Si el catálogo ya tiene productos muy parecidos al extraído, sus IDs se
+     * devuelven en la cabecera {@code X-Possible-Duplicates} (separados por comas)
+     * para que el cliente decida antes de darlo de alta.
+     * 
+     * @return ResponseEntity que contiene:
+     *         - 200 OK: Producto extraído de la imagen
+     *         - 400 BAD REQUEST: No se pudo leer la imagen
+     *         - 413 PAYLOAD TOO LARGE: La imagen supera el máximo de píxeles
+     *         - 502 BAD GATEWAY: El LLM rechazó la petición o su respuesta no es un producto
+     *         - 503 SERVICE UNAVAILABLE: LLM saturado o con el circuito abierto, con cabecera Retry-After
+     *         - 500 INTERNAL SERVER ERROR: Error interno del servidor
      */
     @PostMapping("/analize")
-    public Product uploadProductFile(@RequestParam("file") MultipartFile file) throws IOException {
-    	Product product = service.producEvaluation(file);
-    	return product;
+    public ResponseEntity<?> uploadProductFile(@RequestParam("file") MultipartFile file) {
+        try {
+            Product product = service.producEvaluation(file);
+            if (product == null) {
+                return ResponseEntity.badRequest()
+                    .body("Error: No se pudo leer la imagen enviada");
+            }
+            List<DuplicateCandidate> duplicates = duplicateDetector.findDuplicates(product);
+            if (duplicates.isEmpty()) {
+                return ResponseEntity.ok(product);
+            }
+            return ResponseEntity.ok()
+                .header(POSSIBLE_DUPLICATES_HEADER, duplicateIds(duplicates))
+                .body(product);
+            
+        } catch (ImageTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body("Error: " + e.getMessage());
+        } catch (LlmUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body("Error: " + e.getMessage());
+        } catch (RestClientResponseException | JsonParseException | IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .body("Error: Respuesta no válida del LLM: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Analiza una imagen enviando los campos del producto por Server-Sent Events.
+     * 
+     * Cada campo se envía en un evento "field" ({"name": ..., "value": ...}) en
+     * cuanto el LLM termina de generarlo. Al final se envía un evento "product"
+     * con el producto completo, o un evento "error" si el análisis falla.
+     * 
+     * @param file La imagen del producto a analizar
+     * @return Emisor SSE asociado a la respuesta
+     * @throws IOException si no se puede leer la imagen
+     */
+    @PostMapping(value = "/analize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProductAnalysis(@RequestParam("file") MultipartFile file) throws IOException {
+        byte[] fileBytes = file.getBytes();
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        
+        taskExecutor.execute(() -> {
+            try {
+                Product product = service.producEvaluationStream(fileBytes, (name, value) -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("field").data(Map.of("name", name, "value", value)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                emitter.send(SseEmitter.event().name("product").data(product));
+                emitter.complete();
+            } catch (Exception e) {
+                try {
+                    emitter.send(SseEmitter.event().name("error").data("Error: " + e.getMessage()));
+                    emitter.complete();
+                } catch (Exception sendError) {
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Devuelve las estadísticas de la caché de análisis de imágenes.
+     * 
+     * @return Aciertos en memoria y disco, fallos, desalojos y ratio de acierto
+     */
+    @GetMapping("/analize/cache")
+    public Map<String, Object> getAnalysisCacheStats() {
+        return service.getAnalysisCacheStats();
+    }
+
+    /**
+     * Devuelve las estadísticas del preprocesado de imágenes.
+     * 
+     * @return Imágenes procesadas y recodificadas, y bytes recibidos, enviados y ahorrados
+     */
+    @GetMapping("/analize/images")
+    public Map<String, Object> getImagePreprocessingStats() {
+        return service.getImagePreprocessingStats();
+    }
+
+    /**
+     * Devuelve las estadísticas del pool de conexiones HTTP hacia el LLM.
+     * 
+     * @return Conexiones en uso, en espera y libres, y los máximos configurados
+     */
+    @GetMapping("/analize/pool")
+    public Map<String, Object> getLlmPoolStats() {
+        return service.getLlmPoolStats();
+    }
+
+    /**
+     * Devuelve el estado de la capa de resiliencia de las llamadas al LLM.
+     * 
+     * @return Por modelo: estado del circuito, llamadas en curso, reintentos, rechazos y latencias
+     */
+    @GetMapping("/analize/resilience")
+    public Map<String, Object> getLlmResilienceStats() {
+        return service.getLlmResilienceStats();
+    }
+
+    /**
+     * Devuelve el estado del enrutado entre modelos del LLM.
+     * 
+     * @return Política, modelos candidatos y, por modelo, salud, respuestas válidas e inválidas, errores y latencia
+     */
+    @GetMapping("/analize/routing")
+    public Map<String, Object> getLlmRoutingStats() {
+        return service.getLlmRoutingStats();
+    }
+
+    /**
+     * Devuelve el uso de la caché de prompt del proveedor del LLM.
+     * 
+     * @return Por modelo y endpoint: tokens de prompt, leídos y escritos en caché y ratio de acierto
+     */
+    @GetMapping("/analize/prompt-cache")
+    public Map<String, Object> getPromptCacheStats() {
+        return service.getPromptCacheStats();
+    }
+
+    /**
+     * Encola el análisis de un lote de imágenes y devuelve el trabajo creado.
+     * 
+     * La respuesta es inmediata; el progreso se consulta con
+     * GET /api/products/analize/jobs/{jobId}/status y los resultados con
+     * GET /api/products/analize/jobs/{jobId}.
+     * 
+     * @param files Imágenes a analizar (parámetro multipart "files", repetible)
+     * 
+     * @return ResponseEntity que contiene:
+     *         - 202 ACCEPTED: Estado inicial del trabajo, con cabecera Location
+     *         - 400 BAD REQUEST: No se envió ninguna imagen o el lote supera el máximo de la cola
+     *         - 503 SERVICE UNAVAILABLE: Cola de lotes llena, con cabecera Retry-After
+     *         - 500 INTERNAL SERVER ERROR: Error al guardar las imágenes
+     */
+    @PostMapping("/analize/batch")
+    public ResponseEntity<?> submitAnalysisBatch(@RequestParam("files") List<MultipartFile> files) {
+        try {
+            if (files == null || files.isEmpty() || files.stream().allMatch(MultipartFile::isEmpty)) {
+                return ResponseEntity.badRequest()
+                    .body("Error: Se requiere al menos una imagen para analizar");
+            }
+            
+            AnalysisJob job = jobService.submit(files.stream().filter(f -> !f.isEmpty()).toList());
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Location", "/api/products/analize/jobs/" + job.getId())
+                .body(jobService.getStatus(job));
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(BATCH_RETRY_AFTER_SECONDS))
+                .body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene un trabajo de análisis por lotes con el resultado o error de cada imagen.
+     * 
+     * @param jobId Identificador del trabajo
+     * @return 200 OK con el trabajo completo, o 404 NOT FOUND si no existe o ha caducado
+     */
+    @GetMapping("/analize/jobs/{jobId}")
+    public ResponseEntity<?> getAnalysisJob(@PathVariable String jobId) {
+        AnalysisJob job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body("Error: No se encontró un trabajo con el ID especificado: " + jobId);
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Obtiene el progreso de un trabajo de análisis por lotes sin los resultados.
+     * 
+     * @param jobId Identificador del trabajo
+     * @return 200 OK con estado y contadores, o 404 NOT FOUND si no existe o ha caducado
+     */
+    @GetMapping("/analize/jobs/{jobId}/status")
+    public ResponseEntity<?> getAnalysisJobStatus(@PathVariable String jobId) {
+        AnalysisJob job = jobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body("Error: No se encontró un trabajo con el ID especificado: " + jobId);
+        }
+        return ResponseEntity.ok(jobService.getStatus(job));
+    }
+
+    /**
+     * Obtiene un producto por su referencia.
+     * 
+     * Admite las mismas cabeceras condicionales que la consulta por ID.
+     * 
+     * @param referencia Referencia única del producto
+     * @param request Petición, para las cabeceras condicionales
+     * @return ResponseEntity con el producto encontrado, 304 si no ha cambiado o mensaje de error
+     * 
+     * @apiNote Ejemplo de uso:
+     *          GET /api/products/referencia/NIKE-AIR-01
+     */
+    @GetMapping("/referencia/{referencia}")
+    public ResponseEntity<?> getProductByReferencia(@PathVariable String referencia, WebRequest request) {
+        try {
+            if (referencia.isBlank()) {
+                return ResponseEntity.badRequest().body("Error: La referencia es obligatoria");
+            }
+            Product product = service.getProductByReferencia(referencia);
+            if (product == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Error: No se encontró un producto con la referencia especificada: " + referencia);
+            }
+            if (isNotModified(product, request)) {
+                return null;
+            }
+            return ResponseEntity.ok(product);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve las estadísticas de la caché de productos por ID y referencia.
+     * 
+     * @return Mapa con tamaño, aciertos, fallos, invalidaciones y ratio de acierto
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getProductCacheStats() {
+        return ResponseEntity.ok(service.getProductCacheStats());
     }
 
     /**
@@ -125,6 +744,17 @@ public class ProductController {
      * necesarios en formato JSON. Realiza validaciones de los campos requeridos
      * y devuelve el producto creado con su ID asignado.
      * 
+     * Antes del alta se buscan productos existentes con nombre, marca y
+     * descripción muy parecidos (la referencia puede ser distinta, como ocurre
+     * con las que inventa el análisis de imágenes). Qué hacer con ellos lo
+     * decide {@code onDuplicate}:
+     * - flag (por defecto): se crea igualmente y sus IDs van en la cabecera {@code X-Possible-Duplicates}
+     * - reject: no se crea y se responde 409 con los productos parecidos
+     * - merge: si uno de los parecidos es el mismo artículo (misma referencia, o misma marca y
+     *   mismo precio) no se crea y el stock enviado se suma a ese producto, que es el que se
+     *   devuelve; si ninguno lo es (variantes como "Runner 2" y "Runner 3", u otro precio) se
+     *   crea como en flag
+     * 
      * @param product El producto a crear. Debe incluir:
      *                - referencia: Código único del producto (requerido, no vacío, máximo 50 caracteres)
      *                - nombre: Nombre del producto (requerido, no vacío, máximo 255 caracteres)
@@ -134,13 +764,17 @@ public class ProductController {
      *                - departamento: Departamento/categoría (requerido, no vacío, máximo 100 caracteres)
      *                - descripcion: Descripción del producto (opcional, máximo 1000 caracteres)
      * 
+     * @param onDuplicate Qué hacer si hay posibles duplicados: flag, reject o merge
+     * 
      * @return ResponseEntity que contiene:
      *         - 201 CREATED: Producto creado exitosamente con los datos del nuevo producto
+     *         - 200 OK: Stock sumado al producto existente (onDuplicate=merge)
      *         - 400 BAD REQUEST: Error de validación con mensaje descriptivo
+     *         - 409 CONFLICT: Hay productos parecidos (onDuplicate=reject)
      *         - 500 INTERNAL SERVER ERROR: Error interno del servidor
      * 
      * @apiNote Ejemplo de uso:
-     *          POST /api/products/new
+     *          POST /api/products/new?onDuplicate=reject
      *          Content-Type: application/json
      *          
      *          {
@@ -154,93 +788,47 @@ public class ProductController {
      *          }
      */
     @PostMapping("/new")
-    public ResponseEntity<?> createProduct(@RequestBody Product product) {
+    public ResponseEntity<?> createProduct(@RequestBody Product product,
+                                           @RequestParam(defaultValue = "flag") String onDuplicate) {
         try {
-            // Validación básica de datos requeridos
-            if (product == null) {
-                return ResponseEntity.badRequest()
-                    .body("Error: Los datos del producto son requeridos");
-            }
-            
-            // Validación del nombre (campo requerido)
-            if (product.getNombre() == null || product.getNombre().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El nombre del producto es requerido");
-            }
-            
-            // Validación del precio (campo requerido, debe ser mayor a 0)
-            if (product.getPrecio() == null || product.getPrecio().compareTo(java.math.BigDecimal.ZERO) <= 0) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El precio del producto debe ser mayor a 0");
-            }
-            
-            // Validación de la referencia (campo requerido)
-            if (product.getReferencia() == null || product.getReferencia().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La referencia del producto es requerida");
-            }
-            
-            // Validación de la marca (campo requerido)
-            if (product.getMarca() == null || product.getMarca().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La marca del producto es requerida");
-            }
-            
-            // Validación del departamento (campo requerido)
-            if (product.getDepartamento() == null || product.getDepartamento().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El departamento del producto es requerido");
-            }
-            
-            // Validación del número disponible (debe ser mayor o igual a 0)
-            if (product.getNumeroDisponible() < 0) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El número disponible del producto no puede ser negativo");
-            }
-            
-            // Validación de la descripción (opcional pero si se proporciona no debe estar vacía)
-            if (product.getDescripcion() != null && product.getDescripcion().trim().isEmpty()) {
+            if (!List.of("flag", "reject", "merge").contains(onDuplicate)) {
                 return ResponseEntity.badRequest()
-                    .body("Error: La descripción del producto no puede estar vacía");
+                    .body("Error: onDuplicate debe ser flag, reject o merge");
             }
-            
-            // Validaciones de formato y longitud
-            if (product.getNombre().length() > 255) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El nombre del producto no puede exceder 255 caracteres");
-            }
-            
-            if (product.getReferencia().length() > 50) {
+            // Validación de los datos del producto
+            String validationError = ProductValidator.validate(product);
+            if (validationError != null) {
                 return ResponseEntity.badRequest()
-                    .body("Error: La referencia del producto no puede exceder 50 caracteres");
+                    .body("Error: " + validationError);
             }
             
-            if (product.getMarca().length() > 100) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La marca del producto no puede exceder 100 caracteres");
+            List<DuplicateCandidate> duplicates = duplicateDetector.findDuplicates(product);
+            if (!duplicates.isEmpty() && onDuplicate.equals("reject")) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(duplicateDetector.findMatches(product));
             }
-            
-            if (product.getDepartamento().length() > 100) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El departamento del producto no puede exceder 100 caracteres");
-            }
-            
-            if (product.getDescripcion() != null && product.getDescripcion().length() > 1000) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La descripción del producto no puede exceder 1000 caracteres");
-            }
-            
-            // Validación del precio máximo razonable
-            BigDecimal maxPrice = new BigDecimal("999999.99");
-            if (product.getPrecio().compareTo(maxPrice) > 0) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El precio del producto no puede exceder $999,999.99");
+            if (!duplicates.isEmpty() && onDuplicate.equals("merge")) {
+                Product target = findSameProduct(duplicates, product);
+                if (target != null && product.getNumeroDisponible() == 0) {
+                    // Nada que sumar: sin escritura, versión ni evento de cambio
+                    return ResponseEntity.ok(target);
+                }
+                // Si se ha borrado entretanto, se da de alta como nuevo
+                Product merged = target == null ? null
+                    : stockService.adjustStock(target.getId(), product.getNumeroDisponible());
+                if (merged != null) {
+                    return ResponseEntity.ok(merged);
+                }
             }
             
             // Crear el producto usando el servicio
             Product newProduct = service.createProduct(product);
             
-            return ResponseEntity.status(HttpStatus.CREATED).body(newProduct);
+            if (duplicates.isEmpty() || onDuplicate.equals("reject")) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(newProduct);
+            }
+            return ResponseEntity.status(HttpStatus.CREATED)
+                .header(POSSIBLE_DUPLICATES_HEADER, duplicateIds(duplicates))
+                .body(newProduct);
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -248,6 +836,44 @@ public class ProductController {
         }
     }
 
+    /**
+     * Busca productos existentes que probablemente sean el mismo que el enviado.
+     * 
+     * Compara nombre, marca y descripción, no la referencia, así que sirve
+     * para revisar un producto antes de darlo de alta. No crea nada.
+     * 
+     * @param product Producto a comprobar (no hace falta que tenga ID ni referencia)
+     * @return Productos parecidos con su similitud (0 a 1), de más a menos parecido
+     * 
+     * @apiNote Ejemplo de uso:
+     *          POST /api/products/duplicates
+     *          Content-Type: application/json
+     *          
+     *          { "nombre": "Zapatilla Runner 2", "marca": "Acme", "descripcion": "..." }
+     */
+    @PostMapping("/duplicates")
+    public ResponseEntity<?> findDuplicates(@RequestBody Product product) {
+        if (product == null) {
+            return ResponseEntity.badRequest().body("Error: El producto es obligatorio");
+        }
+        try {
+            return ResponseEntity.ok(duplicateDetector.findMatches(product));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve el tamaño del índice de duplicados y sus tiempos de construcción y consulta.
+     * 
+     * @return Mapa con productos, lápidas, umbral, consultas y tiempo medio
+     */
+    @GetMapping("/duplicates/stats")
+    public ResponseEntity<Map<String, Object>> getDuplicateStats() {
+        return ResponseEntity.ok(duplicateDetector.getStats());
+    }
+
     /**
      * Actualiza un producto existente en el sistema.
      * 
@@ -255,6 +881,13 @@ public class ProductController {
      * mediante su ID. Realiza las mismas validaciones que la creación
      * y devuelve el producto actualizado.
      * 
+     * Para evitar perder cambios concurrentes se puede enviar el ETag en
+     * {@code If-Match} o la versión leída en el campo {@code version}: la
+     * actualización solo se aplica si el producto no ha cambiado desde entonces.
+     * {@code If-Match} admite una lista de ETags separados por comas (basta con
+     * que coincida uno) y {@code *}, que no comprueba la versión pero exige que
+     * el producto exista.
+     * 
      * @param id El identificador único del producto a actualizar
      * @param product Los nuevos datos del producto. Debe incluir los mismos campos que en creación:
      *                - referencia: Código único del producto (requerido, no vacío, máximo 50 caracteres)
@@ -265,14 +898,19 @@ public class ProductController {
      *                - departamento: Departamento/categoría (requerido, no vacío, máximo 100 caracteres)
      *                - descripcion: Descripción del producto (opcional, máximo 1000 caracteres)
      * 
+     * @param ifMatch ETag leído del producto, lista de ETags o {@code *} (opcional); si ninguno coincide con el actual se responde 412
+     * 
      * @return ResponseEntity que contiene:
      *         - 200 OK: Producto actualizado exitosamente con los nuevos datos
      *         - 404 NOT FOUND: Producto no encontrado con el ID especificado
      *         - 400 BAD REQUEST: Error de validación con mensaje descriptivo o ID inválido
+     *         - 409 CONFLICT: La versión del cuerpo no coincide con la actual
+     *         - 412 PRECONDITION FAILED: El ETag de If-Match no coincide con el actual
      *         - 500 INTERNAL SERVER ERROR: Error interno del servidor
      * 
      * @apiNote Ejemplo de uso:
      *          PUT /api/products/123
+     *          If-Match: "p123-4"
      *          Content-Type: application/json
      *          
      *          {
@@ -286,7 +924,8 @@ public class ProductController {
      *          }
      */
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateProduct(@PathVariable Long id, @RequestBody Product product) {
+    public ResponseEntity<?> updateProduct(@PathVariable Long id, @RequestBody Product product,
+                                           @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             // Validación del ID
             if (id == null || id <= 0) {
@@ -294,85 +933,37 @@ public class ProductController {
                     .body("Error: El ID del producto debe ser un número positivo válido");
             }
             
-            // Validación básica de datos requeridos
-            if (product == null) {
-                return ResponseEntity.badRequest()
-                    .body("Error: Los datos del producto son requeridos");
-            }
-            
-            // Validación del nombre (campo requerido)
-            if (product.getNombre() == null || product.getNombre().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El nombre del producto es requerido");
-            }
-            
-            // Validación del precio (campo requerido, debe ser mayor a 0)
-            if (product.getPrecio() == null || product.getPrecio().compareTo(java.math.BigDecimal.ZERO) <= 0) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El precio del producto debe ser mayor a 0");
-            }
-            
-            // Validación de la referencia (campo requerido)
-            if (product.getReferencia() == null || product.getReferencia().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La referencia del producto es requerida");
-            }
-            
-            // Validación de la marca (campo requerido)
-            if (product.getMarca() == null || product.getMarca().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La marca del producto es requerida");
-            }
-            
-            // Validación del departamento (campo requerido)
-            if (product.getDepartamento() == null || product.getDepartamento().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El departamento del producto es requerido");
-            }
-            
-            // Validación del número disponible (debe ser mayor o igual a 0)
-            if (product.getNumeroDisponible() < 0) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El número disponible del producto no puede ser negativo");
-            }
-            
-            // Validación de la descripción (opcional pero si se proporciona no debe estar vacía)
-            if (product.getDescripcion() != null && product.getDescripcion().trim().isEmpty()) {
+            // Validación de los datos del producto
+            String validationError = ProductValidator.validate(product);
+            if (validationError != null) {
                 return ResponseEntity.badRequest()
-                    .body("Error: La descripción del producto no puede estar vacía");
+                    .body("Error: " + validationError);
             }
             
-            // Validaciones de formato y longitud
-            if (product.getNombre().length() > 255) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El nombre del producto no puede exceder 255 caracteres");
-            }
-            
-            if (product.getReferencia().length() > 50) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La referencia del producto no puede exceder 50 caracteres");
-            }
-            
-            if (product.getMarca().length() > 100) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La marca del producto no puede exceder 100 caracteres");
-            }
-            
-            if (product.getDepartamento().length() > 100) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El departamento del producto no puede exceder 100 caracteres");
-            }
-            
-            if (product.getDescripcion() != null && product.getDescripcion().length() > 1000) {
-                return ResponseEntity.badRequest()
-                    .body("Error: La descripción del producto no puede exceder 1000 caracteres");
-            }
-            
-            // Validación del precio máximo razonable
-            BigDecimal maxPrice = new BigDecimal("999999.99");
-            if (product.getPrecio().compareTo(maxPrice) > 0) {
-                return ResponseEntity.badRequest()
-                    .body("Error: El precio del producto no puede exceder $999,999.99");
+            // La versión de If-Match tiene prioridad sobre la del cuerpo
+            if (ifMatch != null && ifMatch.trim().equals("*")) {
+                // Cualquier versión; si el producto no existe la actualización responde 404
+                product.setVersion(null);
+            } else if (ifMatch != null) {
+                List<Long> versions = parseProductEtags(id, ifMatch);
+                if (versions.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                        .body("Error: El ETag de If-Match no corresponde al producto " + id);
+                }
+                Long version = versions.get(0);
+                if (versions.size() > 1) {
+                    // Se actualiza condicionado a la versión actual si está en la lista
+                    version = service.getProductVersion(id);
+                    if (version == null) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body("Error: No se encontró un producto con el ID especificado: " + id);
+                    }
+                    if (!versions.contains(version)) {
+                        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                            .body("Error: El producto " + id + " ha cambiado: versión actual " + version);
+                    }
+                }
+                product.setVersion(version);
             }
             
             // Actualizar el producto usando el servicio
@@ -385,6 +976,79 @@ public class ProductController {
             
             return ResponseEntity.ok(updatedProduct);
             
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT)
+                .body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Suma o resta unidades al stock de un producto de forma atómica.
+     * 
+     * Se ejecuta como un único UPDATE condicional sobre el valor actual, así
+     * que peticiones concurrentes no se pisan y el stock nunca queda negativo.
+     * 
+     * @param id El identificador único del producto
+     * @param adjustment Unidades a sumar (delta positivo) o restar (delta negativo)
+     * @return ResponseEntity con el producto actualizado, 409 si no hay stock suficiente o mensaje de error
+     * 
+     * @apiNote Ejemplo de uso:
+     *          PATCH /api/products/123/stock
+     *          Content-Type: application/json
+     *          
+     *          { "delta": -2 }
+     */
+    @PatchMapping("/{id}/stock")
+    public ResponseEntity<?> adjustStock(@PathVariable Long id, @RequestBody StockAdjustment adjustment) {
+        try {
+            if (id == null || id <= 0) {
+                return ResponseEntity.badRequest()
+                    .body("Error: El ID del producto debe ser un número positivo válido");
+            }
+            if (adjustment == null || adjustment.delta() == null || adjustment.delta() == 0) {
+                return ResponseEntity.badRequest().body("Error: El delta es obligatorio y distinto de cero");
+            }
+            Product product = stockService.adjustStock(id, adjustment.delta());
+            if (product == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Error: No se encontró un producto con el ID especificado: " + id);
+            }
+            return ResponseEntity.ok(product);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reserva stock de varios productos en una sola operación atómica.
+     * 
+     * O se descuentan todas las líneas o ninguna: si algún producto no existe
+     * o no tiene stock suficiente se responde 409 con las líneas que fallaron.
+     * 
+     * @param reservations Líneas con el ID del producto y la cantidad
+     * @return Resultado de la reserva o mensaje de error
+     * 
+     * @apiNote Ejemplo de uso:
+     *          POST /api/products/stock/reserve
+     *          Content-Type: application/json
+     *          
+     *          [{ "id": 1, "quantity": 2 }, { "id": 7, "quantity": 1 }]
+     */
+    @PostMapping("/stock/reserve")
+    public ResponseEntity<?> reserveStock(@RequestBody List<StockReservation> reservations) {
+        String sizeError = validateBulkSize(reservations);
+        if (sizeError != null) {
+            return ResponseEntity.badRequest().body(sizeError);
+        }
+        try {
+            StockReservationResult result = stockService.reserve(reservations);
+            return result.reserved() ? ResponseEntity.ok(result) : ResponseEntity.status(HttpStatus.CONFLICT).body(result);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body("Error interno del servidor: " + e.getMessage());
@@ -439,4 +1103,340 @@ public class ProductController {
                 .body("Error interno del servidor: " + e.getMessage());
         }
     }
+
+    /**
+     * Da de alta una lista de productos en una sola transacción.
+     * 
+     * Cada fila se valida con las mismas reglas que POST /api/products/new.
+     * Las filas inválidas o con referencia ya existente se omiten y se
+     * informan en la respuesta; el resto se insertan en lotes JDBC.
+     * 
+     * @param products Lista de productos a crear
+     * 
+     * @return ResponseEntity que contiene:
+     *         - 200 OK: Resumen con filas creadas y errores por fila
+     *         - 400 BAD REQUEST: Lista vacía o mayor que products.bulk.max-rows
+     *         - 500 INTERNAL SERVER ERROR: Error interno (no se escribe ninguna fila)
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createProducts(@RequestBody List<Product> products) {
+        try {
+            String sizeError = validateBulkSize(products);
+            if (sizeError != null) {
+                return ResponseEntity.badRequest().body(sizeError);
+            }
+            
+            BulkResult result = bulkService.createAll(products);
+            return ResponseEntity.ok(result);
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea o actualiza una lista de productos usando la referencia como clave.
+     * 
+     * @param products Lista de productos a insertar o actualizar
+     * 
+     * @return ResponseEntity que contiene:
+     *         - 200 OK: Resumen con filas creadas, actualizadas y errores por fila
+     *         - 400 BAD REQUEST: Lista vacía o mayor que products.bulk.max-rows
+     *         - 500 INTERNAL SERVER ERROR: Error interno (no se escribe ninguna fila)
+     */
+    @PutMapping("/bulk")
+    public ResponseEntity<?> upsertProducts(@RequestBody List<Product> products) {
+        try {
+            String sizeError = validateBulkSize(products);
+            if (sizeError != null) {
+                return ResponseEntity.badRequest().body(sizeError);
+            }
+            
+            BulkResult result = bulkService.upsertAll(products);
+            return ResponseEntity.ok(result);
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Elimina una lista de productos por ID.
+     * 
+     * @param ids Lista de IDs a eliminar
+     * 
+     * @return ResponseEntity que contiene:
+     *         - 200 OK: Resumen con filas eliminadas y los IDs no encontrados
+     *         - 400 BAD REQUEST: Lista vacía o mayor que products.bulk.max-rows
+     *         - 500 INTERNAL SERVER ERROR: Error interno (no se elimina ninguna fila)
+     */
+    @DeleteMapping("/bulk")
+    public ResponseEntity<?> deleteProducts(@RequestBody List<Long> ids) {
+        try {
+            String sizeError = validateBulkSize(ids);
+            if (sizeError != null) {
+                return ResponseEntity.badRequest().body(sizeError);
+            }
+            
+            BulkResult result = bulkService.deleteAll(ids);
+            return ResponseEntity.ok(result);
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Importa un catálogo completo en CSV o NDJSON enviado como cuerpo de la petición.
+     * 
+     * El fichero se procesa en streaming por bloques (products.import.chunk-size),
+     * con las mismas validaciones que POST /api/products/new y deduplicando por
+     * referencia. Cada bloque se confirma por separado. La respuesta es NDJSON y
+     * se va escribiendo durante la importación:
+     * - {"type":"reject","row":..,"referencia":..,"error":..} por cada fila rechazada
+     * - {"type":"progress",...} tras cada bloque con los contadores acumulados
+     * - {"type":"summary",...} al terminar
+     * - {"type":"error","error":..,"processed":..,...} en lugar del summary si la
+     *   importación se interrumpe (CSV mal formado, fallo de base de datos...): los
+     *   bloques ya confirmados se quedan guardados y el resto no se importa
+     * 
+     * En CSV la primera fila es la cabecera con los nombres de los campos
+     * (referencia, nombre, marca, descripcion, precio, numeroDisponible, departamento).
+     * 
+     * @param format csv o ndjson; si se omite se deduce del Content-Type
+     * @param mode upsert (por defecto) actualiza referencias existentes; insert las rechaza
+     * 
+     * @apiNote Ejemplo de uso:
+     *          curl -X POST -H "Content-Type: text/csv" --data-binary @catalogo.csv \
+     *               "http://localhost:8080/api/products/import?mode=upsert"
+     */
+    @PostMapping("/import")
+    public void importProducts(@RequestParam(required = false) String format,
+                               @RequestParam(defaultValue = "upsert") String mode,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ProductImportService.Format importFormat = resolveImportFormat(format, request.getContentType());
+        if (importFormat == null || !(mode.equalsIgnoreCase("upsert") || mode.equalsIgnoreCase("insert"))) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("Error: Indica format=csv|ndjson y mode=upsert|insert");
+            return;
+        }
+        
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        ServletOutputStream out = response.getOutputStream();
+        
+        importService.importCatalog(request.getInputStream(), importFormat, mode.equalsIgnoreCase("upsert"),
+            new ProductImportService.ImportListener() {
+                @Override
+                public void onReject(long row, String referencia, String error) throws IOException {
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("type", "reject");
+                    event.put("row", row);
+                    event.put("referencia", referencia);
+                    event.put("error", error);
+                    out.write(objectMapper.writeValueAsBytes(event));
+                    out.write('\n');
+                }
+
+                @Override
+                public void onProgress(ImportProgress progress) throws IOException {
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("type", progress.isFinished() ? "summary" : "progress");
+                    event.put("processed", progress.getProcessed());
+                    event.put("created", progress.getCreated());
+                    event.put("updated", progress.getUpdated());
+                    event.put("rejected", progress.getRejected());
+                    out.write(objectMapper.writeValueAsBytes(event));
+                    out.write('\n');
+                    out.flush();
+                }
+
+                @Override
+                public void onError(ImportProgress progress, String error) throws IOException {
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("type", "error");
+                    event.put("error", error);
+                    event.put("processed", progress.getProcessed());
+                    event.put("created", progress.getCreated());
+                    event.put("updated", progress.getUpdated());
+                    event.put("rejected", progress.getRejected());
+                    out.write(objectMapper.writeValueAsBytes(event));
+                    out.write('\n');
+                    out.flush();
+                }
+            });
+    }
+
+    /**
+     * Exporta todo el catálogo en streaming.
+     * 
+     * Las filas se leen con un cursor de solo lectura y se escriben en la
+     * respuesta según se leen, sin construir la lista en memoria.
+     * 
+     * @param format csv, ndjson o columnar (binario descrito en ColumnarExportWriter)
+     * @param fields Campos a incluir separados por comas (opcional, por defecto todos)
+     * @param compression none, gzip o zstd (se indica en Content-Encoding)
+     * 
+     * @return ResponseEntity que contiene:
+     *         - 200 OK: Catálogo en el formato solicitado
+     *         - 400 BAD REQUEST: Formato, compresión o campo desconocido
+     * 
+     * @apiNote Ejemplo de uso:
+     *          GET /api/products/export?format=csv&fields=referencia,precio&compression=gzip
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "ndjson") String format,
+                                            @RequestParam(required = false) String fields,
+                                            @RequestParam(required = false) String compression) {
+        ProductExportService.Format exportFormat;
+        ProductExportService.Compression exportCompression;
+        List<ExportField> exportFields;
+        try {
+            exportFormat = ProductExportService.parseFormat(format);
+            exportCompression = ProductExportService.parseCompression(compression);
+            exportFields = ExportField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            byte[] message = ("Error: Parámetros de exportación no válidos: " + e.getMessage())
+                .getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(out -> out.write(message));
+        }
+        
+        StreamingResponseBody body = out -> exportService.export(out, exportFormat, exportCompression, exportFields);
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+            .header("Content-Disposition", "attachment; filename=\"productos." + exportFormat.getExtension() + "\"");
+        if (exportCompression.getContentEncoding() != null) {
+            response.header("Content-Encoding", exportCompression.getContentEncoding());
+        }
+        return response.body(body);
+    }
+
+    private static ProductImportService.Format resolveImportFormat(String format, String contentType) {
+        String value = format != null ? format : contentType;
+        if (value == null) {
+            return null;
+        }
+        value = value.toLowerCase();
+        if (value.contains("csv")) {
+            return ProductImportService.Format.CSV;
+        }
+        if (value.contains("ndjson") || value.contains("jsonl")) {
+            return ProductImportService.Format.NDJSON;
+        }
+        return null;
+    }
+
+    private String validateBulkSize(List<?> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return "Error: Se requiere al menos un elemento";
+        }
+        if (rows.size() > bulkMaxRows) {
+            return "Error: La petición no puede superar " + bulkMaxRows + " elementos";
+        }
+        return null;
+    }
+
+    /**
+     * Primer candidato que es el mismo artículo que el enviado y no solo uno
+     * parecido: la similitud de textos no distingue variantes ni precios, así
+     * que además debe coincidir la referencia, o la marca y el precio.
+     * 
+     * @return El producto existente, o null si ningún candidato lo es
+     */
+    private Product findSameProduct(List<DuplicateCandidate> duplicates, Product product) {
+        for (DuplicateCandidate duplicate : duplicates) {
+            Product existing = service.getProductById(duplicate.id());
+            if (existing == null) {
+                continue;
+            }
+            boolean sameReferencia = existing.getReferencia() != null
+                && existing.getReferencia().equalsIgnoreCase(product.getReferencia().trim());
+            boolean sameMarcaAndPrecio = existing.getMarca() != null && existing.getPrecio() != null
+                && existing.getMarca().trim().equalsIgnoreCase(product.getMarca().trim())
+                && existing.getPrecio().compareTo(product.getPrecio()) == 0;
+            if (sameReferencia || sameMarcaAndPrecio) {
+                return existing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Valor de la cabecera X-Possible-Duplicates: IDs separados por comas.
+     */
+    private static String duplicateIds(List<DuplicateCandidate> duplicates) {
+        StringBuilder ids = new StringBuilder();
+        for (DuplicateCandidate duplicate : duplicates) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(duplicate.id());
+        }
+        return ids.toString();
+    }
+
+    /**
+     * ETag fuerte de un listado: el contador de cambios del catálogo.
+     */
+    static String catalogEtag(CatalogVersion version) {
+        return "\"c" + version.counter() + "\"";
+    }
+
+    /**
+     * Extrae las versiones de una lista de ETags separados por comas, como la
+     * que admite {@code If-Match}, descartando las que no son del producto.
+     * 
+     * @return Las versiones encontradas, vacía si ningún ETag corresponde al producto
+     */
+    static List<Long> parseProductEtags(Long id, String header) {
+        List<Long> versions = new ArrayList<>();
+        for (String etag : header.split(",")) {
+            Long version = parseProductEtag(id, etag);
+            if (version != null) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Extrae la versión de un ETag de producto ({@code "p<id>-<versión>"}).
+     * 
+     * @return La versión, o null si el ETag no corresponde al producto
+     */
+    static Long parseProductEtag(Long id, String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            return null;
+        }
+        String prefix = "\"p" + id + "-";
+        if (!value.startsWith(prefix) || !value.endsWith("\"") || value.length() <= prefix.length() + 1) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.substring(prefix.length(), value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Comprueba las cabeceras condicionales contra la versión del producto y
+     * deja ETag y Last-Modified en la respuesta.
+     * 
+     * @return true si se ha respondido 304 y no hay que enviar cuerpo
+     */
+    private static boolean isNotModified(Product product, WebRequest request) {
+        String etag = "\"p" + product.getId() + "-" + product.getVersion() + "\"";
+        long lastModified = product.getLastModified() == null ? -1 : product.getLastModified().toEpochMilli();
+        return request.checkNotModified(etag, lastModified);
+    }
 }
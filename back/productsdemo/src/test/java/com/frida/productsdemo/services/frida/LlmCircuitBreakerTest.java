@@ -0,0 +1,133 @@
+package com.frida.productsdemo.services.frida;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.frida.productsdemo.services.frida.LlmCircuitBreaker.State;
+
+class LlmCircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final AtomicLong clock = new AtomicLong();
+    private LlmCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new LlmCircuitBreaker(4, 4, 0.5, OPEN_DURATION, clock::get);
+    }
+
+    @Test
+    void staysClosedUntilMinimumCalls() {
+        recordFailure();
+        recordFailure();
+        recordFailure();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onIgnored();
+    }
+
+    @Test
+    void staysClosedBelowFailureRate() {
+        recordSuccess();
+        recordSuccess();
+        recordSuccess();
+        recordFailure();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0.25, breaker.getFailureRate());
+    }
+
+    @Test
+    void opensAtFailureRateAndRejectsCalls() {
+        recordSuccess();
+        recordFailure();
+        recordSuccess();
+        recordFailure();
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(OPEN_DURATION, breaker.getRemainingOpen());
+
+        clock.addAndGet(OPEN_DURATION.toNanos() - 1);
+        assertFalse(breaker.tryAcquire());
+        assertEquals(Duration.ofNanos(1), breaker.getRemainingOpen());
+    }
+
+    @Test
+    void halfOpenLetsASingleTrialThrough() {
+        open();
+        clock.addAndGet(OPEN_DURATION.toNanos());
+
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void successfulTrialClosesWithAnEmptyWindow() {
+        open();
+        clock.addAndGet(OPEN_DURATION.toNanos());
+
+        recordSuccess();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+        // The failures before opening no longer count
+        recordFailure();
+        recordFailure();
+        recordFailure();
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedTrialReopensForAFullPeriod() {
+        open();
+        clock.addAndGet(OPEN_DURATION.toNanos());
+
+        recordFailure();
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+        assertEquals(OPEN_DURATION, breaker.getRemainingOpen());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void ignoredTrialAllowsAnotherOne() {
+        open();
+        clock.addAndGet(OPEN_DURATION.toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onIgnored();
+
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            recordFailure();
+        }
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    private void recordSuccess() {
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+    }
+
+    private void recordFailure() {
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+    }
+}
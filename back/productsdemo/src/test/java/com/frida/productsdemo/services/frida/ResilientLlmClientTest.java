@@ -0,0 +1,171 @@
+package com.frida.productsdemo.services.frida;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientResponseException;
+
+import com.frida.productsdemo.models.LlmRequest;
+import com.frida.productsdemo.models.LlmResponse;
+import com.frida.productsdemo.services.FridaLlmService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResilientLlmClientTest {
+
+    private static final String MODEL = "test-model";
+
+    private final FridaLlmService fridaService = mock(FridaLlmService.class);
+    private final LlmRequest request = new LlmRequest(MODEL, List.of(), false, false);
+    private final LlmResponse response = new LlmResponse();
+    private ResilientLlmClient client;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        client = new ResilientLlmClient();
+        ReflectionTestUtils.setField(client, "fridaService", fridaService);
+        ReflectionTestUtils.setField(client, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(client, "metrics", new LlmMetrics(registry));
+        ReflectionTestUtils.setField(client, "meterRegistry", registry);
+        ReflectionTestUtils.setField(client, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(client, "maxWait", Duration.ofMillis(500));
+        ReflectionTestUtils.setField(client, "maxAttempts", 3);
+        ReflectionTestUtils.setField(client, "baseDelay", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(client, "maxDelay", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(client, "windowSize", 20);
+        ReflectionTestUtils.setField(client, "minimumCalls", 10);
+        ReflectionTestUtils.setField(client, "failureRate", 0.5);
+        ReflectionTestUtils.setField(client, "openDuration", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(client, "hedgeEnabled", false);
+        ReflectionTestUtils.setField(client, "hedgeDelay", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(client, "hedgePercentile", 0.95);
+    }
+
+    @Test
+    void waitsForNumericRetryAfterBeforeRetrying() {
+        when(fridaService.callChatCompletion(any(LlmRequest.class)))
+                .thenThrow(tooManyRequests("1"))
+                .thenReturn(response);
+
+        long start = System.nanoTime();
+        LlmResponse result = client.call(request);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertSame(response, result);
+        verify(fridaService, times(2)).callChatCompletion(any(LlmRequest.class));
+        assertTrue(elapsedMillis >= 1000, "retried after " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < 3000, "retried after " + elapsedMillis + " ms");
+        assertEquals(1L, modelStats().get("retries"));
+    }
+
+    @Test
+    void capsRetryAfterAtMaxDelay() {
+        ReflectionTestUtils.setField(client, "maxDelay", Duration.ofMillis(100));
+        when(fridaService.callChatCompletion(any(LlmRequest.class)))
+                .thenThrow(tooManyRequests("3600"))
+                .thenReturn(response);
+
+        long start = System.nanoTime();
+        client.call(request);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= 100, "retried after " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < 1000, "retried after " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void givesUpAfterMaxAttemptsWithTheServerRetryAfter() {
+        when(fridaService.callChatCompletion(any(LlmRequest.class))).thenThrow(serviceUnavailable());
+        ReflectionTestUtils.setField(client, "maxDelay", Duration.ofMillis(20));
+
+        LlmUnavailableException e = assertThrows(LlmUnavailableException.class, () -> client.call(request));
+
+        verify(fridaService, times(3)).callChatCompletion(any(LlmRequest.class));
+        assertEquals(Duration.ofSeconds(7), e.getRetryAfter());
+        assertEquals(2L, modelStats().get("retries"));
+        assertEquals(3L, modelStats().get("failures"));
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        when(fridaService.callChatCompletion(any(LlmRequest.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request",
+                        new HttpHeaders(), new byte[0], StandardCharsets.UTF_8));
+
+        assertThrows(RestClientResponseException.class, () -> client.call(request));
+
+        verify(fridaService, times(1)).callChatCompletion(any(LlmRequest.class));
+        assertEquals(0L, modelStats().get("retries"));
+    }
+
+    @Test
+    void releasesTheBulkheadSlotDuringBackoff() throws Exception {
+        CountDownLatch firstAttemptFailed = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(fridaService.callChatCompletion(any(LlmRequest.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                firstAttemptFailed.countDown();
+                throw tooManyRequests("1");
+            }
+            return response;
+        });
+
+        CompletableFuture<LlmResponse> retrying = CompletableFuture.supplyAsync(() -> client.call(request));
+        assertTrue(firstAttemptFailed.await(5, TimeUnit.SECONDS));
+
+        // Only one slot: this call gets it only if the retrying caller let it go while sleeping
+        long start = System.nanoTime();
+        assertSame(response, client.call(request));
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(waitedMillis < 500, "waited " + waitedMillis + " ms for the slot");
+        assertSame(response, retrying.get(5, TimeUnit.SECONDS));
+        assertEquals(0L, modelStats().get("rejected"));
+        assertEquals(0, modelStats().get("inFlight"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> modelStats() {
+        Map<String, Object> models = (Map<String, Object>) client.getStats().get("models");
+        return (Map<String, Object>) models.get(MODEL);
+    }
+
+    private static HttpClientErrorException tooManyRequests(String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        return HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+                headers, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    private static HttpServerErrorException serviceUnavailable() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "7");
+        return HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+                headers, new byte[0], StandardCharsets.UTF_8);
+    }
+}